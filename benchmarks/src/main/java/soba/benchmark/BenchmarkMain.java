@@ -0,0 +1,23 @@
+package soba.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, so that both time and allocation
+ * rate (gc.alloc.rate.norm) are reported. Command line options of JMH are
+ * accepted, e.g. a regular expression to select benchmarks.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options options = new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,55 @@
+package soba.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soba.core.ClassInfo;
+
+/**
+ * Measures <code>ClassInfo</code> construction from class file contents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ClassParsingBenchmark {
+
+    @Param({ Corpus.TESTDATA, Corpus.ASM, Corpus.SYNTHETIC })
+    public String corpus;
+
+    @Param({ "false", "true" })
+    public boolean lazy;
+
+    private List<String> names;
+    private List<byte[]> binaries;
+
+    @Setup
+    public void setUp() {
+        Corpus c = Corpus.load(corpus);
+        names = c.getNames();
+        binaries = c.getBinaries();
+    }
+
+    @Benchmark
+    public void parseClasses(Blackhole bh) throws IOException {
+        for (int i = 0; i < names.size(); ++i) {
+            bh.consume(new ClassInfo(names.get(i), binaries.get(i), null, lazy));
+        }
+    }
+}
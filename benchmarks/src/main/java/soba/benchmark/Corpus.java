@@ -0,0 +1,146 @@
+package soba.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import soba.core.JavaProgram;
+import soba.util.files.Directory;
+import soba.util.files.FileUtil;
+import soba.util.files.IClassList;
+import soba.util.files.IClassListCallback;
+import soba.util.files.ZipFile;
+
+/**
+ * A set of class files used by benchmarks. Class files are read into memory in
+ * advance, so that benchmarks do not measure file I/O.
+ *
+ * Available corpora:
+ * <ul>
+ * <li><code>testdata</code>: test data classes of soba-core
+ * (target/test-classes/soba/testdata).</li>
+ * <li><code>asm</code>: the bundled asm-debug-all jar file.</li>
+ * <li><code>synthetic</code>: classes generated by
+ * <code>SyntheticClasses</code>.</li>
+ * </ul>
+ * Paths are resolved from the system property <code>soba.root</code> (the
+ * current directory by default), that should point to the soba-core project.
+ */
+public class Corpus {
+
+    public static final String TESTDATA = "testdata";
+    public static final String ASM = "asm";
+    public static final String SYNTHETIC = "synthetic";
+
+    private List<String> names = new ArrayList<>();
+    private List<byte[]> binaries = new ArrayList<>();
+
+    private Corpus() {
+    }
+
+    /**
+     * @param name specifies a corpus.
+     * @return a <code>Corpus</code> object.
+     * @throws IllegalArgumentException if the corpus is unavailable.
+     */
+    public static Corpus load(String name) {
+        Corpus corpus = new Corpus();
+        File root = new File(System.getProperty("soba.root", "."));
+        if (TESTDATA.equals(name)) {
+            File dir = new File(root, "target/test-classes/soba/testdata");
+            if (!dir.isDirectory()) {
+                throw new IllegalArgumentException(dir.getAbsolutePath() + " is not found. Run mvn test-compile.");
+            }
+            corpus.read(new Directory(dir));
+        } else if (ASM.equals(name)) {
+            File jar = new File(root, "src/test/resources/lib/asm-debug-all-5.0.3.jar");
+            if (!jar.isFile()) {
+                throw new IllegalArgumentException(jar.getAbsolutePath() + " is not found.");
+            }
+            corpus.read(new ZipFile(jar));
+        } else if (SYNTHETIC.equals(name)) {
+            SyntheticClasses synthetic = new SyntheticClasses();
+            corpus.names.addAll(synthetic.getNames());
+            corpus.binaries.addAll(synthetic.getBinaries());
+        } else {
+            throw new IllegalArgumentException("Unknown corpus: " + name);
+        }
+        return corpus;
+    }
+
+    private void read(IClassList list) {
+        list.process(new IClassListCallback() {
+            @Override
+            public boolean isTarget(String name) {
+                return ZipFile.isClassFile(name);
+            }
+
+            @Override
+            public void process(String name, InputStream stream) throws IOException {
+                names.add(name);
+                binaries.add(FileUtil.readFully(stream));
+            }
+
+            @Override
+            public boolean reportError(String name, Exception e) {
+                throw new IllegalStateException(name, e);
+            }
+        });
+    }
+
+    /**
+     * @return the file names of the classes.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return the contents of the class files.
+     */
+    public List<byte[]> getBinaries() {
+        return binaries;
+    }
+
+    /**
+     * @return a new <code>JavaProgram</code> object including all the classes.
+     */
+    public JavaProgram createProgram() {
+        return new JavaProgram(new IClassList[] { new InMemoryClassList(names, binaries) });
+    }
+
+    private static class InMemoryClassList implements IClassList {
+
+        private List<String> names;
+        private List<byte[]> binaries;
+
+        public InMemoryClassList(List<String> names, List<byte[]> binaries) {
+            this.names = names;
+            this.binaries = binaries;
+        }
+
+        @Override
+        public void process(IClassListCallback c) {
+            for (int i = 0; i < names.size(); ++i) {
+                String name = names.get(i);
+                if (c.isTarget(name)) {
+                    try (InputStream stream = new ByteArrayInputStream(binaries.get(i))) {
+                        c.process(name, stream);
+                    } catch (IOException e) {
+                        if (c.reportError(name, e)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String getLabel() {
+            return "benchmark";
+        }
+    }
+}
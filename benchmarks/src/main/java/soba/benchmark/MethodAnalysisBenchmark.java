@@ -0,0 +1,129 @@
+package soba.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.tree.MethodNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soba.core.ClassInfo;
+import soba.core.JavaProgram;
+import soba.core.MethodInfo;
+import soba.core.method.ControlDependence;
+import soba.core.method.DataDependence;
+import soba.core.method.FlowResult;
+import soba.core.method.LocalVariables;
+import soba.util.graph.DirectedAcyclicGraph;
+import soba.util.graph.DirectedGraph;
+import soba.util.graph.DominanceTree;
+import soba.util.graph.SingleRootDirectedGraph;
+
+/**
+ * Measures per-method analyses. Each benchmark processes all the methods of a
+ * corpus; inputs of each stage are computed in advance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MethodAnalysisBenchmark {
+
+    @Param({ Corpus.TESTDATA, Corpus.ASM, Corpus.SYNTHETIC })
+    public String corpus;
+
+    private List<MethodNode> methods = new ArrayList<>();
+    private List<DataDependence> dataDependences = new ArrayList<>();
+    private List<MethodNode> dataDependenceMethods = new ArrayList<>();
+    private List<DirectedGraph> controlFlows = new ArrayList<>();
+    private List<SingleRootDirectedGraph> reverseControlFlows = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        JavaProgram program = Corpus.load(corpus).createProgram();
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                if (!m.hasMethodBody()) {
+                    continue;
+                }
+                MethodNode node = m.getMethodNode();
+                methods.add(node);
+                FlowResult result = FlowResult.analyze(node);
+                if (result.getDataDependence() != null) {
+                    dataDependences.add(result.getDataDependence());
+                    dataDependenceMethods.add(node);
+                }
+                DirectedGraph cfg = result.getControlFlowGraph();
+                controlFlows.add(cfg);
+                reverseControlFlows.add(new SingleRootDirectedGraph(cfg.getReverseGraph()));
+            }
+        }
+    }
+
+    /**
+     * DataFlowAnalyzer and DataDependence construction (with control-flow
+     * extraction).
+     */
+    @Benchmark
+    public void dataFlow(Blackhole bh) {
+        for (MethodNode node : methods) {
+            bh.consume(FlowResult.analyze(node));
+        }
+    }
+
+    @Benchmark
+    public void localVariables(Blackhole bh) {
+        for (int i = 0; i < dataDependences.size(); ++i) {
+            bh.consume(new LocalVariables(dataDependences.get(i), dataDependenceMethods.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void controlDependence(Blackhole bh) {
+        for (DirectedGraph cfg : controlFlows) {
+            bh.consume(ControlDependence.getDependence(cfg.getVertexCount(), cfg));
+        }
+    }
+
+    @Benchmark
+    public void controlDependenceByFrontiers(Blackhole bh) {
+        for (DirectedGraph cfg : controlFlows) {
+            bh.consume(ControlDependence.getDependence(cfg.getVertexCount(), cfg,
+                    ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER));
+        }
+    }
+
+    /**
+     * Post-dominator trees on reverse control-flow graphs.
+     */
+    @Benchmark
+    public void dominanceTree(Blackhole bh) {
+        for (SingleRootDirectedGraph g : reverseControlFlows) {
+            bh.consume(new DominanceTree(g));
+        }
+    }
+
+    /**
+     * Removal of strongly connected components (loops) from control-flow
+     * graphs.
+     */
+    @Benchmark
+    public void stronglyConnectedComponents(Blackhole bh) {
+        for (DirectedGraph cfg : controlFlows) {
+            bh.consume(new DirectedAcyclicGraph(cfg));
+        }
+    }
+}
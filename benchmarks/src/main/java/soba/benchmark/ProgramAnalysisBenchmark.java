@@ -0,0 +1,137 @@
+package soba.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import soba.core.ClassHierarchy;
+import soba.core.ClassInfo;
+import soba.core.FieldInfo;
+import soba.core.FlowAnalysisDriver;
+import soba.core.JavaProgram;
+import soba.core.MethodInfo;
+import soba.core.method.CallSite;
+import soba.core.vta.IAnalysisTarget;
+import soba.core.vta.VTAResolver;
+import soba.util.callgraph.CallGraph;
+
+/**
+ * Measures whole-program analyses. Data-flow analysis of all the methods is
+ * completed in advance, so that the benchmarks measure the construction of
+ * the analysis results themselves.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProgramAnalysisBenchmark {
+
+    @Param({ Corpus.TESTDATA, Corpus.ASM, Corpus.SYNTHETIC })
+    public String corpus;
+
+    @Param({ "false", "true" })
+    public boolean frozen;
+
+    private JavaProgram program;
+    private ClassHierarchy hierarchy;
+    private List<CallSite> callSites = new ArrayList<>();
+    private List<CallSite> queries = new ArrayList<>();
+
+    /**
+     * The number of call sites resolved by a demand-driven VTA.
+     */
+    private static final int QUERY_COUNT = 100;
+
+    private static final IAnalysisTarget ALL = new IAnalysisTarget() {
+        @Override
+        public boolean isTargetMethod(MethodInfo m) {
+            return true;
+        }
+
+        @Override
+        public boolean isTargetField(FieldInfo f) {
+            return true;
+        }
+
+        @Override
+        public boolean isExcludedType(String className) {
+            return false;
+        }
+
+        @Override
+        public boolean assumeExternalCallers(MethodInfo m) {
+            return false;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        program = Corpus.load(corpus).createProgram();
+        hierarchy = program.getClassHierarchy();
+        if (frozen) {
+            hierarchy.freeze();
+        }
+        new FlowAnalysisDriver().analyze(program);
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                callSites.addAll(m.getCallSites());
+            }
+        }
+        List<CallSite> dynamic = new ArrayList<>();
+        for (CallSite cs : callSites) {
+            if (!cs.isStaticOrSpecial()) {
+                dynamic.add(cs);
+            }
+        }
+        // Call sites spread over the program
+        int step = Math.max(dynamic.size() / QUERY_COUNT, 1);
+        for (int i = 0; i < dynamic.size() && queries.size() < QUERY_COUNT; i += step) {
+            queries.add(dynamic.get(i));
+        }
+    }
+
+    @Benchmark
+    public void resolveCall(Blackhole bh) {
+        for (CallSite cs : callSites) {
+            bh.consume(hierarchy.resolveCall(cs));
+        }
+    }
+
+    @Benchmark
+    public VTAResolver vtaResolver() {
+        return new VTAResolver(program);
+    }
+
+    @Benchmark
+    public VTAResolver vtaResolverParallel() {
+        return new VTAResolver(program, null, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public void vtaDemandDriven(Blackhole bh) {
+        VTAResolver vta = VTAResolver.createDemandDrivenResolver(program, ALL);
+        for (CallSite cs : queries) {
+            bh.consume(vta.resolveCall(cs));
+        }
+    }
+
+    @Benchmark
+    public CallGraph callGraph() {
+        return new CallGraph(program);
+    }
+}
@@ -0,0 +1,221 @@
+package soba.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * This class generates classes that stress the analysis: a deep class
+ * hierarchy whose classes override the same interface method, and a class
+ * with large methods including many branches, loops, local variables,
+ * allocations and virtual calls.
+ */
+public class SyntheticClasses implements Opcodes {
+
+    private static final String PACKAGE = "synthetic/";
+    private static final String SHAPE = PACKAGE + "Shape";
+    private static final String LEVEL = PACKAGE + "Level";
+    private static final String MARKER = PACKAGE + "Marker";
+    private static final String LARGE_METHODS = PACKAGE + "LargeMethods";
+
+    private static final int INT_LOCALS = 16;
+    private static final int OBJECT_LOCALS = 8;
+    private static final int MARKERS = 8;
+
+    private List<String> names = new ArrayList<>();
+    private List<byte[]> binaries = new ArrayList<>();
+
+    /**
+     * Creates classes with the default size: 64 levels of the hierarchy and 4
+     * methods of 300 blocks (about 5500 instructions each).
+     */
+    public SyntheticClasses() {
+        this(64, 4, 300);
+    }
+
+    /**
+     * @param depth       specifies the depth of the class hierarchy.
+     * @param methodCount specifies the number of large methods.
+     * @param blockCount  specifies the number of basic block groups in each
+     *                    large method.
+     */
+    public SyntheticClasses(int depth, int methodCount, int blockCount) {
+        add(SHAPE, createShape());
+        for (int i = 0; i < MARKERS; ++i) {
+            add(MARKER + i, createMarker(i));
+        }
+        for (int i = 0; i < depth; ++i) {
+            add(LEVEL + i, createLevel(i));
+        }
+        add(LARGE_METHODS, createLargeMethods(depth, methodCount, blockCount));
+    }
+
+    private void add(String className, byte[] binary) {
+        names.add(className + ".class");
+        binaries.add(binary);
+    }
+
+    /**
+     * @return the file names of the generated classes.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * @return the contents of the generated classes.
+     */
+    public List<byte[]> getBinaries() {
+        return binaries;
+    }
+
+    private static byte[] createShape() {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, SHAPE, null, "java/lang/Object", null);
+        cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, "area", "(I)I", null, null).visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] createMarker(int index) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(V1_6, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, MARKER + index, null, "java/lang/Object",
+                new String[] { SHAPE });
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Level0 implements Shape, and Level(i) extends Level(i-1). Each class
+     * implements a marker interface and overrides area(I)I.
+     */
+    private static byte[] createLevel(int level) {
+        String className = LEVEL + level;
+        String superName = (level == 0) ? "java/lang/Object" : LEVEL + (level - 1);
+        String[] interfaces = (level == 0) ? new String[] { SHAPE, MARKER + 0 }
+                : new String[] { MARKER + (level % MARKERS) };
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC, className, null, superName, interfaces);
+        cw.visitField(ACC_PUBLIC, "next", "L" + SHAPE + ";", null, null).visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "area", "(I)I", null, null);
+        mv.visitCode();
+        Label noNext = new Label();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "next", "L" + SHAPE + ";");
+        mv.visitJumpInsn(IFNULL, noNext);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "next", "L" + SHAPE + ";");
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitMethodInsn(INVOKEINTERFACE, SHAPE, "area", "(I)I", true);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(noNext);
+        if (level > 0) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitMethodInsn(INVOKESPECIAL, superName, "area", "(I)I", false);
+        } else {
+            mv.visitVarInsn(ILOAD, 1);
+        }
+        mv.visitLdcInsn(level + 1);
+        mv.visitInsn(IMUL);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Each large method is a static method <code>large(i)(I)I</code>. The
+     * method consists of groups of blocks that read and write int locals,
+     * allocate an object of the hierarchy, call area(I)I through the interface,
+     * and occasionally jump backward to form loops.
+     */
+    private static byte[] createLargeMethods(int depth, int methodCount, int blockCount) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC, LARGE_METHODS, null, "java/lang/Object", null);
+        for (int m = 0; m < methodCount; ++m) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "large" + m, "(I)I", null, null);
+            mv.visitCode();
+            // local 0 is the parameter; int locals 1..INT_LOCALS, then object locals
+            for (int i = 1; i <= INT_LOCALS; ++i) {
+                mv.visitVarInsn(ILOAD, 0);
+                mv.visitLdcInsn(i);
+                mv.visitInsn(IADD);
+                mv.visitVarInsn(ISTORE, i);
+            }
+            for (int i = 0; i < OBJECT_LOCALS; ++i) {
+                mv.visitInsn(ACONST_NULL);
+                mv.visitVarInsn(ASTORE, objectLocal(i));
+            }
+            Label[] heads = new Label[blockCount];
+            for (int b = 0; b < blockCount; ++b) {
+                heads[b] = new Label();
+                mv.visitLabel(heads[b]);
+                int a = intLocal(b * 7 + m);
+                int c = intLocal(b * 3 + 1);
+                int d = intLocal(b * 5 + 2);
+                int o = objectLocal(b);
+                int p = objectLocal(b * 3 + 1);
+
+                mv.visitVarInsn(ILOAD, a);
+                mv.visitVarInsn(ILOAD, c);
+                mv.visitInsn((b % 2 == 0) ? IADD : IXOR);
+                mv.visitVarInsn(ISTORE, d);
+
+                Label skipNew = new Label();
+                mv.visitVarInsn(ILOAD, d);
+                mv.visitJumpInsn(IFLT, skipNew);
+                String type = LEVEL + ((b * 13 + m) % depth);
+                mv.visitTypeInsn(NEW, type);
+                mv.visitInsn(DUP);
+                mv.visitMethodInsn(INVOKESPECIAL, type, "<init>", "()V", false);
+                mv.visitVarInsn(ASTORE, o);
+                mv.visitLabel(skipNew);
+
+                Label skipCall = new Label();
+                mv.visitVarInsn(ALOAD, p);
+                mv.visitJumpInsn(IFNULL, skipCall);
+                mv.visitVarInsn(ALOAD, p);
+                mv.visitVarInsn(ILOAD, d);
+                mv.visitMethodInsn(INVOKEINTERFACE, SHAPE, "area", "(I)I", true);
+                mv.visitVarInsn(ISTORE, a);
+                mv.visitLabel(skipCall);
+
+                if (b % 16 == 15) {
+                    mv.visitVarInsn(ILOAD, c);
+                    mv.visitJumpInsn(IFGT, heads[b - 8]);
+                }
+            }
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitInsn(IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static int intLocal(int index) {
+        return 1 + (index % INT_LOCALS);
+    }
+
+    private static int objectLocal(int index) {
+        return 1 + INT_LOCALS + (index % OBJECT_LOCALS);
+    }
+}
@@ -0,0 +1,154 @@
+package soba.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import soba.core.method.FlowResult;
+
+/**
+ * This class stores the results of control-flow and data-flow analysis in a
+ * directory. The results of a class are stored in a file named by the MD5 hash
+ * of the class, so that the results of an unchanged class can be reused by
+ * another run.
+ */
+public class AnalysisCache {
+
+    /**
+     * The version of the analysis. It must be increased when the analysis result
+     * or the file format is changed.
+     */
+    public static final int ANALYSIS_VERSION = 1;
+
+    private static final int MAGIC = 0x534f4241; // "SOBA"
+    private static final String EXTENSION = ".flow";
+
+    private File directory;
+    private int loadCount;
+    private int storeCount;
+
+    /**
+     * Creates a new <code>AnalysisCache</code> instance.
+     *
+     * @param directory specifies a directory to store the results. The directory
+     *                  is created if it does not exist.
+     */
+    public AnalysisCache(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    /**
+     * Loads the analysis results of the methods from the cache, or analyzes the
+     * methods and stores the results for each class in the program.
+     *
+     * @param program
+     * @throws IOException if a result cannot be written.
+     */
+    public void analyze(JavaProgram program) throws IOException {
+        for (ClassInfo c : program.getClasses()) {
+            if (!load(c)) {
+                store(c);
+            }
+        }
+    }
+
+    /**
+     * Loads the analysis results of the methods in a class.
+     *
+     * @param c specifies a class.
+     * @return true if the results are loaded. False is returned if the cache does
+     *         not have a valid result for the class.
+     */
+    public boolean load(ClassInfo c) {
+        File f = getCacheFile(c);
+        if (!f.isFile()) {
+            return false;
+        }
+        List<MethodInfo> methods = c.getMethods();
+        FlowResult[] results = new FlowResult[methods.size()];
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(new FileInputStream(f))))) {
+            if (in.readInt() != MAGIC || in.readInt() != ANALYSIS_VERSION || !in.readUTF().equals(c.getClassName())
+                    || in.readInt() != methods.size()) {
+                return false;
+            }
+            for (int i = 0; i < methods.size(); ++i) {
+                MethodInfo m = methods.get(i);
+                if (!in.readUTF().equals(m.getMethodName()) || !in.readUTF().equals(m.getDescriptor())) {
+                    return false;
+                }
+                results[i] = FlowResult.read(in, m.getMethodNode());
+            }
+        } catch (IOException e) {
+            // A broken file is ignored and will be overwritten.
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+        for (int i = 0; i < methods.size(); ++i) {
+            methods.get(i).setFlowResult(results[i]);
+        }
+        loadCount++;
+        return true;
+    }
+
+    /**
+     * Stores the analysis results of the methods in a class. Methods are analyzed
+     * if they have not been analyzed yet.
+     *
+     * @param c specifies a class.
+     * @throws IOException
+     */
+    public void store(ClassInfo c) throws IOException {
+        File f = getCacheFile(c);
+        File temp = File.createTempFile(c.getHash(), ".tmp", directory);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+                List<MethodInfo> methods = c.getMethods();
+                out.writeInt(MAGIC);
+                out.writeInt(ANALYSIS_VERSION);
+                out.writeUTF(c.getClassName());
+                out.writeInt(methods.size());
+                for (MethodInfo m : methods) {
+                    out.writeUTF(m.getMethodName());
+                    out.writeUTF(m.getDescriptor());
+                    m.getFlowResult().write(out);
+                }
+            }
+            if (f.exists() && !f.delete() || !temp.renameTo(f)) {
+                throw new IOException("Failed to write " + f.getAbsolutePath());
+            }
+            storeCount++;
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * @return the number of classes whose results have been loaded.
+     */
+    public int getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return the number of classes whose results have been stored.
+     */
+    public int getStoreCount() {
+        return storeCount;
+    }
+
+    private File getCacheFile(ClassInfo c) {
+        return new File(directory, c.getHash() + EXTENSION);
+    }
+}
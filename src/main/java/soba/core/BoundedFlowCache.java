@@ -0,0 +1,280 @@
+package soba.core;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import soba.core.method.FlowResult;
+
+/**
+ * This class keeps the results of control-flow and data-flow analysis within a
+ * memory budget. The size of a result is estimated by
+ * <code>FlowResult.getEstimatedSize()</code>. When the total size exceeds the
+ * budget, results are evicted according to an eviction policy. Evicted results
+ * are optionally kept by soft references, so that they are reused unless the
+ * garbage collector reclaims them.
+ */
+public class BoundedFlowCache implements IFlowCache {
+
+    /**
+     * Specifies results to be evicted first.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Evicts the least recently used result.
+         */
+        LEAST_RECENTLY_USED,
+
+        /**
+         * Evicts the largest result. Results of the same size are evicted in the
+         * order of insertion.
+         */
+        LARGEST_FIRST
+    }
+
+    private long budget;
+    private EvictionPolicy policy;
+    private boolean softReferences;
+
+    private LinkedHashMap<MethodInfo, Item> items;
+    private TreeSet<Item> itemsBySize;
+    private long sequence;
+    private long usedBytes;
+
+    private Map<MethodInfo, SoftItem> softItems;
+    private ReferenceQueue<FlowResult> queue;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new <code>BoundedFlowCache</code> instance which evicts the least
+     * recently used results.
+     *
+     * @param budget specifies the maximum number of bytes of cached results.
+     */
+    public BoundedFlowCache(long budget) {
+        this(budget, EvictionPolicy.LEAST_RECENTLY_USED, false);
+    }
+
+    /**
+     * Creates a new <code>BoundedFlowCache</code> instance.
+     *
+     * @param budget         specifies the maximum number of bytes of cached
+     *                       results.
+     * @param policy         specifies results to be evicted first.
+     * @param softReferences If true, evicted results are kept by soft
+     *                       references.
+     */
+    public BoundedFlowCache(long budget, EvictionPolicy policy, boolean softReferences) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("budget must not be negative: " + budget);
+        }
+        this.budget = budget;
+        this.policy = policy;
+        this.softReferences = softReferences;
+        this.items = new LinkedHashMap<>(16, 0.75f, policy == EvictionPolicy.LEAST_RECENTLY_USED);
+        if (policy == EvictionPolicy.LARGEST_FIRST) {
+            this.itemsBySize = new TreeSet<>(new Comparator<Item>() {
+                @Override
+                public int compare(Item o1, Item o2) {
+                    if (o1.size != o2.size) {
+                        return o1.size > o2.size ? -1 : 1;
+                    }
+                    return Long.compare(o1.sequence, o2.sequence);
+                }
+            });
+        }
+        if (softReferences) {
+            this.softItems = new HashMap<>();
+            this.queue = new ReferenceQueue<>();
+        }
+    }
+
+    @Override
+    public synchronized FlowResult get(MethodInfo m) {
+        Item item = items.get(m);
+        if (item != null) {
+            hitCount++;
+            return item.result;
+        }
+        if (softReferences) {
+            expungeStaleItems();
+            SoftItem soft = softItems.remove(m);
+            FlowResult result = (soft != null) ? soft.get() : null;
+            if (result != null) {
+                hitCount++;
+                add(m, result);
+                return result;
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    @Override
+    public synchronized void put(MethodInfo m, FlowResult result) {
+        remove(m);
+        if (softReferences) {
+            expungeStaleItems();
+            softItems.remove(m);
+        }
+        if (result != null) {
+            add(m, result);
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(MethodInfo m) {
+        if (items.containsKey(m)) {
+            return true;
+        }
+        if (softReferences) {
+            SoftItem soft = softItems.get(m);
+            return soft != null && soft.get() != null;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the results from the cache. Statistics are not changed.
+     */
+    public synchronized void clear() {
+        items.clear();
+        if (itemsBySize != null) {
+            itemsBySize.clear();
+        }
+        usedBytes = 0;
+        if (softReferences) {
+            softItems.clear();
+            expungeStaleItems();
+        }
+    }
+
+    private void add(MethodInfo m, FlowResult result) {
+        Item item = new Item(m, result, result.getEstimatedSize(), sequence++);
+        items.put(m, item);
+        if (itemsBySize != null) {
+            itemsBySize.add(item);
+        }
+        usedBytes += item.size;
+        while (usedBytes > budget && !items.isEmpty()) {
+            evict();
+        }
+    }
+
+    private void remove(MethodInfo m) {
+        Item item = items.remove(m);
+        if (item != null) {
+            if (itemsBySize != null) {
+                itemsBySize.remove(item);
+            }
+            usedBytes -= item.size;
+        }
+    }
+
+    private void evict() {
+        Item victim;
+        if (itemsBySize != null) {
+            victim = itemsBySize.first();
+        } else {
+            Iterator<Item> it = items.values().iterator();
+            victim = it.next();
+        }
+        remove(victim.method);
+        evictionCount++;
+        if (softReferences) {
+            softItems.put(victim.method, new SoftItem(victim.method, victim.result, queue));
+        }
+    }
+
+    private void expungeStaleItems() {
+        Reference<? extends FlowResult> ref;
+        while ((ref = queue.poll()) != null) {
+            SoftItem soft = (SoftItem) ref;
+            if (softItems.get(soft.method) == soft) {
+                softItems.remove(soft.method);
+            }
+        }
+    }
+
+    /**
+     * @return the maximum number of bytes of cached results.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return the eviction policy of the cache.
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the estimated number of bytes of the results strongly kept by the
+     *         cache.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return the number of results strongly kept by the cache.
+     */
+    public synchronized int getEntryCount() {
+        return items.size();
+    }
+
+    /**
+     * @return the number of <code>get</code> calls that returned a result.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of <code>get</code> calls that did not return a result.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of results evicted to keep the budget.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static class Item {
+        private MethodInfo method;
+        private FlowResult result;
+        private long size;
+        private long sequence;
+
+        public Item(MethodInfo method, FlowResult result, long size, long sequence) {
+            this.method = method;
+            this.result = result;
+            this.size = size;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class SoftItem extends SoftReference<FlowResult> {
+        private MethodInfo method;
+
+        public SoftItem(MethodInfo method, FlowResult result, ReferenceQueue<FlowResult> queue) {
+            super(result, queue);
+            this.method = method;
+        }
+    }
+}
@@ -11,6 +11,8 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import soba.core.method.CallSite;
 import soba.core.method.FieldAccess;
@@ -31,7 +33,16 @@ public class ClassHierarchy implements IDynamicBindingResolver {
     private Map<String, Set<String>> subtypes; // type -> a set of sub types
     private Set<String> requestedClasses; // a set of type names that are queried but not found
 
+    // (call target -> resolved methods) available after the hierarchy is frozen
+    private volatile ConcurrentHashMap<CallTarget, MethodInfo[]> dispatchCache;
+    // subtype relation and super types available after the hierarchy is frozen
+    private volatile CompiledHierarchy compiled;
+    private ConcurrentHashMap<String, Collection<String>> superTypesCache;
+    private LongAdder dispatchCacheHits = new LongAdder();
+    private LongAdder dispatchCacheMisses = new LongAdder();
+
     private static List<String> EMPTY = Collections.unmodifiableList(new ArrayList<String>(0));
+    private static final MethodInfo[] NO_METHODS = new MethodInfo[0];
 
     /**
      * Creates a new <code>ClassHierarchy</code> instance.
@@ -44,7 +55,7 @@ public class ClassHierarchy implements IDynamicBindingResolver {
         parentInterfaces = new HashMap<String, List<String>>();
         entries = new HashMap<String, ClassInfo>();
 
-        requestedClasses = new HashSet<String>();
+        requestedClasses = ConcurrentHashMap.newKeySet();
 
     }
 
@@ -70,12 +81,31 @@ public class ClassHierarchy implements IDynamicBindingResolver {
      * @param dynamic    is true if the invoked method is bound dynamically
      * @return an array of <code>MethodInfo</code> objects representing methods that
      *         might be executed by the invocation. The return value is an empty
-     *         array if no method declaration matched to the invocation.
+     *         array if no method declaration matched to the invocation. If the
+     *         hierarchy is frozen, the array is shared by callers and must not be
+     *         modified.
      */
     public MethodInfo[] resolveCall(String className, String methodName, String methodDesc, boolean dynamic) {
+        ConcurrentHashMap<CallTarget, MethodInfo[]> cache = dispatchCache;
+        if (cache == null) {
+            return computeCall(className, methodName, methodDesc, dynamic);
+        }
+        CallTarget target = new CallTarget(className, methodName, methodDesc, dynamic);
+        MethodInfo[] result = cache.get(target);
+        if (result != null) {
+            dispatchCacheHits.increment();
+            return result;
+        }
+        dispatchCacheMisses.increment();
+        result = computeCall(className, methodName, methodDesc, dynamic);
+        MethodInfo[] previous = cache.putIfAbsent(target, result);
+        return (previous != null) ? previous : result;
+    }
+
+    private MethodInfo[] computeCall(String className, String methodName, String methodDesc, boolean dynamic) {
         if (!dynamic) {
-            MethodInfo m = resolveSpecialCall(className, methodName, methodDesc);
-            return (m == null) ? new MethodInfo[0] : new MethodInfo[] { m };
+            MethodInfo m = findDeclaration(className, methodName, methodDesc);
+            return (m == null) ? NO_METHODS : new MethodInfo[] { m };
         } else {
             return resolveDynamicCall(className, methodName, methodDesc);
         }
@@ -101,7 +131,7 @@ public class ClassHierarchy implements IDynamicBindingResolver {
         // Find the declaration of the called method.
         MethodInfo topDecl = findDeclaration(className, methodName, methodDesc);
         if (topDecl == null)
-            return new MethodInfo[0]; // Not found
+            return NO_METHODS; // Not found
 
         List<MethodInfo> result = new ArrayList<>(16);
         if (topDecl.hasMethodBody())
@@ -173,9 +203,9 @@ public class ClassHierarchy implements IDynamicBindingResolver {
      *         may be null if the method is not found.
      */
     public MethodInfo resolveSpecialCall(String className, String methodName, String methodDesc) {
-        MethodInfo m = findDeclaration(className, methodName, methodDesc);
-        if (m != null) {
-            return m;
+        MethodInfo[] m = resolveCall(className, methodName, methodDesc, false);
+        if (m.length > 0) {
+            return m[0];
         } else {
             return null;
         }
@@ -353,11 +383,36 @@ public class ClassHierarchy implements IDynamicBindingResolver {
     }
 
     /**
-     * Prevents further modifications to the object.
+     * Prevents further modifications to the object. After the hierarchy is
+     * frozen, results of <code>resolveCall</code> and
+     * <code>resolveSpecialCall</code> are cached and shared among callers, and
+     * the subtype relation is compiled into integer ids so that
+     * <code>isSubtype</code> runs in constant time.
+     * 
+     * A frozen hierarchy consists of immutable maps and concurrent caches, so
+     * that multiple threads can query it without synchronization. Threads must
+     * be started (or tasks submitted) after this method returns.
      */
     public void freeze() {
         assert !frozen : "ClassHierarchy is already frozen.";
         frozen = true;
+        entries = Collections.unmodifiableMap(new HashMap<String, ClassInfo>(entries));
+        parentClass = Collections.unmodifiableMap(new HashMap<String, String>(parentClass));
+        HashMap<String, List<String>> frozenInterfaces = new HashMap<String, List<String>>(parentInterfaces.size() * 2);
+        for (Map.Entry<String, List<String>> entry : parentInterfaces.entrySet()) {
+            List<String> interfaces = entry.getValue();
+            frozenInterfaces.put(entry.getKey(), (interfaces == null) ? null
+                    : Collections.unmodifiableList(new ArrayList<String>(interfaces)));
+        }
+        parentInterfaces = Collections.unmodifiableMap(frozenInterfaces);
+        HashMap<String, Set<String>> frozenSubtypes = new HashMap<String, Set<String>>(subtypes.size() * 2);
+        for (Map.Entry<String, Set<String>> entry : subtypes.entrySet()) {
+            frozenSubtypes.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<String>(entry.getValue())));
+        }
+        subtypes = Collections.unmodifiableMap(frozenSubtypes);
+        superTypesCache = new ConcurrentHashMap<>(4096);
+        compiled = new CompiledHierarchy(subtypes, entries.keySet());
+        dispatchCache = new ConcurrentHashMap<>(4096);
     }
 
     /**
@@ -367,14 +422,50 @@ public class ClassHierarchy implements IDynamicBindingResolver {
         return frozen;
     }
 
+    /**
+     * @return the number of method resolutions answered by the dispatch cache.
+     *         The cache is available after the hierarchy is frozen.
+     */
+    public long getDispatchCacheHitCount() {
+        return dispatchCacheHits.sum();
+    }
+
+    /**
+     * @return the number of method resolutions computed and stored in the
+     *         dispatch cache.
+     */
+    public long getDispatchCacheMissCount() {
+        return dispatchCacheMisses.sum();
+    }
+
+    /**
+     * @return the number of call targets in the dispatch cache.
+     */
+    public int getDispatchCacheSize() {
+        ConcurrentHashMap<CallTarget, MethodInfo[]> cache = dispatchCache;
+        return (cache != null) ? cache.size() : 0;
+    }
+
     /**
      * @return a set of class names which are requested by client methods, but not
-     *         involved in this class hierarchy.
+     *         involved in this class hierarchy. The set is safe to read while
+     *         other threads query the hierarchy.
      */
     public Set<String> getRequestedClasses() {
         return requestedClasses;
     }
 
+    /**
+     * Records a class name that is not included in the hierarchy. A class
+     * requested repeatedly is checked without locking. A null name (e.g. the
+     * super class of java.lang.Object) is not recorded.
+     */
+    private void recordRequestedClass(String className) {
+        if (className != null && !requestedClasses.contains(className)) {
+            requestedClasses.add(className);
+        }
+    }
+
     /**
      * @param className
      * @return a <code>ClassInfo</code> object specified by the class name.
@@ -382,7 +473,7 @@ public class ClassHierarchy implements IDynamicBindingResolver {
     public ClassInfo getClassInfo(String className) {
         ClassInfo c = entries.get(className);
         if (c == null) {
-            requestedClasses.add(className);
+            recordRequestedClass(className);
         }
         return c;
     }
@@ -414,9 +505,9 @@ public class ClassHierarchy implements IDynamicBindingResolver {
         ClassInfo c2 = entries.get(typeName2);
 
         if (c1 == null)
-            requestedClasses.add(typeName1);
+            recordRequestedClass(typeName1);
         if (c2 == null)
-            requestedClasses.add(typeName2);
+            recordRequestedClass(typeName2);
 
         return (c1 != null) && (c2 != null) && (c1.getPackageName().equals(c2.getPackageName()));
     }
@@ -432,7 +523,7 @@ public class ClassHierarchy implements IDynamicBindingResolver {
             return JAVA_LANG_OBJECT;
         else {
             if (!parentClass.containsKey(className)) {
-                requestedClasses.add(className);
+                recordRequestedClass(className);
             }
             return parentClass.get(className);
         }
@@ -453,19 +544,36 @@ public class ClassHierarchy implements IDynamicBindingResolver {
             return parentInterfaces.get(className);
         } else {
             if (!entries.containsKey(className))
-                requestedClasses.add(className);
+                recordRequestedClass(className);
             return EMPTY;
         }
     }
 
     /**
-     * List all direct and transitive super-types of a specified type.
+     * List all direct and transitive super-types of a specified type. If the
+     * hierarchy is frozen, the result is an immutable collection shared among
+     * callers.
      * 
      * @param className specifies a fully qualified class name.
      */
     public Collection<String> listAllSuperTypes(String className) {
+        if (compiled == null) {
+            return computeAllSuperTypes(className);
+        }
+        Collection<String> classes = superTypesCache.get(className);
+        if (classes == null) {
+            classes = Collections.unmodifiableSet(computeAllSuperTypes(className));
+            Collection<String> previous = superTypesCache.putIfAbsent(className, classes);
+            if (previous != null) {
+                classes = previous;
+            }
+        }
+        return classes;
+    }
+
+    private Set<String> computeAllSuperTypes(String className) {
         if (!entries.containsKey(className))
-            requestedClasses.add(className);
+            recordRequestedClass(className);
 
         Set<String> classes = new HashSet<String>();
         Queue<String> worklist = new LinkedList<String>();
@@ -501,7 +609,7 @@ public class ClassHierarchy implements IDynamicBindingResolver {
      */
     public Collection<String> getSubtypes(String typeName) {
         if (!entries.containsKey(typeName))
-            requestedClasses.add(typeName);
+            recordRequestedClass(typeName);
 
         if (subtypes.containsKey(typeName)) {
             return subtypes.get(typeName);
@@ -512,9 +620,18 @@ public class ClassHierarchy implements IDynamicBindingResolver {
 
     /**
      * @param typeNames
-     * @return a collection of all the sub-types for the specified types.
+     * @return a collection of all the sub-types for the specified types. If the
+     *         hierarchy is frozen, the result is an immutable collection.
      */
     public Collection<String> getAllSubtypes(Iterable<String> typeNames) {
+        CompiledHierarchy c = compiled;
+        if (c != null) {
+            for (String t : typeNames) {
+                recordRequestedSubtypes(c, t);
+            }
+            return c.getAllSubtypes(typeNames);
+        }
+
         Stack<String> worklist = new Stack<String>();
         for (String t : typeNames) {
             worklist.push(t);
@@ -532,6 +649,43 @@ public class ClassHierarchy implements IDynamicBindingResolver {
         return visited;
     }
 
+    /**
+     * @param subtypeName   specifies a type.
+     * @param supertypeName specifies a type.
+     * @return true if the first type is the second type or its direct or
+     *         transitive subtype. The check takes constant time if the hierarchy
+     *         is frozen.
+     */
+    public boolean isSubtype(String subtypeName, String supertypeName) {
+        CompiledHierarchy c = compiled;
+        if (c == null) {
+            return getAllSubtypes(Collections.singletonList(supertypeName)).contains(subtypeName);
+        }
+        int supertypeId = recordRequestedSubtypes(c, supertypeName);
+        if (supertypeId < 0) {
+            return subtypeName.equals(supertypeName);
+        }
+        int subtypeId = c.getTypeId(subtypeName);
+        return subtypeId >= 0 && c.isSubtype(subtypeId, supertypeId);
+    }
+
+    /**
+     * Records the specified type and its subtypes as requested classes if they
+     * are not registered, as <code>getSubtypes</code> does. The subtypes of a
+     * type are recorded once, so that repeated queries take constant time.
+     * 
+     * @return the id of the type.
+     */
+    private int recordRequestedSubtypes(CompiledHierarchy c, String typeName) {
+        if (!entries.containsKey(typeName))
+            recordRequestedClass(typeName);
+        int id = c.getTypeId(typeName);
+        if (id >= 0) {
+            c.collectUnregisteredSubtypes(id, requestedClasses);
+        }
+        return id;
+    }
+
     /**
      * This method registers a class info object to the hierarchy. This method calls
      * registerSuperClass, registerSubtype and registerInterfaces.
@@ -603,4 +757,44 @@ public class ClassHierarchy implements IDynamicBindingResolver {
         private static final long serialVersionUID = -8288161390304221032L;
     }
 
+    /**
+     * A key of the dispatch cache.
+     */
+    private static final class CallTarget {
+
+        private final String className;
+        private final String methodName;
+        private final String methodDesc;
+        private final boolean dynamic;
+        private final int hash;
+
+        public CallTarget(String className, String methodName, String methodDesc, boolean dynamic) {
+            this.className = className;
+            this.methodName = methodName;
+            this.methodDesc = methodDesc;
+            this.dynamic = dynamic;
+            int h = className.hashCode();
+            h = h * 31 + methodName.hashCode();
+            h = h * 31 + methodDesc.hashCode();
+            this.hash = dynamic ? h : ~h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CallTarget)) {
+                return false;
+            }
+            CallTarget another = (CallTarget) obj;
+            return hash == another.hash && dynamic == another.dynamic && className.equals(another.className)
+                    && methodName.equals(another.methodName) && methodDesc.equals(another.methodDesc);
+        }
+    }
 }
@@ -14,6 +14,7 @@ import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
 
+import soba.core.signature.MemberSignatureTable;
 import soba.util.files.FileUtil;
 
 /**
@@ -31,8 +32,13 @@ public class ClassInfo {
     private String className;
     private String md5hash;
     private String label;
+    private byte[] bytes;
     private List<MethodInfo> methods = new ArrayList<>();
     private List<FieldInfo> fields = new ArrayList<>();
+    private volatile IFlowCache flowCache;
+    private volatile MemberIndex methodIndex;
+    private volatile MemberIndex fieldIndex;
+    private final MemberSignatureTable memberSignatures;
 
     private String superclassName;
     private List<String> interfaceNames;
@@ -62,34 +68,77 @@ public class ClassInfo {
      *                     close the stream by themselves.
      */
     public ClassInfo(String fileName, InputStream binaryStream) throws IOException {
-        this.fileName = fileName;
-        byte[] bytes = FileUtil.readFully(binaryStream);
-        ClassReader cr1;
-        try {
-            cr1 = new ClassReader(bytes) {
-                /**
-                 * This extension reduces the number of allocated strings. When reading SOBA and
-                 * GNU Trove class files, 52MB of 72MB strings can be discarded.
-                 */
-                @Override
-                public String readUTF8(int index, char[] buf) {
-                    return super.readUTF8(index, buf);
-                }
+        this(fileName, FileUtil.readFully(binaryStream));
+    }
 
-            };
-        } catch (ArrayIndexOutOfBoundsException e) {
-            throw new ClassReadFailureException(
-                    "ASM ClassReader cannot parse the bytecode. " + fileName + " " + e.getLocalizedMessage());
+    /**
+     * Creates a new <code>ClassInfo</code> instance from a byte array.
+     * 
+     * @param fileName
+     * @param bytes       specifies Java bytecode.
+     * @param loaderLabel specifies a label indicating a location/category for a
+     *                    class.
+     * @throws IOException
+     */
+    public ClassInfo(String fileName, byte[] bytes, String loaderLabel) throws IOException {
+        this(fileName, bytes, loaderLabel, false);
+    }
+
+    /**
+     * Creates a new <code>ClassInfo</code> instance from a byte array. The
+     * constructor does not depend on any shared state, so that multiple threads can
+     * create <code>ClassInfo</code> objects at once.
+     * 
+     * @param fileName
+     * @param bytes    specifies Java bytecode.
+     */
+    public ClassInfo(String fileName, byte[] bytes) throws IOException {
+        this(fileName, bytes, null, false);
+    }
+
+    /**
+     * Creates a new <code>ClassInfo</code> instance from a byte array.
+     * 
+     * @param fileName
+     * @param bytes       specifies Java bytecode.
+     * @param loaderLabel specifies a label indicating a location/category for a
+     *                    class.
+     * @param lazy        If true, the constructor reads only the class header and
+     *                    member signatures. The byte array is kept in the object,
+     *                    and method bodies are loaded when they are used for the
+     *                    first time.
+     * @throws IOException
+     */
+    public ClassInfo(String fileName, byte[] bytes, String loaderLabel, boolean lazy) throws IOException {
+        this(fileName, bytes, loaderLabel, lazy, new MemberSignatureTable());
+    }
+
+    /**
+     * Creates a new <code>ClassInfo</code> instance from a byte array.
+     * 
+     * @param fileName
+     * @param bytes            specifies Java bytecode.
+     * @param loaderLabel      specifies a label indicating a location/category
+     *                         for a class.
+     * @param lazy             If true, method bodies are loaded when they are
+     *                         used for the first time.
+     * @param memberSignatures specifies a table assigning ids to member
+     *                         signatures. The table may be shared by classes.
+     * @throws IOException
+     */
+    ClassInfo(String fileName, byte[] bytes, String loaderLabel, boolean lazy, MemberSignatureTable memberSignatures)
+            throws IOException {
+        this.memberSignatures = memberSignatures;
+        this.fileName = fileName;
+        this.label = loaderLabel;
+        ClassNode classNode;
+        if (lazy) {
+            this.bytes = bytes;
+            classNode = new ClassNode(Opcodes.ASM5);
+            createClassReader(fileName, bytes).accept(classNode, ClassReader.SKIP_CODE);
+        } else {
+            classNode = readClassNode(fileName, bytes);
         }
-        ClassNode classNode = new ClassNode(Opcodes.ASM5) {
-            @Override
-            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
-                    String[] exceptions) {
-                return new JSRInlinerAdapter(super.visitMethod(access, name, desc, signature, exceptions), access, name,
-                        desc, signature, exceptions);
-            }
-        };
-        cr1.accept(classNode, 0);
         this.className = classNode.name;
 
         int pkgIndex = className.lastIndexOf(PACKAGE_SEPARATOR);
@@ -118,7 +167,11 @@ public class ClassInfo {
         this.md5hash = MD5.getMD5(bytes);
 
         for (MethodNode m : classNode.methods) {
-            methods.add(new MethodInfo(this, m));
+            if (lazy) {
+                methods.add(new MethodInfo(this, m, methods.size()));
+            } else {
+                methods.add(new MethodInfo(this, m));
+            }
         }
 
         for (int i = 0; i < classNode.fields.size(); ++i) {
@@ -131,6 +184,113 @@ public class ClassInfo {
         }
     }
 
+    private static ClassReader createClassReader(String fileName, byte[] bytes) throws ClassReadFailureException {
+        try {
+            return new ClassReader(bytes) {
+                /**
+                 * This extension reduces the number of allocated strings. When reading SOBA and
+                 * GNU Trove class files, 52MB of 72MB strings can be discarded.
+                 */
+                @Override
+                public String readUTF8(int index, char[] buf) {
+                    return super.readUTF8(index, buf);
+                }
+
+            };
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ClassReadFailureException(
+                    "ASM ClassReader cannot parse the bytecode. " + fileName + " " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Reads a class including method bodies. JSR/RET instructions are inlined.
+     */
+    private static ClassNode readClassNode(String fileName, byte[] bytes) throws ClassReadFailureException {
+        ClassReader cr1 = createClassReader(fileName, bytes);
+        ClassNode classNode = new ClassNode(Opcodes.ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                    String[] exceptions) {
+                return new JSRInlinerAdapter(super.visitMethod(access, name, desc, signature, exceptions), access, name,
+                        desc, signature, exceptions);
+            }
+        };
+        cr1.accept(classNode, 0);
+        return classNode;
+    }
+
+    /**
+     * Loads method bodies of a class created in the lazy mode. Bodies that are
+     * already loaded are reused so that the identity of instruction objects is
+     * preserved.
+     * 
+     * @return a list of method nodes in the declaration order.
+     */
+    synchronized List<MethodNode> loadMethodBodies() {
+        ClassNode classNode;
+        try {
+            classNode = readClassNode(fileName, bytes);
+        } catch (ClassReadFailureException e) {
+            // The same bytes have been successfully parsed by the constructor
+            throw new IllegalStateException(e);
+        }
+        List<MethodNode> bodies = new ArrayList<>(classNode.methods);
+        for (int i = 0; i < methods.size(); ++i) {
+            MethodInfo m = methods.get(i);
+            MethodNode loaded = m.getLoadedMethodBody();
+            if (loaded != null) {
+                bodies.set(i, loaded);
+            } else {
+                m.setMethodBody(bodies.get(i));
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * Releases method bodies loaded in the lazy mode. The bodies are reloaded
+     * when they are used again. Analysis results computed before the release
+     * keep referring to the released bodies. Loaded bodies are also released by
+     * the garbage collector under memory pressure. This method does nothing for
+     * a class created in the eager mode.
+     */
+    public synchronized void releaseMethodBodies() {
+        if (isLazy()) {
+            for (MethodInfo m : methods) {
+                m.setMethodBody(null);
+            }
+        }
+    }
+
+    /**
+     * @return true if method bodies are loaded on demand.
+     */
+    public boolean isLazy() {
+        return bytes != null;
+    }
+
+    /**
+     * Sets a cache to keep the results of control-flow and data-flow analysis of
+     * the methods. Results kept by <code>MethodInfo</code> objects are discarded.
+     * 
+     * @param cache specifies a cache. If null, each <code>MethodInfo</code>
+     *              object keeps its result by itself.
+     */
+    public void setFlowCache(IFlowCache cache) {
+        this.flowCache = cache;
+        for (MethodInfo m : methods) {
+            m.clearFlowResult();
+        }
+    }
+
+    /**
+     * @return a cache of analysis results. The return value may be null.
+     */
+    public IFlowCache getFlowCache() {
+        return flowCache;
+    }
+
     public static ClassInfo createLibraryClass(String fileName, InputStream binaryStream) throws IOException {
         ClassInfo c = new ClassInfo(fileName, binaryStream);
         c.label = LIBRARY_LABEL;
@@ -241,12 +401,35 @@ public class ClassInfo {
      *         method.
      */
     public MethodInfo findMethod(String methodName, String methodDesc) {
-        for (MethodInfo m : methods) {
-            if (m.getMethodName().equals(methodName) && m.getDescriptor().equals(methodDesc)) {
-                return m;
+        // The index registers the signatures of this class before the lookup.
+        MemberIndex index = getMethodIndex();
+        int id = memberSignatures.findId(methodName, methodDesc);
+        if (id == MemberSignatureTable.NOT_FOUND) {
+            return null;
+        }
+        int position = index.indexOf(id);
+        return (position >= 0) ? methods.get(position) : null;
+    }
+
+    /**
+     * @return the table assigning ids to the member signatures of this class.
+     */
+    MemberSignatureTable getMemberSignatureTable() {
+        return memberSignatures;
+    }
+
+    private MemberIndex getMethodIndex() {
+        MemberIndex index = methodIndex;
+        if (index == null) {
+            int[] ids = new int[methods.size()];
+            for (int i = 0; i < ids.length; ++i) {
+                MethodInfo m = methods.get(i);
+                ids[i] = memberSignatures.getId(m.getMethodName(), m.getDescriptor());
             }
+            index = new MemberIndex(ids);
+            methodIndex = index;
         }
-        return null;
+        return index;
     }
 
     /**
@@ -278,12 +461,27 @@ public class ClassInfo {
      *         field.
      */
     public FieldInfo findField(String fieldName, String fieldDesc) {
-        for (FieldInfo f : fields) {
-            if (f.getFieldName().equals(fieldName) && f.getDescriptor().equals(fieldDesc)) {
-                return f;
+        MemberIndex index = getFieldIndex();
+        int id = memberSignatures.findId(fieldName, fieldDesc);
+        if (id == MemberSignatureTable.NOT_FOUND) {
+            return null;
+        }
+        int position = index.indexOf(id);
+        return (position >= 0) ? fields.get(position) : null;
+    }
+
+    private MemberIndex getFieldIndex() {
+        MemberIndex index = fieldIndex;
+        if (index == null) {
+            int[] ids = new int[fields.size()];
+            for (int i = 0; i < ids.length; ++i) {
+                FieldInfo f = fields.get(i);
+                ids[i] = memberSignatures.getId(f.getFieldName(), f.getDescriptor());
             }
+            index = new MemberIndex(ids);
+            fieldIndex = index;
         }
-        return null;
+        return index;
     }
 
     /**
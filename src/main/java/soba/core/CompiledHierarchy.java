@@ -0,0 +1,413 @@
+package soba.core;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class is an immutable representation of the subtype relation created
+ * by a frozen <code>ClassHierarchy</code>.
+ *
+ * Each type has a dense integer id given by the pre-order numbering of a
+ * spanning forest of the subtype graph, so that the descendants of a type in
+ * the forest are the ids <code>[id, treeEnd[id])</code>. If all the subtypes
+ * of a type are included in the interval (this is the case for most classes),
+ * the subtype relation is checked by comparing ids. Otherwise (e.g. interfaces
+ * implemented by classes in different subtrees), the subtypes are stored in a
+ * bit set.
+ */
+class CompiledHierarchy {
+
+    private static final int NOT_FOUND = -1;
+
+    private TObjectIntHashMap<String> typeIds;
+    private String[] typeNames;
+    private int[] treeEnd;
+    private BitSet[] closures;
+
+    /**
+     * Types that are not registered to the hierarchy but are subtypes of other
+     * types. Such types are reported as requested classes.
+     */
+    private int[] unregisteredSubtypes;
+
+    /**
+     * Flags of types whose unregistered subtypes are already collected.
+     * The flags are shared by threads querying the hierarchy.
+     */
+    private AtomicIntegerArray collectedSupertypes;
+
+    /**
+     * Creates a new <code>CompiledHierarchy</code> instance.
+     *
+     * @param subtypes        specifies direct subtypes of each type.
+     * @param registeredTypes specifies types registered to the hierarchy.
+     */
+    public CompiledHierarchy(Map<String, Set<String>> subtypes, Collection<String> registeredTypes) {
+        // Temporary ids are assigned in the order of names.
+        ArrayList<String> names = new ArrayList<>(registeredTypes);
+        for (Map.Entry<String, Set<String>> entry : subtypes.entrySet()) {
+            names.add(entry.getKey());
+            names.addAll(entry.getValue());
+        }
+        TObjectIntHashMap<String> temporaryIds = new TObjectIntHashMap<>(names.size() * 2, 0.5f, NOT_FOUND);
+        String[] sortedNames = names.toArray(new String[names.size()]);
+        Arrays.sort(sortedNames);
+        int n = 0;
+        for (String name : sortedNames) {
+            if (n == 0 || !name.equals(sortedNames[n - 1])) {
+                sortedNames[n] = name;
+                temporaryIds.put(name, n);
+                n++;
+            }
+        }
+
+        // Edges from a type to its subtypes in temporary ids
+        int[] edgeOffsets = new int[n + 1];
+        for (Map.Entry<String, Set<String>> entry : subtypes.entrySet()) {
+            edgeOffsets[temporaryIds.get(entry.getKey()) + 1] = entry.getValue().size();
+        }
+        for (int i = 0; i < n; ++i) {
+            edgeOffsets[i + 1] += edgeOffsets[i];
+        }
+        int[] edges = new int[edgeOffsets[n]];
+        boolean[] hasParent = new boolean[n];
+        for (Map.Entry<String, Set<String>> entry : subtypes.entrySet()) {
+            int begin = edgeOffsets[temporaryIds.get(entry.getKey())];
+            int end = begin;
+            for (String s : entry.getValue()) {
+                int child = temporaryIds.get(s);
+                edges[end++] = child;
+                hasParent[child] = true;
+            }
+            Arrays.sort(edges, begin, end);
+        }
+
+        // Pre-order numbering of a depth-first spanning forest. Roots are
+        // visited first; remaining types are included in cycles.
+        int[] preorder = new int[n];
+        Arrays.fill(preorder, NOT_FOUND);
+        int[] parentOf = new int[n];
+        int[] endOf = new int[n];
+        int[] stack = new int[n];
+        int[] edgeIndex = new int[n];
+        int count = 0;
+        for (int pass = 0; pass < 2; ++pass) {
+            for (int root = 0; root < n; ++root) {
+                if (preorder[root] != NOT_FOUND || (pass == 0 && hasParent[root])) {
+                    continue;
+                }
+                int top = 0;
+                stack[0] = root;
+                edgeIndex[root] = edgeOffsets[root];
+                parentOf[root] = NOT_FOUND;
+                preorder[root] = count++;
+                while (top >= 0) {
+                    int v = stack[top];
+                    if (edgeIndex[v] < edgeOffsets[v + 1]) {
+                        int w = edges[edgeIndex[v]++];
+                        if (preorder[w] == NOT_FOUND) {
+                            preorder[w] = count++;
+                            parentOf[w] = v;
+                            edgeIndex[w] = edgeOffsets[w];
+                            stack[++top] = w;
+                        }
+                    } else {
+                        endOf[v] = count;
+                        top--;
+                    }
+                }
+            }
+        }
+
+        // Renumber types by the pre-order numbers
+        typeIds = new TObjectIntHashMap<>(n * 2, 0.5f, NOT_FOUND);
+        typeNames = new String[n];
+        int[] treeParent = new int[n];
+        treeEnd = new int[n];
+        boolean[] registered = new boolean[n];
+        boolean[] hasSupertype = new boolean[n];
+        int[] childOffsets = new int[n + 1];
+        for (int v = 0; v < n; ++v) {
+            int id = preorder[v];
+            typeNames[id] = sortedNames[v];
+            typeIds.put(sortedNames[v], id);
+            treeParent[id] = (parentOf[v] == NOT_FOUND) ? NOT_FOUND : preorder[parentOf[v]];
+            treeEnd[id] = endOf[v];
+            hasSupertype[id] = hasParent[v];
+            childOffsets[id + 1] = edgeOffsets[v + 1] - edgeOffsets[v];
+        }
+        for (String name : registeredTypes) {
+            registered[typeIds.get(name)] = true;
+        }
+        for (int i = 0; i < n; ++i) {
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        int[] children = new int[edges.length];
+        for (int v = 0; v < n; ++v) {
+            int pos = childOffsets[preorder[v]];
+            for (int e = edgeOffsets[v]; e < edgeOffsets[v + 1]; ++e) {
+                children[pos++] = preorder[edges[e]];
+            }
+        }
+
+        // A subtree is closed if no edges in the subtree leave the subtree.
+        int[] minTarget = new int[n];
+        int[] maxTarget = new int[n];
+        for (int id = 0; id < n; ++id) {
+            minTarget[id] = id;
+            maxTarget[id] = id;
+            for (int e = childOffsets[id]; e < childOffsets[id + 1]; ++e) {
+                minTarget[id] = Math.min(minTarget[id], children[e]);
+                maxTarget[id] = Math.max(maxTarget[id], children[e]);
+            }
+        }
+        for (int id = n - 1; id >= 0; --id) {
+            int p = treeParent[id];
+            if (p != NOT_FOUND) {
+                minTarget[p] = Math.min(minTarget[p], minTarget[id]);
+                maxTarget[p] = Math.max(maxTarget[p], maxTarget[id]);
+            }
+        }
+
+        // Subtypes of the other types are stored in bit sets.
+        // Each type is expanded at most once, and pushes its children.
+        closures = new BitSet[n];
+        int[] worklist = new int[children.length + 1];
+        for (int id = n - 1; id >= 0; --id) {
+            if (minTarget[id] < id || maxTarget[id] >= treeEnd[id]) {
+                BitSet closure = new BitSet(n);
+                int top = 0;
+                worklist[0] = id;
+                while (top >= 0) {
+                    int v = worklist[top--];
+                    if (closure.get(v)) {
+                        continue;
+                    }
+                    if (v != id && closures[v] != null) {
+                        closure.or(closures[v]);
+                    } else if (v != id && minTarget[v] >= v && maxTarget[v] < treeEnd[v]) {
+                        closure.set(v, treeEnd[v]);
+                    } else {
+                        closure.set(v);
+                        for (int e = childOffsets[v]; e < childOffsets[v + 1]; ++e) {
+                            if (!closure.get(children[e])) {
+                                worklist[++top] = children[e];
+                            }
+                        }
+                    }
+                }
+                closures[id] = closure;
+            }
+        }
+
+        int unregisteredCount = 0;
+        int[] unregistered = new int[n];
+        for (int id = 0; id < n; ++id) {
+            if (!registered[id] && hasSupertype[id]) {
+                unregistered[unregisteredCount++] = id;
+            }
+        }
+        unregisteredSubtypes = Arrays.copyOf(unregistered, unregisteredCount);
+        collectedSupertypes = new AtomicIntegerArray(n);
+    }
+
+    /**
+     * @param typeName
+     * @return the id of the type. If the type is not included in the hierarchy,
+     *         the return value is -1.
+     */
+    public int getTypeId(String typeName) {
+        return typeIds.get(typeName);
+    }
+
+    /**
+     * @return the number of types.
+     */
+    public int getTypeCount() {
+        return typeNames.length;
+    }
+
+    /**
+     * @param id specifies a type.
+     * @return the type name.
+     */
+    public String getTypeName(int id) {
+        return typeNames[id];
+    }
+
+    /**
+     * @param subtypeId   specifies a type.
+     * @param supertypeId specifies a type.
+     * @return true if the first type is the second type or its direct or
+     *         transitive subtype.
+     */
+    public boolean isSubtype(int subtypeId, int supertypeId) {
+        BitSet closure = closures[supertypeId];
+        if (closure != null) {
+            return closure.get(subtypeId);
+        } else {
+            return supertypeId <= subtypeId && subtypeId < treeEnd[supertypeId];
+        }
+    }
+
+    /**
+     * Adds subtypes that are not registered to the hierarchy. The subtypes of
+     * a type are added only at the first call for the type, so that repeated
+     * calls take constant time. Hence, the same collection must be given to
+     * all the calls.
+     *
+     * @param supertypeId specifies a type.
+     * @param result      receives the names of unregistered subtypes, excluding
+     *                    the type itself. The collection must be thread-safe.
+     */
+    public void collectUnregisteredSubtypes(int supertypeId, Collection<String> result) {
+        if (collectedSupertypes.get(supertypeId) != 0) {
+            return;
+        }
+        // Threads calling this method at the same time may add the same names
+        for (int id : unregisteredSubtypes) {
+            if (id != supertypeId && isSubtype(id, supertypeId)) {
+                result.add(typeNames[id]);
+            }
+        }
+        collectedSupertypes.set(supertypeId, 1);
+    }
+
+    /**
+     * @param typeNames specifies types.
+     * @return an immutable set of the specified types and their direct and
+     *         transitive subtypes. Types not included in the hierarchy are
+     *         included in the set as they are.
+     */
+    public Set<String> getAllSubtypes(Iterable<String> typeNames) {
+        int single = NOT_FOUND;
+        BitSet bits = null;
+        List<String> others = null;
+        for (String t : typeNames) {
+            int id = typeIds.get(t);
+            if (id == NOT_FOUND) {
+                if (others == null) {
+                    others = new ArrayList<>();
+                }
+                if (!others.contains(t)) {
+                    others.add(t);
+                }
+            } else if (bits == null && (single == NOT_FOUND || single == id)) {
+                single = id;
+            } else {
+                if (bits == null) {
+                    bits = new BitSet(this.typeNames.length);
+                    addSubtypes(bits, single);
+                }
+                addSubtypes(bits, id);
+            }
+        }
+        if (bits == null && single != NOT_FOUND) {
+            bits = closures[single];
+            if (bits == null) {
+                return new SubtypeSet(null, single, treeEnd[single], others);
+            }
+        }
+        return new SubtypeSet(bits, 0, 0, others);
+    }
+
+    private void addSubtypes(BitSet bits, int id) {
+        if (closures[id] != null) {
+            bits.or(closures[id]);
+        } else {
+            bits.set(id, treeEnd[id]);
+        }
+    }
+
+    /**
+     * An immutable set of type names represented by a range of ids or a bit set
+     * of ids, and a list of names not included in the hierarchy.
+     */
+    private class SubtypeSet extends AbstractSet<String> {
+
+        private BitSet bits;
+        private int begin;
+        private int end;
+        private List<String> others;
+        private int size;
+
+        public SubtypeSet(BitSet bits, int begin, int end, List<String> others) {
+            this.bits = bits;
+            this.begin = begin;
+            this.end = end;
+            this.others = others;
+            this.size = ((bits != null) ? bits.cardinality() : end - begin)
+                    + ((others != null) ? others.size() : 0);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            int id = typeIds.get(o);
+            if (id == NOT_FOUND) {
+                return others != null && others.contains(o);
+            } else if (bits != null) {
+                return bits.get(id);
+            } else {
+                return begin <= id && id < end;
+            }
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int next = firstId();
+                private int otherIndex = 0;
+
+                private int firstId() {
+                    if (bits != null) {
+                        return bits.nextSetBit(0);
+                    } else {
+                        return (begin < end) ? begin : NOT_FOUND;
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != NOT_FOUND || (others != null && otherIndex < others.size());
+                }
+
+                @Override
+                public String next() {
+                    if (next != NOT_FOUND) {
+                        String name = typeNames[next];
+                        if (bits != null) {
+                            next = bits.nextSetBit(next + 1);
+                        } else {
+                            next = (next + 1 < end) ? next + 1 : NOT_FOUND;
+                        }
+                        return name;
+                    } else if (others != null && otherIndex < others.size()) {
+                        return others.get(otherIndex++);
+                    } else {
+                        throw new NoSuchElementException();
+                    }
+                }
+            };
+        }
+    }
+}
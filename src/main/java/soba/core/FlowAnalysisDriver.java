@@ -0,0 +1,292 @@
+package soba.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import soba.core.JavaProgram.ErrorMessage;
+import soba.core.method.ControlDependence;
+import soba.core.method.DataDependence;
+import soba.core.method.FlowResult;
+
+/**
+ * This class analyzes the methods of a program in parallel. Data-flow,
+ * control-flow and control dependence of each method are computed on a
+ * fork-join pool and kept by the <code>MethodInfo</code> objects (or their
+ * <code>IFlowCache</code>), so that subsequent analyses such as
+ * <code>VTAResolver</code> and <code>CallGraph</code> reuse the results.
+ * Large methods are scheduled first, and idle workers steal remaining methods.
+ * If some method bodies are not loaded yet (see the lazy mode of
+ * <code>JavaProgram</code>), the methods are scheduled in the given order
+ * instead, so that the bodies are parsed by the workers.
+ */
+public class FlowAnalysisDriver {
+
+    private int threads;
+    private IMethodFilter filter;
+    private IFlowAnalysisListener listener;
+    private boolean controlDependence = true;
+    private ControlDependence.Algorithm controlDependenceAlgorithm = ControlDependence.Algorithm.REACHABILITY;
+    private boolean localVariables = true;
+
+    /**
+     * Creates a new <code>FlowAnalysisDriver</code> instance using all the
+     * available processors.
+     */
+    public FlowAnalysisDriver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new <code>FlowAnalysisDriver</code> instance.
+     *
+     * @param threads specifies the number of worker threads.
+     */
+    public FlowAnalysisDriver(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param filter specifies methods to be analyzed. If null, all the methods
+     *               with method bodies are analyzed.
+     */
+    public void setMethodFilter(IMethodFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @param listener receives the progress of the analysis. The value may be
+     *                 null.
+     */
+    public void setListener(IFlowAnalysisListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param value If true (default), control dependence graphs are computed.
+     */
+    public void setControlDependence(boolean value) {
+        this.controlDependence = value;
+    }
+
+    /**
+     * @param algorithm specifies an algorithm to compute control dependence
+     *                  graphs. The default is <code>REACHABILITY</code>. The
+     *                  analysis results of the methods use the algorithm
+     *                  afterwards, e.g. in <code>MethodInfo.getControlDependence()</code>.
+     */
+    public void setControlDependenceAlgorithm(ControlDependence.Algorithm algorithm) {
+        this.controlDependenceAlgorithm = algorithm;
+    }
+
+    /**
+     * @param value If true (default), local variable entries are computed.
+     */
+    public void setLocalVariables(boolean value) {
+        this.localVariables = value;
+    }
+
+    /**
+     * Analyzes the methods of all the classes in a program.
+     *
+     * @param program
+     * @return a report of the analysis.
+     */
+    public Report analyze(JavaProgram program) {
+        List<MethodInfo> methods = new ArrayList<>();
+        for (ClassInfo c : program.getClasses()) {
+            methods.addAll(c.getMethods());
+        }
+        return analyze(methods);
+    }
+
+    /**
+     * Analyzes the specified methods.
+     *
+     * @param methods
+     * @return a report of the analysis.
+     */
+    public Report analyze(Collection<MethodInfo> methods) {
+        long start = System.currentTimeMillis();
+        List<MethodInfo> targets = new ArrayList<>(methods.size());
+        for (MethodInfo m : methods) {
+            if (m.hasMethodBody() && (filter == null || filter.acceptMethod(m))) {
+                targets.add(m);
+            }
+        }
+        MethodInfo[] sorted = targets.toArray(new MethodInfo[targets.size()]);
+        if (isMethodBodyLoaded(targets)) {
+            final int[] instructionCounts = new int[targets.size()];
+            Integer[] order = new Integer[targets.size()];
+            for (int i = 0; i < targets.size(); ++i) {
+                instructionCounts[i] = targets.get(i).getInstructionCount();
+                order[i] = i;
+            }
+            // Large methods first
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Integer.compare(instructionCounts[o2], instructionCounts[o1]);
+                }
+            });
+            for (int i = 0; i < order.length; ++i) {
+                sorted[i] = targets.get(order[i]);
+            }
+        }
+
+        Report report = new Report(sorted.length);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new AnalysisTask(sorted, 0, sorted.length, report));
+        } finally {
+            pool.shutdown();
+        }
+        report.elapsedTime = System.currentTimeMillis() - start;
+        return report;
+    }
+
+    /**
+     * @return true if all the method bodies are available. Reading the sizes of
+     *         lazily loaded methods on the caller thread would parse all the
+     *         classes, and the parsed bodies might be released before the
+     *         workers use them.
+     */
+    private static boolean isMethodBodyLoaded(List<MethodInfo> methods) {
+        for (MethodInfo m : methods) {
+            if (!m.isMethodBodyLoaded()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void analyzeMethod(MethodInfo m, Report report) {
+        try {
+            FlowResult result = m.getFlowResult(controlDependenceAlgorithm);
+            report.instructionCount.add(result.getInstructionCount());
+            result.getControlFlowGraph();
+            if (controlDependence) {
+                result.getControlDependenceGraph();
+            }
+            DataDependence dataDependence = result.getDataDependence();
+            if (dataDependence == null) {
+                report.addDataFlowFailure(m);
+                if (listener != null) {
+                    listener.methodFailed(m, null);
+                }
+            } else if (localVariables) {
+                dataDependence.getLocalVariables();
+            }
+        } catch (RuntimeException e) {
+            report.addError(m, e);
+            if (listener != null) {
+                listener.methodFailed(m, e);
+            }
+        }
+        int completed = report.completedCount.incrementAndGet();
+        if (listener != null) {
+            listener.methodAnalyzed(m, completed, report.methodCount);
+        }
+    }
+
+    private class AnalysisTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private MethodInfo[] methods;
+        private int begin;
+        private int end;
+        private Report report;
+
+        public AnalysisTask(MethodInfo[] methods, int begin, int end, Report report) {
+            this.methods = methods;
+            this.begin = begin;
+            this.end = end;
+            this.report = report;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin == 1) {
+                analyzeMethod(methods[begin], report);
+            } else if (end - begin > 1) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new AnalysisTask(methods, begin, middle, report),
+                        new AnalysisTask(methods, middle, end, report));
+            }
+        }
+    }
+
+    /**
+     * This class represents the result of <code>FlowAnalysisDriver</code>.
+     */
+    public static class Report {
+
+        private int methodCount;
+        private LongAdder instructionCount = new LongAdder();
+        private long elapsedTime;
+        private AtomicInteger completedCount = new AtomicInteger();
+        private List<MethodInfo> dataFlowFailures = new ArrayList<>();
+        private List<ErrorMessage> errors = new ArrayList<>();
+
+        private Report(int methodCount) {
+            this.methodCount = methodCount;
+        }
+
+        private synchronized void addDataFlowFailure(MethodInfo m) {
+            dataFlowFailures.add(m);
+        }
+
+        private synchronized void addError(MethodInfo m, Exception e) {
+            errors.add(new ErrorMessage(m.getMethodKey(), e));
+        }
+
+        /**
+         * @return the number of analyzed methods.
+         */
+        public int getMethodCount() {
+            return methodCount;
+        }
+
+        /**
+         * @return the total number of instructions of the analyzed methods. The
+         *         methods which caused errors are not included.
+         */
+        public long getInstructionCount() {
+            return instructionCount.sum();
+        }
+
+        /**
+         * @return the elapsed time in milliseconds.
+         */
+        public long getElapsedTime() {
+            return elapsedTime;
+        }
+
+        /**
+         * @return a list of methods whose data-flow analysis failed. Such methods
+         *         do not have <code>DataDependence</code> objects.
+         */
+        public synchronized List<MethodInfo> getDataFlowFailures() {
+            return Collections.unmodifiableList(new ArrayList<>(dataFlowFailures));
+        }
+
+        /**
+         * @return a list of exceptions thrown by the analysis. Each message is
+         *         named by <code>MethodInfo.getMethodKey()</code>.
+         */
+        public synchronized List<ErrorMessage> getErrors() {
+            return Collections.unmodifiableList(new ArrayList<>(errors));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package soba.core;
+
+/**
+ * This interface receives the progress of <code>FlowAnalysisDriver</code>.
+ * Methods of the interface are called by worker threads of the driver; an
+ * implementation must be thread-safe.
+ */
+public interface IFlowAnalysisListener {
+
+    /**
+     * This method is called when a method has been processed. For a failed
+     * method, the method is called after <code>methodFailed</code>.
+     * 
+     * @param m              is the processed method.
+     * @param completedCount is the number of methods processed so far,
+     *                       including failed methods.
+     * @param totalCount     is the number of methods to be processed.
+     */
+    public void methodAnalyzed(MethodInfo m, int completedCount, int totalCount);
+
+    /**
+     * This method is called when the analysis of a method has failed.
+     * 
+     * @param m     is the method.
+     * @param error is an exception thrown by the analysis. The value is null if
+     *              the data-flow analysis rejected the method (e.g. because of
+     *              inconsistent bytecode).
+     */
+    public void methodFailed(MethodInfo m, Exception error);
+}
@@ -0,0 +1,36 @@
+package soba.core;
+
+import soba.core.method.FlowResult;
+
+/**
+ * This interface represents a storage of the results of control-flow and
+ * data-flow analysis. A <code>MethodInfo</code> object whose class has a cache
+ * keeps its result in the cache instead of keeping it by itself. A result
+ * removed from a cache is recomputed when it is requested again.
+ */
+public interface IFlowCache {
+
+    /**
+     * @param m specifies a method.
+     * @return the result of the method. The return value is null if the cache
+     *         does not have the result.
+     */
+    public FlowResult get(MethodInfo m);
+
+    /**
+     * Stores the result of a method.
+     *
+     * @param m      specifies a method.
+     * @param result is the result of the method. If null, the cache removes the
+     *               result of the method.
+     */
+    public void put(MethodInfo m, FlowResult result);
+
+    /**
+     * @param m specifies a method.
+     * @return true if the cache has the result of the method. The method does
+     *         not affect statistics of the cache.
+     */
+    public boolean contains(MethodInfo m);
+
+}
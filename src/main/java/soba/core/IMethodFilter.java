@@ -0,0 +1,12 @@
+package soba.core;
+
+public interface IMethodFilter {
+
+    /**
+     * This method determines whether a method is processed.
+     * 
+     * @param m is a method.
+     * @return true to process the method.
+     */
+    public boolean acceptMethod(MethodInfo m);
+}
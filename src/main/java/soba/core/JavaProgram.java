@@ -2,14 +2,23 @@ package soba.core;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import soba.core.signature.MemberSignatureTable;
+import soba.util.files.FileUtil;
 import soba.util.files.IClassList;
 import soba.util.files.IClassListCallback;
+import soba.util.files.MappedZipFile;
 
 /**
  * This class represents a Java program.
@@ -22,6 +31,10 @@ public class JavaProgram {
     private List<ClassInfo> duplicated;
     private List<String> filtered;
     private List<ErrorMessage> errors;
+    private boolean lazy;
+    private MemberSignatureTable memberSignatures; // shared by the classes
+
+    private static final int PENDING_CLASSES_PER_THREAD = 64;
 
     /**
      * Creates a new <code>JavaProgram</code> instance.
@@ -40,6 +53,41 @@ public class JavaProgram {
      * @param filter          specifies classes to be analyzed.
      */
     public JavaProgram(final IClassList[] lists, final IClassFilter filter) {
+        this(lists, filter, 1);
+    }
+
+    /**
+     * Creates a new <code>JavaProgram</code> instance loading classes with worker
+     * threads. Class files are read from the lists sequentially, while
+     * <code>ClassInfo</code> objects are created by the worker threads. The
+     * classes are registered in the order of the lists, so that the resultant
+     * object is the same as one created by the sequential mode. If a class file
+     * cannot be parsed, the list is read again by the caller thread from the
+     * class, so that the list handles the error as in the sequential mode.
+     * 
+     * @param lists
+     * @param filter  specifies classes to be analyzed.
+     * @param threads specifies the number of worker threads. If the value is less
+     *                than 2, classes are loaded by the caller thread.
+     */
+    public JavaProgram(final IClassList[] lists, final IClassFilter filter, int threads) {
+        this(lists, filter, threads, false);
+    }
+
+    /**
+     * Creates a new <code>JavaProgram</code> instance.
+     * 
+     * @param lists
+     * @param filter  specifies classes to be analyzed.
+     * @param threads specifies the number of worker threads. If the value is less
+     *                than 2, classes are loaded by the caller thread.
+     * @param lazy    If true, method bodies are not parsed until they are used.
+     *                The mode reduces memory consumption for analyses using only
+     *                the class hierarchy and method signatures.
+     */
+    public JavaProgram(final IClassList[] lists, final IClassFilter filter, int threads, boolean lazy) {
+        this.lazy = lazy;
+        memberSignatures = new MemberSignatureTable(65536);
         classes = new HashMap<String, ClassInfo>(65536);
         errors = new ArrayList<ErrorMessage>(1024);
         loaded = new ArrayList<ClassInfo>(65536);
@@ -47,43 +95,266 @@ public class JavaProgram {
         filtered = new ArrayList<String>(1024);
         classHierarchy = new ClassHierarchy();
 
+        if (threads < 2) {
+            loadClasses(lists, filter);
+        } else {
+            loadClassesInParallel(lists, filter, threads);
+        }
+    }
+
+    private void loadClasses(final IClassList[] lists, final IClassFilter filter) {
         for (final IClassList list : lists) {
             if (list == null)
                 continue;
 
-            list.process(new IClassListCallback() {
+            list.process(new SequentialCallback(list.getLabel(), filter, 0));
+        }
+    }
+
+    /**
+     * Loads classes by the caller thread. The parallel mode also uses this
+     * object to read a list again from a class file that cannot be parsed, so
+     * that the list handles the error in the same way as the sequential mode.
+     */
+    private class SequentialCallback implements IClassListCallback {
+
+        private String label;
+        private IClassFilter filter;
+        private int skippedEvents; // the number of events already handled by the parallel mode
+        private int eventCount;
 
-                @Override
-                public boolean reportError(String name, Exception e) {
-                    errors.add(new ErrorMessage(name, e));
-                    return false;
-                }
+        public SequentialCallback(String label, IClassFilter filter, int skippedEvents) {
+            this.label = label;
+            this.filter = filter;
+            this.skippedEvents = skippedEvents;
+        }
+
+        @Override
+        public boolean reportError(String name, Exception e) {
+            if (eventCount++ >= skippedEvents) {
+                errors.add(new ErrorMessage(name, e));
+            }
+            return false;
+        }
+
+        @Override
+        public void process(String name, InputStream stream) throws IOException {
+            if (eventCount++ < skippedEvents) {
+                return;
+            }
+            if (filter == null || filter.loadClass(name)) {
+                ClassInfo c = new ClassInfo(name, FileUtil.readFully(stream), label, lazy, memberSignatures);
+                registerClass(name, c, filter);
+            } else {
+                filtered.add(name);
+            }
+        }
+
+        @Override
+        public boolean isTarget(String name) {
+            return name.endsWith(".class");
+        }
+    }
+
+    private void loadClassesInParallel(final IClassList[] lists, final IClassFilter filter, final int threads) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "soba-class-loader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        // Classes waiting for registration. The queue is bounded to limit the
+        // number of byte arrays kept in memory.
+        final ArrayDeque<PendingClass> pending = new ArrayDeque<PendingClass>();
+        final int maxPending = threads * PENDING_CLASSES_PER_THREAD;
+        try {
+            for (final IClassList list : lists) {
+                if (list == null)
+                    continue;
 
-                @Override
-                public void process(String name, InputStream stream) throws IOException {
-                    if (filter == null || filter.loadClass(name)) {
-                        ClassInfo c = new ClassInfo(name, stream, list.getLabel());
-                        if (filter == null || filter.acceptClass(c)) {
-                            if (!classes.containsKey(c.getClassName())) {
-                                classes.put(c.getClassName(), c);
-                                loaded.add(c);
-                                classHierarchy.registerClass(c);
-                            } else {
-                                duplicated.add(c);
-                            }
+                final String label = list.getLabel();
+                if (list instanceof MappedZipFile) {
+                    // Entries of a mapped archive are also inflated by the workers.
+                    // A mapped archive records the error of a class and continues
+                    // in the sequential mode as well.
+                    IClassListCallback callback = new ParallelCallback(executor, pending, maxPending, label, filter);
+                    for (final MappedZipFile.Entry entry : ((MappedZipFile) list).listEntries(callback)) {
+                        final String name = entry.getName();
+                        if (filter == null || filter.loadClass(name)) {
+                            Future<ClassInfo> f = executor.submit(new Callable<ClassInfo>() {
+                                @Override
+                                public ClassInfo call() throws IOException {
+                                    return new ClassInfo(name, entry.read(), label, lazy, memberSignatures);
+                                }
+                            });
+                            pending.add(new PendingClass(name, f, PendingClass.NO_EVENT));
                         } else {
-                            filtered.add(name);
+                            pending.add(new PendingClass(name));
+                        }
+                        while (pending.size() > maxPending) {
+                            registerPendingClass(pending.poll(), filter);
+                        }
+                    }
+                    while (!pending.isEmpty()) {
+                        registerPendingClass(pending.poll(), filter);
+                    }
+                } else {
+                    ParallelCallback callback = new ParallelCallback(executor, pending, maxPending, label, filter);
+                    list.process(callback);
+                    int failedEvent = callback.registerPendingClasses(0);
+                    if (failedEvent != PendingClass.NO_EVENT) {
+                        list.process(new SequentialCallback(label, filter, failedEvent));
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads class files by the caller thread, and creates <code>ClassInfo</code>
+     * objects by worker threads. Each call of <code>process</code> and
+     * <code>reportError</code> is an event numbered in the order of the calls.
+     * If a class file cannot be parsed, the object stops the list, and the
+     * number of the event is returned by <code>registerPendingClasses</code>.
+     */
+    private class ParallelCallback implements IClassListCallback {
+
+        private ExecutorService executor;
+        private ArrayDeque<PendingClass> pending;
+        private int maxPending;
+        private String label;
+        private IClassFilter filter;
+        private int eventCount;
+        private int failedEvent = PendingClass.NO_EVENT;
+
+        public ParallelCallback(ExecutorService executor, ArrayDeque<PendingClass> pending, int maxPending,
+                String label, IClassFilter filter) {
+            this.executor = executor;
+            this.pending = pending;
+            this.maxPending = maxPending;
+            this.label = label;
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean reportError(String name, Exception e) {
+            if (failedEvent != PendingClass.NO_EVENT) {
+                // Stop the list as soon as possible
+                return true;
+            }
+            // Keep the order of errors consistent with classes
+            eventCount++;
+            pending.add(new PendingClass(name, e));
+            return false;
+        }
+
+        @Override
+        public void process(final String name, InputStream stream) throws IOException {
+            if (failedEvent != PendingClass.NO_EVENT) {
+                throw new ListStoppedException();
+            }
+            int event = eventCount++;
+            if (filter == null || filter.loadClass(name)) {
+                final byte[] bytes = FileUtil.readFully(stream);
+                Future<ClassInfo> f = executor.submit(new Callable<ClassInfo>() {
+                    @Override
+                    public ClassInfo call() throws IOException {
+                        return new ClassInfo(name, bytes, label, lazy, memberSignatures);
+                    }
+                });
+                pending.add(new PendingClass(name, f, event));
+            } else {
+                pending.add(new PendingClass(name));
+            }
+            if (registerPendingClasses(maxPending) != PendingClass.NO_EVENT) {
+                throw new ListStoppedException();
+            }
+        }
+
+        @Override
+        public boolean isTarget(String name) {
+            return failedEvent == PendingClass.NO_EVENT && name.endsWith(".class");
+        }
+
+        /**
+         * Registers pending classes until the number of pending classes is
+         * reduced to the limit. If a class file cannot be parsed, the classes
+         * after the class are discarded.
+         * 
+         * @return the event of the class that cannot be parsed, or
+         *         <code>PendingClass.NO_EVENT</code>.
+         */
+        public int registerPendingClasses(int limit) {
+            while (failedEvent == PendingClass.NO_EVENT && pending.size() > limit) {
+                PendingClass p = pending.poll();
+                if (!registerPendingClass(p, filter)) {
+                    failedEvent = p.event;
+                    for (PendingClass discarded : pending) {
+                        if (discarded.future != null) {
+                            discarded.future.cancel(true);
                         }
-                    } else {
-                        filtered.add(name);
                     }
+                    pending.clear();
                 }
+            }
+            return failedEvent;
+        }
+    }
+
+    /**
+     * Thrown by <code>ParallelCallback</code> to stop reading a list. The list
+     * reports the exception to the callback, and the callback ignores it.
+     */
+    private static class ListStoppedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
 
-                @Override
-                public boolean isTarget(String name) {
-                    return name.endsWith(".class");
+    /**
+     * @return false if the class cannot be parsed and the failure must be
+     *         reproduced by reading the list again. Otherwise, the class or the
+     *         error is registered.
+     */
+    private boolean registerPendingClass(PendingClass p, IClassFilter filter) {
+        if (p.error != null) {
+            errors.add(new ErrorMessage(p.name, p.error));
+        } else if (p.future == null) {
+            filtered.add(p.name);
+        } else {
+            try {
+                registerClass(p.name, p.future.get(), filter);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (!(cause instanceof Exception)) {
+                    throw new RuntimeException(cause);
+                } else if (p.event != PendingClass.NO_EVENT) {
+                    return false;
+                } else {
+                    errors.add(new ErrorMessage(p.name, (Exception) cause));
                 }
-            });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        return true;
+    }
+
+    private void registerClass(String name, ClassInfo c, IClassFilter filter) {
+        if (filter == null || filter.acceptClass(c)) {
+            if (!classes.containsKey(c.getClassName())) {
+                classes.put(c.getClassName(), c);
+                loaded.add(c);
+                classHierarchy.registerClass(c);
+            } else {
+                duplicated.add(c);
+            }
+        } else {
+            filtered.add(name);
         }
     }
 
@@ -139,6 +410,26 @@ public class JavaProgram {
         return classHierarchy;
     }
 
+    /**
+     * @return true if method bodies are loaded on demand.
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Sets a cache to keep the results of control-flow and data-flow analysis of
+     * the methods in all the loaded classes.
+     * 
+     * @param cache specifies a cache, e.g. a <code>BoundedFlowCache</code>. If
+     *              null, each method keeps its result by itself.
+     */
+    public void setFlowCache(IFlowCache cache) {
+        for (ClassInfo c : loaded) {
+            c.setFlowCache(cache);
+        }
+    }
+
     /**
      * @return a list of error messages.
      */
@@ -146,6 +437,30 @@ public class JavaProgram {
         return errors;
     }
 
+    private static class PendingClass {
+        private static final int NO_EVENT = -1;
+
+        private String name;
+        private Future<ClassInfo> future;
+        private Exception error;
+        private int event = NO_EVENT; // the event of a class to be read again on failure
+
+        public PendingClass(String name) {
+            this.name = name;
+        }
+
+        public PendingClass(String name, Future<ClassInfo> future, int event) {
+            this.name = name;
+            this.future = future;
+            this.event = event;
+        }
+
+        public PendingClass(String name, Exception error) {
+            this.name = name;
+            this.error = error;
+        }
+    }
+
     public static class ErrorMessage {
         private String dataName;
         private Exception exception;
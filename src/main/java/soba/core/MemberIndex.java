@@ -0,0 +1,50 @@
+package soba.core;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+/**
+ * This class maps member signature ids (assigned by
+ * <code>MemberSignatureTable</code>) to the indices of members in a class.
+ * Small classes are searched linearly; a hash table is used for large classes.
+ */
+class MemberIndex {
+
+    private static final int NOT_FOUND = -1;
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private int[] signatureIds;
+    private TIntIntHashMap positions;
+
+    /**
+     * Creates a new <code>MemberIndex</code> instance.
+     *
+     * @param signatureIds specifies the signature id of each member.
+     */
+    public MemberIndex(int[] signatureIds) {
+        this.signatureIds = signatureIds;
+        if (signatureIds.length > LINEAR_SCAN_LIMIT) {
+            positions = new TIntIntHashMap(signatureIds.length * 2, 0.5f, NOT_FOUND, NOT_FOUND);
+            for (int i = signatureIds.length - 1; i >= 0; --i) {
+                // The first member wins if a signature is duplicated.
+                positions.put(signatureIds[i], i);
+            }
+        }
+    }
+
+    /**
+     * @param signatureId specifies a member signature.
+     * @return the index of the member. If the member is not found, the return
+     *         value is -1.
+     */
+    public int indexOf(int signatureId) {
+        if (positions != null) {
+            return positions.get(signatureId);
+        }
+        for (int i = 0; i < signatureIds.length; ++i) {
+            if (signatureIds[i] == signatureId) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+}
@@ -4,6 +4,7 @@ import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
 
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -11,21 +12,19 @@ import java.util.List;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.LineNumberNode;
 import org.objectweb.asm.tree.LocalVariableNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.analysis.AnalyzerException;
 
 import soba.core.method.CallSite;
 import soba.core.method.ControlDependence;
 import soba.core.method.DataDependence;
 import soba.core.method.FieldAccess;
+import soba.core.method.FlowResult;
 import soba.core.method.OpcodeString;
-import soba.core.method.asm.DataFlowAnalyzer;
-import soba.core.method.asm.DataFlowInterpreter;
 import soba.core.signature.MethodSignatureReader;
-import soba.util.ObjectIdMap;
 import soba.util.graph.DirectedGraph;
 
 /**
@@ -35,6 +34,9 @@ public class MethodInfo {
 
     private ClassInfo ownerClass;
     private MethodNode method;
+    private int methodIndex;
+    private boolean lazy;
+    private volatile SoftReference<MethodNode> body;
 
     private String returnType;
     private String[] paramTypes;
@@ -46,8 +48,7 @@ public class MethodInfo {
     private int maxLine;
     private int minLine;
 
-    private DataFlowAnalyzer analyzer;
-    private DataDependence dataDependence;
+    private FlowResult flow;
 
     /**
      * Creates a new <code>MethodInfo</code> instance.
@@ -60,6 +61,22 @@ public class MethodInfo {
         this.method = method;
     }
 
+    /**
+     * Creates a new <code>MethodInfo</code> instance whose method body is loaded
+     * on demand.
+     * 
+     * @param owner       is a <code>ClassInfo</code> object which declares this
+     *                    method.
+     * @param header      is a method node without instructions.
+     * @param methodIndex is the index of the method in the owner class.
+     */
+    MethodInfo(ClassInfo owner, MethodNode header, int methodIndex) {
+        this.ownerClass = owner;
+        this.method = header;
+        this.methodIndex = methodIndex;
+        this.lazy = true;
+    }
+
     /**
      * @return the package name who has the method.
      */
@@ -163,7 +180,7 @@ public class MethodInfo {
      * @return the number of bytecode instructions in this method.
      */
     public int getInstructionCount() {
-        return method.instructions.size();
+        return getMethodNode().instructions.size();
     }
 
     /**
@@ -171,7 +188,7 @@ public class MethodInfo {
      * @return AbstractInsnNode of instructionIndex
      */
     public AbstractInsnNode getAbstractInsnNode(int instructionIndex) {
-        return method.instructions.get(instructionIndex);
+        return getMethodNode().instructions.get(instructionIndex);
     }
 
     /**
@@ -262,14 +279,15 @@ public class MethodInfo {
      * @return a formal parameter name.
      */
     public String getParamName(int index) {
-        if (method.localVariables == null)
+        MethodNode node = getMethodNode();
+        if (node.localVariables == null)
             return null;
-        if (index >= method.localVariables.size())
+        if (index >= node.localVariables.size())
             return null;
         int paramIndex = getVariableTableIndexOfParamAt(index);
-        for (int i = 0; i < method.localVariables.size(); ++i) {
-            LocalVariableNode var = (LocalVariableNode) method.localVariables.get(i);
-            if (var.index == paramIndex && var.start == method.instructions.getFirst()) {
+        for (int i = 0; i < node.localVariables.size(); ++i) {
+            LocalVariableNode var = (LocalVariableNode) node.localVariables.get(i);
+            if (var.index == paramIndex && var.start == node.instructions.getFirst()) {
                 return var.name;
             }
         }
@@ -322,18 +340,49 @@ public class MethodInfo {
     }
 
     /**
-     * @return a method node.
+     * @return a method node. If the owner class has been loaded in the lazy mode,
+     *         the method body is loaded by this method call.
      */
     public MethodNode getMethodNode() {
-        return method;
+        if (!lazy) {
+            return method;
+        }
+        SoftReference<MethodNode> ref = body;
+        MethodNode node = (ref != null) ? ref.get() : null;
+        if (node == null) {
+            node = ownerClass.loadMethodBodies().get(methodIndex);
+        }
+        return node;
+    }
+
+    /**
+     * @return a method node loaded by <code>ClassInfo</code>, or null if the body
+     *         is not loaded.
+     */
+    MethodNode getLoadedMethodBody() {
+        SoftReference<MethodNode> ref = body;
+        return (ref != null) ? ref.get() : null;
+    }
+
+    /**
+     * @return true if the method body is available without parsing the class
+     *         file.
+     */
+    boolean isMethodBodyLoaded() {
+        return !lazy || getLoadedMethodBody() != null;
+    }
+
+    void setMethodBody(MethodNode node) {
+        body = (node != null) ? new SoftReference<MethodNode>(node) : null;
     }
 
     private void computeMinMaxLine() {
         if (lines == null) {
-            TIntHashSet array = new TIntHashSet(method.instructions.size());
-            for (int i = 0; i < method.instructions.size(); ++i) {
-                if (method.instructions.get(i).getType() == AbstractInsnNode.LINE) {
-                    LineNumberNode node = (LineNumberNode) method.instructions.get(i);
+            InsnList instructions = getMethodNode().instructions;
+            TIntHashSet array = new TIntHashSet(instructions.size());
+            for (int i = 0; i < instructions.size(); ++i) {
+                if (instructions.get(i).getType() == AbstractInsnNode.LINE) {
+                    LineNumberNode node = (LineNumberNode) instructions.get(i);
                     array.add(node.line);
                 }
             }
@@ -382,9 +431,10 @@ public class MethodInfo {
      * @return the line number including a specified instruction.
      */
     public int getLine(int instructionIndex) {
+        InsnList instructions = getMethodNode().instructions;
         for (int i = instructionIndex; i >= 0; --i) {
-            if (method.instructions.get(i).getType() == AbstractInsnNode.LINE) {
-                return ((LineNumberNode) method.instructions.get(i)).line;
+            if (instructions.get(i).getType() == AbstractInsnNode.LINE) {
+                return ((LineNumberNode) instructions.get(i)).line;
             }
         }
         return 0;
@@ -398,9 +448,10 @@ public class MethodInfo {
     public int[] getInstructions(int line) {
         TIntArrayList lineInstructions = new TIntArrayList();
         boolean inside = false;
-        for (int i = 0; i < method.instructions.size(); ++i) {
-            if (method.instructions.get(i).getType() == AbstractInsnNode.LINE) {
-                inside = ((LineNumberNode) method.instructions.get(i)).line == line;
+        InsnList instructions = getMethodNode().instructions;
+        for (int i = 0; i < instructions.size(); ++i) {
+            if (instructions.get(i).getType() == AbstractInsnNode.LINE) {
+                inside = ((LineNumberNode) instructions.get(i)).line == line;
             }
             if (inside)
                 lineInstructions.add(i);
@@ -414,9 +465,10 @@ public class MethodInfo {
      * @return a list of <code>CallSite</code>.
      */
     public List<CallSite> getCallSites() {
-        List<CallSite> callsites = new ArrayList<CallSite>(method.instructions.size());
-        for (int i = 0; i < method.instructions.size(); ++i) {
-            CallSite c = getCallSite(i);
+        InsnList instructions = getMethodNode().instructions;
+        List<CallSite> callsites = new ArrayList<CallSite>(instructions.size());
+        for (int i = 0; i < instructions.size(); ++i) {
+            CallSite c = getCallSite(instructions, i);
             if (c != null)
                 callsites.add(c);
         }
@@ -431,8 +483,12 @@ public class MethodInfo {
      * @return a <code>CallSite</code> object for an instruction.
      */
     public CallSite getCallSite(final int instructionIndex) {
-        if (method.instructions.get(instructionIndex).getType() == AbstractInsnNode.METHOD_INSN) {
-            MethodInsnNode m = (MethodInsnNode) method.instructions.get(instructionIndex);
+        return getCallSite(getMethodNode().instructions, instructionIndex);
+    }
+
+    private CallSite getCallSite(InsnList instructions, int instructionIndex) {
+        if (instructions.get(instructionIndex).getType() == AbstractInsnNode.METHOD_INSN) {
+            MethodInsnNode m = (MethodInsnNode) instructions.get(instructionIndex);
             return new CallSite(this, instructionIndex, m.owner, m.name, m.desc, getInvokeType(m));
         } else {
             return null;
@@ -455,9 +511,10 @@ public class MethodInfo {
      */
     public List<FieldAccess> getFieldAccesses() {
         List<FieldAccess> fields = new ArrayList<FieldAccess>(32);
-        for (int i = 0; i < method.instructions.size(); ++i) {
-            if (method.instructions.get(i).getType() == AbstractInsnNode.FIELD_INSN) {
-                FieldAccess fieldAccess = getFieldAccess(i);
+        InsnList instructions = getMethodNode().instructions;
+        for (int i = 0; i < instructions.size(); ++i) {
+            if (instructions.get(i).getType() == AbstractInsnNode.FIELD_INSN) {
+                FieldAccess fieldAccess = getFieldAccess(instructions, i);
                 if (fieldAccess != null) {
                     fields.add(fieldAccess);
                 }
@@ -474,9 +531,13 @@ public class MethodInfo {
      * @return a <FieldAccess> object.
      */
     public FieldAccess getFieldAccess(final int instructionIndex) {
-        assert method.instructions.get(instructionIndex).getType() == AbstractInsnNode.FIELD_INSN;
+        return getFieldAccess(getMethodNode().instructions, instructionIndex);
+    }
 
-        final FieldInsnNode f = (FieldInsnNode) method.instructions.get(instructionIndex);
+    private FieldAccess getFieldAccess(InsnList instructions, int instructionIndex) {
+        assert instructions.get(instructionIndex).getType() == AbstractInsnNode.FIELD_INSN;
+
+        final FieldInsnNode f = (FieldInsnNode) instructions.get(instructionIndex);
         switch (f.getOpcode()) {
         case Opcodes.PUTFIELD:
             return FieldAccess.createPutField(f.owner, f.name, f.desc, false);
@@ -497,8 +558,9 @@ public class MethodInfo {
      */
     public int[] getReturnInstructions() {
         TIntSet returns = new TIntHashSet();
-        for (int i = 0; i < method.instructions.size(); i++) {
-            AbstractInsnNode ain = method.instructions.get(i);
+        InsnList instructions = getMethodNode().instructions;
+        for (int i = 0; i < instructions.size(); i++) {
+            AbstractInsnNode ain = instructions.get(i);
             if (OpcodeString.isReturnOperation(ain)) {
                 returns.add(i);
             }
@@ -511,50 +573,131 @@ public class MethodInfo {
      *         about data dependencies.
      */
     public DataDependence getDataDependence() {
-        computeFlow();
-        return dataDependence;
+        return getFlowResult().getDataDependence();
     }
 
     /**
-     * @return a control dependence graph.
+     * @param keepFrames If true, the method returns an object that keeps frames
+     *                   of the data-flow analysis. The method is analyzed again
+     *                   if the current result does not keep frames.
+     * @return a <code>DataDependence</code> object.
+     */
+    public DataDependence getDataDependence(boolean keepFrames) {
+        FlowResult current = getFlowResult();
+        DataDependence d = current.getDataDependence();
+        if (keepFrames && d != null && !d.hasFrames()) {
+            FlowResult result = FlowResult.analyze(getMethodNode(), true, current.getControlDependenceAlgorithm());
+            setFlowResult(result);
+            d = result.getDataDependence();
+        }
+        return d;
+    }
+
+    /**
+     * @return a control dependence graph. The graph is shared by subsequent
+     *         calls while the analysis result is kept.
      */
     public DirectedGraph getControlDependence() {
-        return ControlDependence.getDependence(getInstructionCount(), getControlFlow());
+        return getFlowResult().getControlDependenceGraph();
     }
 
     /**
-     * @return a control-flow graph.
+     * @param algorithm specifies an algorithm to compute control dependencies.
+     * @return a control dependence graph computed by the algorithm. The graph is
+     *         shared by subsequent calls of <code>getControlDependence</code>
+     *         while the analysis result is kept.
+     */
+    public DirectedGraph getControlDependence(ControlDependence.Algorithm algorithm) {
+        return getFlowResult(algorithm).getControlDependenceGraph();
+    }
+
+    /**
+     * @return a control-flow graph. The graph is shared by subsequent calls while
+     *         the analysis result is kept.
      */
     public DirectedGraph getControlFlow() {
-        computeFlow();
-        return new DirectedGraph(getInstructionCount(), analyzer.getNormalControlFlow());
+        return getFlowResult().getControlFlowGraph();
     }
 
     /**
      * @return a conservative control-flow graph. The graph assumes that every
-     *         instruction in a try block may throw an exception.
+     *         instruction in a try block may throw an exception. The graph is
+     *         shared by subsequent calls while the analysis result is kept.
      */
     public DirectedGraph getConservativeControlFlow() {
-        computeFlow();
-        return new DirectedGraph(getInstructionCount(), analyzer.getConservativeControlFlow());
+        return getFlowResult().getConservativeControlFlowGraph();
     }
 
-    private void computeFlow() {
-        if (analyzer == null) {
-            ObjectIdMap<AbstractInsnNode> instructions = new ObjectIdMap<AbstractInsnNode>(method.instructions.size());
-            for (int i = 0; i < method.instructions.size(); ++i) {
-                instructions.add(method.instructions.get(i));
-            }
-            instructions.freeze();
-            DataFlowInterpreter interpreter = new DataFlowInterpreter(instructions);
-            analyzer = new DataFlowAnalyzer(interpreter);
-            try {
-                analyzer.analyze(method.name, method);
-                dataDependence = new DataDependence(instructions, analyzer);
-            } catch (AnalyzerException e) {
-                System.err.println(e.getMessage());
+    /**
+     * @return the result of control-flow and data-flow analysis. The analysis is
+     *         executed when the method is called for the first time. If the
+     *         owner class has an <code>IFlowCache</code>, the result is kept in
+     *         the cache and recomputed after it is evicted from the cache. The
+     *         method is safe for concurrent callers; the method is analyzed once
+     *         even if several threads request the result at the same time.
+     */
+    synchronized FlowResult getFlowResult() {
+        IFlowCache cache = ownerClass.getFlowCache();
+        if (cache != null) {
+            FlowResult result = cache.get(this);
+            if (result == null) {
+                result = FlowResult.analyze(getMethodNode());
+                cache.put(this, result);
             }
+            return result;
+        }
+        if (flow == null) {
+            flow = FlowResult.analyze(getMethodNode());
+        }
+        return flow;
+    }
+
+    /**
+     * @param algorithm specifies an algorithm to compute control dependencies.
+     * @return the result of the analysis using the algorithm. If the current
+     *         result uses another algorithm, the result is replaced with a copy
+     *         using the algorithm; control-flow and data-flow analysis are not
+     *         executed again.
+     */
+    synchronized FlowResult getFlowResult(ControlDependence.Algorithm algorithm) {
+        FlowResult result = getFlowResult();
+        if (result.getControlDependenceAlgorithm() != algorithm) {
+            result = result.withControlDependenceAlgorithm(algorithm);
+            setFlowResult(result);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the result of the analysis, e.g. with a result loaded from
+     * <code>AnalysisCache</code>.
+     */
+    synchronized void setFlowResult(FlowResult result) {
+        IFlowCache cache = ownerClass.getFlowCache();
+        if (cache != null) {
+            cache.put(this, result);
+        } else {
+            this.flow = result;
+        }
+    }
+
+    /**
+     * Discards the result kept by the object itself.
+     */
+    synchronized void clearFlowResult() {
+        this.flow = null;
+    }
+
+    /**
+     * @return true if the result of the analysis is available without
+     *         computation.
+     */
+    synchronized boolean hasFlowResult() {
+        IFlowCache cache = ownerClass.getFlowCache();
+        if (cache != null) {
+            return cache.contains(this);
         }
+        return flow != null;
     }
 
     /**
@@ -569,7 +712,7 @@ public class MethodInfo {
      * @return a string representation of the specified instruction.
      */
     public String getInstructionString(final int instructionIndex) {
-        return OpcodeString.getInstructionString(method, instructionIndex);
+        return OpcodeString.getInstructionString(getMethodNode(), instructionIndex);
     }
 
     /**
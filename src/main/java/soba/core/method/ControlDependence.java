@@ -1,20 +1,46 @@
 package soba.core.method;
 
-import java.util.Arrays;
-
 import soba.util.IntPairList;
 import soba.util.IntPairProc;
 import soba.util.IntPairSet;
 import soba.util.graph.DepthFirstSearch;
 import soba.util.graph.DirectedGraph;
 import soba.util.graph.DominanceTree;
-import soba.util.graph.IDepthFirstVisitor;
 import soba.util.graph.IDirectedGraph;
 import soba.util.graph.SingleRootDirectedGraph;
 
 public class ControlDependence {
 
     /**
+     * Algorithms to compute control dependencies.
+     */
+    public enum Algorithm {
+        /**
+         * Each branch depends on instructions reachable from the branch before
+         * its post-dominator. Then an edge A->C is removed as redundant if
+         * A->B and B->C for another branch B (unless B->A). This algorithm
+         * runs a search for each branch.
+         */
+        REACHABILITY,
+
+        /**
+         * An instruction Y depends on a branch X if Y post-dominates a
+         * successor of X but does not strictly post-dominate X, i.e. X is in
+         * the post-dominance frontier of Y (Ferrante, Ottenstein and Warren).
+         * The dependencies are collected by walking up the post-dominator
+         * tree from each successor of a branch. Then redundant edges are
+         * removed by the same rule as <code>REACHABILITY</code>. The result is
+         * the same as <code>REACHABILITY</code> except in two cases: an edge
+         * A->C implied by a chain of three or more dependencies A->B->...->C is
+         * kept, and an instruction reachable from a loop exit B only through
+         * the back edge does not depend on B.
+         */
+        POST_DOMINANCE_FRONTIER
+    }
+
+    /**
+     * Computes control dependencies by <code>Algorithm.REACHABILITY</code>.
+     * 
      * @param instructionCount is the number of instructions.
      * @param controlFlowGraph is a directed graph representing control-flow among
      *                         instructions.
@@ -24,57 +50,94 @@ public class ControlDependence {
      *         from the method entry.
      */
     public static DirectedGraph getDependence(final int instructionCount, final DirectedGraph controlFlowGraph) {
-        IDirectedGraph reverseControlFlow = controlFlowGraph.getReverseGraph();
-        SingleRootDirectedGraph rootGraph = new SingleRootDirectedGraph(reverseControlFlow);
-        DominanceTree tree = new DominanceTree(rootGraph);
-
-        final IntPairList controlDependenceCandidate = new IntPairList();
-        for (int i = 0; i < instructionCount; ++i) {
-            if (controlFlowGraph.getEdges(i).length > 1) { // is branch
-                final int postDom = tree.getDominator(i); // post dominator
-                DepthFirstSearch.search(controlFlowGraph, i, new IDepthFirstVisitor() {
+        return getDependence(instructionCount, controlFlowGraph, Algorithm.REACHABILITY);
+    }
 
-                    private int start;
+    /**
+     * @param instructionCount is the number of instructions.
+     * @param controlFlowGraph is a directed graph representing control-flow among
+     *                         instructions.
+     * @param algorithm        specifies an algorithm.
+     * @return a directed graph which represents control dependencies. Neither
+     *         dependencies from the method entry nor a dependency of a branch
+     *         on itself are included.
+     */
+    public static DirectedGraph getDependence(int instructionCount, DirectedGraph controlFlowGraph,
+            Algorithm algorithm) {
+        switch (algorithm) {
+        case REACHABILITY:
+            return getDependenceByReachability(instructionCount, controlFlowGraph);
+        case POST_DOMINANCE_FRONTIER:
+            return getDependenceByFrontiers(instructionCount, controlFlowGraph);
+        default:
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
 
-                    @Override
-                    public void onStart(int startVertexId) {
-                        this.start = startVertexId;
-                    }
+    private static DirectedGraph getDependenceByFrontiers(int instructionCount, DirectedGraph controlFlowGraph) {
+        SingleRootDirectedGraph rootGraph = new SingleRootDirectedGraph(controlFlowGraph.getReverseGraph());
+        DominanceTree tree = new DominanceTree(rootGraph);
 
-                    @Override
-                    public boolean onVisit(int vertexId) {
-                        if (start != vertexId && vertexId != postDom) {
-                            controlDependenceCandidate.add(start, vertexId);
+        IntPairList controlDependence = new IntPairList();
+        for (int i = 0; i < instructionCount; ++i) {
+            if (controlFlowGraph.getOutDegree(i) > 1) { // is branch
+                int postDom = tree.getDominator(i);
+                for (int e = 0; e < controlFlowGraph.getOutDegree(i); ++e) {
+                    // Instructions between the successor and the post dominator
+                    // of the branch in the post-dominator tree
+                    int v = controlFlowGraph.getEdge(i, e);
+                    while (v != postDom && !tree.isRoot(v)) {
+                        if (v != i) {
+                            controlDependence.add(i, v);
                         }
-                        return vertexId != postDom;
-                    }
-
-                    @Override
-                    public void onVisitAgain(int vertexId) {
+                        v = tree.getDominator(v);
                     }
+                }
+            }
+        }
+        return removeRedundantEdges(instructionCount, controlFlowGraph, controlDependence);
+    }
 
-                    @Override
-                    public void onLeave(int vertexId) {
-                    }
+    private static DirectedGraph getDependenceByReachability(int instructionCount, DirectedGraph controlFlowGraph) {
+        IDirectedGraph reverseControlFlow = controlFlowGraph.getReverseGraph();
+        SingleRootDirectedGraph rootGraph = new SingleRootDirectedGraph(reverseControlFlow);
+        DominanceTree tree = new DominanceTree(rootGraph);
 
-                    @Override
-                    public void onFinished(boolean[] visited) {
+        final IntPairList controlDependenceCandidate = new IntPairList();
+        DepthFirstSearch search = new DepthFirstSearch(controlFlowGraph);
+        for (int i = 0; i < instructionCount; ++i) {
+            if (controlFlowGraph.getOutDegree(i) > 1) { // is branch
+                int postDom = tree.getDominator(i); // post dominator
+                search.start(i);
+                for (int v = search.next(); v != DepthFirstSearch.FINISHED; v = search.next()) {
+                    if (v == postDom) {
+                        search.prune();
+                    } else if (v != i) {
+                        controlDependenceCandidate.add(i, v);
                     }
-                });
+                }
             }
         }
 
-        // Removing redundant edges: if A->B and B->C, then A->C is redundant. If A->B
-        // and B->A, both A->C and B->C are not redundant.
+        return removeRedundantEdges(instructionCount, controlFlowGraph, controlDependenceCandidate);
+    }
+
+    /**
+     * Removes redundant edges: if A->B and B->C, then A->C is redundant. If A->B
+     * and B->A, both A->C and B->C are not redundant. The time is linear in
+     * the number of pairs of adjacent edges.
+     */
+    private static DirectedGraph removeRedundantEdges(int instructionCount, DirectedGraph controlFlowGraph,
+            IntPairList controlDependenceCandidate) {
         DirectedGraph candidate = new DirectedGraph(instructionCount, controlDependenceCandidate);
         final IntPairSet redundantEdges = new IntPairSet();
         for (int src = 0; src < instructionCount; ++src) {
-            for (int v : candidate.getEdges(src)) {
-                if (controlFlowGraph.getEdges(v).length > 1) { // v is a branch vertex
-                    int[] edges = candidate.getEdges(v);
-                    if (Arrays.binarySearch(edges, src) < 0) { // if not src->v and v->src
-                        for (int d : candidate.getEdges(v)) {
-                            redundantEdges.add(src, d);
+            for (int i = 0; i < candidate.getOutDegree(src); ++i) {
+                int v = candidate.getEdge(src, i);
+                if (controlFlowGraph.getOutDegree(v) > 1) { // v is a branch vertex
+                    if (!candidate.hasEdge(v, src)) { // if not src->v and v->src
+                        for (int j = 0; j < candidate.getOutDegree(v); ++j) {
+                            redundantEdges.add(src, candidate.getEdge(v, j));
                         }
                     }
                 }
@@ -91,6 +154,5 @@ public class ControlDependence {
             }
         });
         return new DirectedGraph(instructionCount, controlDependence);
-
     }
 }
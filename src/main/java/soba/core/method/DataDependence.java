@@ -1,10 +1,12 @@
 package soba.core.method;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.analysis.Frame;
 
 import soba.core.method.asm.DataFlowAnalyzer;
@@ -15,27 +17,213 @@ import soba.util.ObjectIdMap;
 import soba.util.graph.DirectedGraph;
 
 /**
- * This class has data dependence information in a single method.
+ * This class has data dependence information in a single method. Data-flow
+ * edges are encoded in primitive arrays in a compressed sparse row form
+ * indexed by destination instructions, and a permutation of the edges indexed
+ * by source instructions. <code>DataFlowEdge</code> objects are created on
+ * demand.
  */
 public class DataDependence {
 
+    private static final int OBJECT_ID_MAP_ENTRY_SIZE = 24;
+    private static final int EDGE_SIZE = 20;
+    private static final int FRAME_SIZE = 48;
+    private static final int SLOT_SIZE = 24;
+    private static final int LOCAL_ENTRY_SIZE = 256;
+
     private ObjectIdMap<AbstractInsnNode> instructions;
-    private DataFlowAnalyzer analyzer;
+    private Frame<?>[] frames;
+    private MethodNode method;
+    private int[] operandCounts;
     private LocalVariables locals;
 
+    /**
+     * Edges are sorted by their destination instructions. The edges of an
+     * instruction i are stored in [destinationOffsets[i],
+     * destinationOffsets[i+1]).
+     */
+    private int[] destinationOffsets;
+    private int[] edgeSources;
+    private int[] edgeDestinations;
+    private int[] edgeOperandIndices;
+
+    /**
+     * The edges of an operand k of an instruction i are stored in
+     * [operandOffsets[operandBase[i]+k], operandOffsets[operandBase[i]+k+1]).
+     * An instruction has max(getOperandCount(i), 1) operand slots.
+     */
+    private int[] operandBase;
+    private int[] operandOffsets;
+
+    /**
+     * A variable index for each edge. A negative value ~v represents a local
+     * variable v.
+     */
+    private int[] edgeVariables;
+
+    /**
+     * Edge indices sorted by their source instructions. The edges of an
+     * instruction i are stored in [sourceOffsets[i+1], sourceOffsets[i+2]);
+     * edges from METHOD_ENTRY are stored in [sourceOffsets[0],
+     * sourceOffsets[1]).
+     */
+    private int[] sourceOffsets;
+    private int[] sourceOrder;
+
     private List<DataFlowEdge> dataFlowEdges;
     private List<DataFlowEdge> dataFlowEdgesSourceOrder;
 
     /**
-     * Creates a new <code>DataDependence</code> instance.
+     * Creates a new <code>DataDependence</code> instance. The object keeps the
+     * frames computed by the analyzer.
      * 
      * @param instructions are instructions in the method.
      * @param analyzer
      */
     public DataDependence(ObjectIdMap<AbstractInsnNode> instructions, DataFlowAnalyzer analyzer) {
+        this(instructions, analyzer, true);
+    }
+
+    /**
+     * Creates a new <code>DataDependence</code> instance.
+     * 
+     * @param instructions are instructions in the method.
+     * @param analyzer
+     * @param keepFrames   If false, the frames computed by the analyzer are
+     *                     discarded after data-flow edges are extracted.
+     */
+    public DataDependence(ObjectIdMap<AbstractInsnNode> instructions, DataFlowAnalyzer analyzer,
+            boolean keepFrames) {
+        this.instructions = instructions;
+        this.method = analyzer.getAnalyzedMethod();
+        this.operandCounts = new int[instructions.size()];
+        for (int i = 0; i < operandCounts.length; ++i) {
+            operandCounts[i] = analyzer.getOperandCount(i);
+        }
+        computeEdges(analyzer.getFrames());
+        if (keepFrames) {
+            this.frames = analyzer.getFrames();
+        }
+    }
+
+    /**
+     * Creates a new <code>DataDependence</code> instance from edges that have been
+     * computed in advance. The object does not have frames.
+     * 
+     * @param instructions  are instructions in the method.
+     * @param method        is the analyzed method.
+     * @param operandCounts specifies the number of operands for each instruction.
+     * @param edges         are data flow edges sorted by their destination
+     *                      instructions.
+     */
+    DataDependence(ObjectIdMap<AbstractInsnNode> instructions, MethodNode method, int[] operandCounts,
+            List<DataFlowEdge> edges) {
         this.instructions = instructions;
-        this.analyzer = analyzer;
-        computeEdges();
+        this.method = method;
+        this.operandCounts = operandCounts;
+        allocateEdges(edges.size());
+        for (int i = 0; i < edges.size(); ++i) {
+            DataFlowEdge e = edges.get(i);
+            setEdge(i, e.getSourceInstruction(), e.getDestinationInstruction(), e.getDestinationOperandIndex(),
+                    e.getVariableIndex(), e.isLocal());
+        }
+        buildIndex();
+    }
+
+    private void allocateEdges(int edgeCount) {
+        edgeSources = new int[edgeCount];
+        edgeDestinations = new int[edgeCount];
+        edgeOperandIndices = new int[edgeCount];
+        edgeVariables = new int[edgeCount];
+    }
+
+    private void setEdge(int edgeIndex, int from, int to, int operandIndex, int variableIndex, boolean isLocal) {
+        edgeSources[edgeIndex] = from;
+        edgeDestinations[edgeIndex] = to;
+        edgeOperandIndices[edgeIndex] = operandIndex;
+        edgeVariables[edgeIndex] = isLocal ? ~variableIndex : variableIndex;
+    }
+
+    /**
+     * Computes the offsets of destinations and the permutation of the edges in
+     * the source order. The edges must be sorted by their destinations.
+     */
+    private void buildIndex() {
+        int instructionCount = operandCounts.length;
+        int edgeCount = edgeSources.length;
+
+        destinationOffsets = new int[instructionCount + 1];
+        for (int i = 0; i < edgeCount; ++i) {
+            destinationOffsets[edgeDestinations[i] + 1]++;
+        }
+        for (int i = 0; i < instructionCount; ++i) {
+            destinationOffsets[i + 1] += destinationOffsets[i];
+        }
+
+        operandBase = new int[instructionCount + 1];
+        for (int i = 0; i < instructionCount; ++i) {
+            operandBase[i + 1] = operandBase[i] + getOperandSlotCount(i);
+        }
+        operandOffsets = new int[operandBase[instructionCount] + 1];
+        for (int i = 0; i < edgeCount; ++i) {
+            operandOffsets[operandBase[edgeDestinations[i]] + edgeOperandIndices[i] + 1]++;
+        }
+        for (int i = 0; i < operandBase[instructionCount]; ++i) {
+            operandOffsets[i + 1] += operandOffsets[i];
+        }
+
+        // A stable counting sort keeps the destination order for each source,
+        // that is equivalent to DataFlowEdge.SourceComparator.
+        sourceOffsets = new int[instructionCount + 2];
+        for (int i = 0; i < edgeCount; ++i) {
+            sourceOffsets[edgeSources[i] - FastSourceInterpreter.METHOD_ENTRY + 1]++;
+        }
+        for (int i = 0; i <= instructionCount; ++i) {
+            sourceOffsets[i + 1] += sourceOffsets[i];
+        }
+        int[] next = Arrays.copyOf(sourceOffsets, instructionCount + 1);
+        sourceOrder = new int[edgeCount];
+        for (int i = 0; i < edgeCount; ++i) {
+            sourceOrder[next[edgeSources[i] - FastSourceInterpreter.METHOD_ENTRY]++] = i;
+        }
+
+        dataFlowEdges = new AbstractList<DataFlowEdge>() {
+            @Override
+            public DataFlowEdge get(int index) {
+                return getEdge(index);
+            }
+
+            @Override
+            public int size() {
+                return edgeSources.length;
+            }
+        };
+        dataFlowEdgesSourceOrder = new AbstractList<DataFlowEdge>() {
+            @Override
+            public DataFlowEdge get(int index) {
+                return getEdge(sourceOrder[index]);
+            }
+
+            @Override
+            public int size() {
+                return sourceOrder.length;
+            }
+        };
+    }
+
+    private int getOperandSlotCount(int instructionIndex) {
+        return Math.max(operandCounts[instructionIndex], 1);
+    }
+
+    private DataFlowEdge getEdge(int edgeIndex) {
+        int to = edgeDestinations[edgeIndex];
+        int variable = edgeVariables[edgeIndex];
+        if (variable < 0) {
+            return new DataFlowEdge(edgeSources[edgeIndex], to, edgeOperandIndices[edgeIndex], 1, ~variable, true);
+        } else {
+            return new DataFlowEdge(edgeSources[edgeIndex], to, edgeOperandIndices[edgeIndex], operandCounts[to],
+                    variable, false);
+        }
     }
 
     /**
@@ -44,10 +232,10 @@ public class DataDependence {
      * method.
      */
     public DirectedGraph getDependenceGraph() {
-        IntPairList edges = new IntPairList(dataFlowEdges.size());
-        for (DataFlowEdge e : dataFlowEdges) {
-            if (e.getSourceInstruction() != FastSourceInterpreter.METHOD_ENTRY) {
-                edges.add(e.getSourceInstruction(), e.getDestinationInstruction());
+        IntPairList edges = new IntPairList(Math.max(edgeSources.length, 1));
+        for (int i = 0; i < edgeSources.length; ++i) {
+            if (edgeSources[i] != FastSourceInterpreter.METHOD_ENTRY) {
+                edges.add(edgeSources[i], edgeDestinations[i]);
             }
         }
         return new DirectedGraph(instructions.size(), edges);
@@ -55,7 +243,8 @@ public class DataDependence {
 
     /**
      * @return a list of data flow edges. The edges are sorted by their destination
-     *         instructions.
+     *         instructions. The list is read-only and creates a new edge object
+     *         for each access.
      */
     public List<DataFlowEdge> getEdges() {
         return dataFlowEdges;
@@ -72,13 +261,42 @@ public class DataDependence {
     /**
      * @return a <code>LocalVariables</code> object.
      */
-    public LocalVariables getLocalVariables() {
+    public synchronized LocalVariables getLocalVariables() {
         if (locals == null) {
-            locals = new LocalVariables(this, analyzer.getAnalyzedMethod());
+            locals = new LocalVariables(this, method);
         }
         return locals;
     }
 
+    synchronized void setLocalVariables(LocalVariables locals) {
+        this.locals = locals;
+    }
+
+    /**
+     * @return an approximate number of bytes used by the object. Instructions of
+     *         the method are excluded.
+     */
+    public long getEstimatedSize() {
+        int instructionCount = operandCounts.length;
+        long size = 128 + instructionCount * (OBJECT_ID_MAP_ENTRY_SIZE + 20L);
+        size += (long) edgeSources.length * EDGE_SIZE;
+        if (frames != null) {
+            int slots = method.maxLocals + method.maxStack;
+            size += (long) instructionCount * (FRAME_SIZE + slots * SLOT_SIZE);
+        }
+        if (locals != null) {
+            size += (long) locals.getVariableEntryCount() * LOCAL_ENTRY_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * @return the analyzed method.
+     */
+    public MethodNode getMethod() {
+        return method;
+    }
+
     public String getVariableName(DataFlowEdge e) {
         LocalVariables locals = getLocalVariables();
         if (e.isLocal()) {
@@ -158,33 +376,30 @@ public class DataDependence {
      * @param instructionIndex specifies an instruction using an operand stack.
      * @return a two-dimensional array. array[operandIndex] indicates a list of
      *         instructions that defined the operand. The result is consistent with
-     *         a return value of getEdges().
+     *         a return value of getEdges(). An instruction referring to a local
+     *         variable without incoming edges is regarded as an instruction whose
+     *         frame is missing.
      */
     public int[][] getDataDefinition(int instructionIndex) {
         if (useStack(instructionIndex)) {
-            int operands = analyzer.getOperandCount(instructionIndex);
+            int operands = getOperandCount(instructionIndex);
             int[][] operandDef = new int[operands][];
+            int slot = operandBase[instructionIndex];
             for (int i = 0; i < operands; ++i) {
-                Frame<?> f = analyzer.getFrames()[instructionIndex];
-                FastSourceValue value = (FastSourceValue) f.getStack(f.getStackSize() - operands + i);
-                operandDef[i] = value.getInstructions();
+                operandDef[i] = Arrays.copyOfRange(edgeSources, operandOffsets[slot + i], operandOffsets[slot + i + 1]);
             }
             return operandDef;
-        } else {
-            AbstractInsnNode to = instructions.getItem(instructionIndex);
-            if (referLocal(instructionIndex)) {
-                int localIndex = OpcodeString.getVarIndex(to);
-                Frame<?> f = analyzer.getFrames()[instructionIndex];
-                if (f != null) {
-                    FastSourceValue value = (FastSourceValue) f.getLocal(localIndex);
-                    int[][] localDef = new int[1][];
-                    localDef[0] = value.getInstructions();
-                    return localDef;
-                } else {
-                    // To avoid a problem caused by certain methods including many JSRs
-                    return new int[0][0];
-                }
+        } else if (referLocal(instructionIndex)) {
+            int begin = destinationOffsets[instructionIndex];
+            int end = destinationOffsets[instructionIndex + 1];
+            if (begin == end) {
+                // A frame is missing for the instruction
+                // (e.g. certain methods including many JSRs)
+                return new int[0][0];
             }
+            int[][] localDef = new int[1][];
+            localDef[0] = Arrays.copyOfRange(edgeSources, begin, end);
+            return localDef;
         }
         return new int[0][];
     }
@@ -194,13 +409,8 @@ public class DataDependence {
      * @return a list of data flow edges which destination is specified.
      */
     public List<DataFlowEdge> getIncomingEdges(final int destinationInstruction) {
-        List<DataFlowEdge> edges = new ArrayList<>();
-        for (DataFlowEdge e : dataFlowEdges) {
-            if (e.getDestinationInstruction() == destinationInstruction) {
-                edges.add(e);
-            }
-        }
-        return edges;
+        return createEdgeList(destinationOffsets[destinationInstruction],
+                destinationOffsets[destinationInstruction + 1]);
     }
 
     /**
@@ -210,10 +420,10 @@ public class DataDependence {
      *         (Assumed that this incoming edge is just only one)
      */
     public DataFlowEdge getIncomingEdge(final int destinationInstruction, final int operandIndex) {
-        for (final DataFlowEdge dfe : dataFlowEdges) {
-            if (dfe.getDestinationInstruction() == destinationInstruction
-                    && dfe.getDestinationOperandIndex() == operandIndex) {
-                return dfe;
+        if (operandIndex >= 0 && operandIndex < getOperandSlotCount(destinationInstruction)) {
+            int slot = operandBase[destinationInstruction] + operandIndex;
+            if (operandOffsets[slot] < operandOffsets[slot + 1]) {
+                return getEdge(operandOffsets[slot]);
             }
         }
         throw new UnsupportedOperationException();
@@ -226,58 +436,88 @@ public class DataDependence {
      *         specified.
      */
     public List<DataFlowEdge> getIncomingEdges(final int destinationInstruction, final int operandIndex) {
-        List<DataFlowEdge> edges = new ArrayList<>();
-        for (DataFlowEdge e : dataFlowEdges) {
-            if (e.getDestinationInstruction() == destinationInstruction
-                    && e.getDestinationOperandIndex() == operandIndex) {
-                edges.add(e);
-            }
+        if (operandIndex < 0 || operandIndex >= getOperandSlotCount(destinationInstruction)) {
+            return new ArrayList<>();
+        }
+        int slot = operandBase[destinationInstruction] + operandIndex;
+        return createEdgeList(operandOffsets[slot], operandOffsets[slot + 1]);
+    }
+
+    /**
+     * @param sourceInstruction is an instruction index value.
+     *                          <code>FastSourceInterpreter.METHOD_ENTRY</code>
+     *                          specifies formal parameters of the method.
+     * @return a list of data flow edges which source is specified. The edges are
+     *         sorted by their destination instructions.
+     */
+    public List<DataFlowEdge> getOutgoingEdges(final int sourceInstruction) {
+        int index = sourceInstruction - FastSourceInterpreter.METHOD_ENTRY;
+        int begin = sourceOffsets[index];
+        int end = sourceOffsets[index + 1];
+        List<DataFlowEdge> edges = new ArrayList<>(end - begin);
+        for (int i = begin; i < end; ++i) {
+            edges.add(getEdge(sourceOrder[i]));
         }
         return edges;
     }
 
-    private void computeEdges() {
-        List<DataFlowEdge> edges = new ArrayList<DataFlowEdge>();
-
-        for (int instructionIndex = 0; instructionIndex < instructions.size(); ++instructionIndex) {
-            Frame<?> f = analyzer.getFrames()[instructionIndex];
-            if (useStack(instructionIndex)) {
-                int operands = analyzer.getOperandCount(instructionIndex);
-                for (int opIndex = 0; opIndex < operands; ++opIndex) {
-                    int stackPos = f.getStackSize() - operands + opIndex;
-                    FastSourceValue value = (FastSourceValue) f.getStack(stackPos);
-                    for (int from : value.getInstructions()) {
-                        edges.add(new DataFlowEdge(from, instructionIndex, opIndex, operands, stackPos, false));
+    private List<DataFlowEdge> createEdgeList(int begin, int end) {
+        List<DataFlowEdge> edges = new ArrayList<>(end - begin);
+        for (int i = begin; i < end; ++i) {
+            edges.add(getEdge(i));
+        }
+        return edges;
+    }
+
+    private void computeEdges(Frame<?>[] frames) {
+        int edgeCount = 0;
+        for (int pass = 0; pass < 2; ++pass) {
+            // The first pass counts edges and the second pass fills arrays
+            if (pass == 1) {
+                allocateEdges(edgeCount);
+                edgeCount = 0;
+            }
+            for (int instructionIndex = 0; instructionIndex < instructions.size(); ++instructionIndex) {
+                Frame<?> f = frames[instructionIndex];
+                if (useStack(instructionIndex)) {
+                    int operands = getOperandCount(instructionIndex);
+                    for (int opIndex = 0; opIndex < operands; ++opIndex) {
+                        int stackPos = f.getStackSize() - operands + opIndex;
+                        FastSourceValue value = (FastSourceValue) f.getStack(stackPos);
+                        for (int from : value.getInstructions()) {
+                            if (pass == 1) {
+                                setEdge(edgeCount, from, instructionIndex, opIndex, stackPos, false);
+                            }
+                            edgeCount++;
+                        }
                     }
-                }
-            } else if (referLocal(instructionIndex)) {
-                AbstractInsnNode to = instructions.getItem(instructionIndex);
-                int localIndex = OpcodeString.getVarIndex(to);
-                if (f != null) {
-                    FastSourceValue value = (FastSourceValue) f.getLocal(localIndex);
-                    for (int from : value.getInstructions()) {
-                        edges.add(new DataFlowEdge(from, instructionIndex, 0, 1, localIndex, true));
+                } else if (referLocal(instructionIndex)) {
+                    AbstractInsnNode to = instructions.getItem(instructionIndex);
+                    int localIndex = OpcodeString.getVarIndex(to);
+                    if (f != null) {
+                        FastSourceValue value = (FastSourceValue) f.getLocal(localIndex);
+                        for (int from : value.getInstructions()) {
+                            if (pass == 1) {
+                                setEdge(edgeCount, from, instructionIndex, 0, localIndex, true);
+                            }
+                            edgeCount++;
+                        }
+                    } else {
+                        // A frame object is missing for several instructions in certain methods
+                        // including many JSRs.
+                        // We skip the data-flow edges for the "unknown" sources.
                     }
-                } else {
-                    // A frame object is missing for several instructions in certain methods
-                    // including many JSRs.
-                    // We skip the data-flow edges for the "unknown" sources.
-                    // edges.add(new DataFlowEdge(65536, instructionIndex, 0, 1, localIndex, true));
                 }
             }
         }
-        List<DataFlowEdge> sourceOrder = new ArrayList<DataFlowEdge>(edges.size());
-        sourceOrder.addAll(edges);
-        Collections.sort(sourceOrder, new DataFlowEdge.SourceComparator());
-        dataFlowEdgesSourceOrder = sourceOrder;
-        dataFlowEdges = edges;
+        buildIndex();
     }
 
     /**
      * @return true if the specified instruction refers to operands on a stack.
      */
     public boolean useStack(int instructionIndex) {
-        return analyzer.getOperandCount(instructionIndex) > 0;
+        return operandCounts[instructionIndex] > 0;
     }
 
     /**
@@ -300,7 +540,7 @@ public class DataDependence {
      *         instruction that uses a local variable, 1 is returned.
      */
     public int getOperandCount(int instructionIndex) {
-        return analyzer.getOperandCount(instructionIndex);
+        return operandCounts[instructionIndex];
     }
 
     /**
@@ -309,9 +549,20 @@ public class DataDependence {
      * 
      * @param instructionIndex specifies an instruction.
      * @return Frame object. The return value may be null if control-flow analysis
-     *         somewhat failed. (It is rarely occurs for certain methods.)
+     *         somewhat failed. (It is rarely occurs for certain methods.) The
+     *         return value is also null if the object does not keep frames.
      */
     public Frame<?> getFrame(int instructionIndex) {
-        return analyzer.getFrames()[instructionIndex];
+        if (frames == null) {
+            return null;
+        }
+        return frames[instructionIndex];
+    }
+
+    /**
+     * @return true if the object keeps frames computed by the analysis.
+     */
+    public boolean hasFrames() {
+        return frames != null;
     }
 }
@@ -96,6 +96,26 @@ public class DataFlowEdge {
         return isLocal;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof DataFlowEdge) {
+            DataFlowEdge another = (DataFlowEdge) obj;
+            return from == another.from && to == another.to && operandIndex == another.operandIndex
+                    && operandCount == another.operandCount && variableIndex == another.variableIndex
+                    && isLocal == another.isLocal;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = from;
+        h = h * 31 + to;
+        h = h * 31 + operandIndex;
+        h = h * 31 + variableIndex;
+        return isLocal ? ~h : h;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder(64);
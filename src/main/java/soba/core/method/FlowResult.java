@@ -0,0 +1,323 @@
+package soba.core.method;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+
+import soba.core.method.asm.DataFlowAnalyzer;
+import soba.core.method.asm.DataFlowInterpreter;
+import soba.util.IntPairList;
+import soba.util.ObjectIdMap;
+import soba.util.graph.DirectedGraph;
+
+/**
+ * This class keeps the results of control-flow and data-flow analysis of a
+ * single method.
+ */
+public class FlowResult {
+
+    private int instructionCount;
+    private IntPairList normalControlFlow;
+    private IntPairList exceptionalControlFlow;
+    private DataDependence dataDependence;
+    private ControlDependence.Algorithm controlDependenceAlgorithm;
+
+    private volatile DirectedGraph controlFlowGraph;
+    private volatile DirectedGraph conservativeControlFlowGraph;
+    private volatile DirectedGraph controlDependenceGraph;
+
+    private FlowResult(int instructionCount, IntPairList normalControlFlow, IntPairList exceptionalControlFlow,
+            DataDependence dataDependence, ControlDependence.Algorithm controlDependenceAlgorithm) {
+        this.instructionCount = instructionCount;
+        this.normalControlFlow = normalControlFlow;
+        this.exceptionalControlFlow = exceptionalControlFlow;
+        this.dataDependence = dataDependence;
+        this.controlDependenceAlgorithm = controlDependenceAlgorithm;
+        normalControlFlow.sort();
+        normalControlFlow.freeze();
+        exceptionalControlFlow.sort();
+        exceptionalControlFlow.freeze();
+    }
+
+    /**
+     * Creates a copy sharing the analysis results except control dependence.
+     */
+    private FlowResult(FlowResult original, ControlDependence.Algorithm controlDependenceAlgorithm) {
+        this.instructionCount = original.instructionCount;
+        this.normalControlFlow = original.normalControlFlow;
+        this.exceptionalControlFlow = original.exceptionalControlFlow;
+        this.dataDependence = original.dataDependence;
+        this.controlDependenceAlgorithm = controlDependenceAlgorithm;
+        this.controlFlowGraph = original.controlFlowGraph;
+        this.conservativeControlFlowGraph = original.conservativeControlFlowGraph;
+    }
+
+    /**
+     * Analyzes a method. Frames computed by the analysis are discarded.
+     *
+     * @param method specifies a method to be analyzed.
+     * @return a <code>FlowResult</code> object. If the data-flow analysis failed,
+     *         the object does not have a <code>DataDependence</code> object.
+     */
+    public static FlowResult analyze(MethodNode method) {
+        return analyze(method, false);
+    }
+
+    /**
+     * Analyzes a method.
+     *
+     * @param method     specifies a method to be analyzed.
+     * @param keepFrames If true, the <code>DataDependence</code> object keeps
+     *                   frames computed by the analysis.
+     * @return a <code>FlowResult</code> object. If the data-flow analysis failed,
+     *         the object does not have a <code>DataDependence</code> object.
+     */
+    public static FlowResult analyze(MethodNode method, boolean keepFrames) {
+        return analyze(method, keepFrames, ControlDependence.Algorithm.REACHABILITY);
+    }
+
+    /**
+     * Analyzes a method.
+     *
+     * @param method     specifies a method to be analyzed.
+     * @param keepFrames If true, the <code>DataDependence</code> object keeps
+     *                   frames computed by the analysis.
+     * @param algorithm  specifies an algorithm used by
+     *                   <code>getControlDependenceGraph()</code>.
+     * @return a <code>FlowResult</code> object. If the data-flow analysis failed,
+     *         the object does not have a <code>DataDependence</code> object.
+     */
+    public static FlowResult analyze(MethodNode method, boolean keepFrames, ControlDependence.Algorithm algorithm) {
+        ObjectIdMap<AbstractInsnNode> instructions = createInstructionMap(method);
+        DataFlowInterpreter interpreter = new DataFlowInterpreter(instructions);
+        DataFlowAnalyzer analyzer = new DataFlowAnalyzer(interpreter);
+        DataDependence dataDependence = null;
+        try {
+            analyzer.analyze(method.name, method);
+            dataDependence = new DataDependence(instructions, analyzer, keepFrames);
+        } catch (AnalyzerException e) {
+            System.err.println(e.getMessage());
+        }
+        return new FlowResult(instructions.size(), analyzer.getNormalControlFlow(),
+                analyzer.getExceptionalControlFlow(), dataDependence, algorithm);
+    }
+
+    private static ObjectIdMap<AbstractInsnNode> createInstructionMap(MethodNode method) {
+        ObjectIdMap<AbstractInsnNode> instructions = new ObjectIdMap<AbstractInsnNode>(method.instructions.size());
+        for (int i = 0; i < method.instructions.size(); ++i) {
+            instructions.add(method.instructions.get(i));
+        }
+        instructions.freeze();
+        return instructions;
+    }
+
+    /**
+     * @return the number of instructions in the method.
+     */
+    public int getInstructionCount() {
+        return instructionCount;
+    }
+
+    /**
+     * @return a new list of control-flow edges without exceptional control flow.
+     */
+    public IntPairList getNormalControlFlow() {
+        IntPairList list = new IntPairList(Math.max(normalControlFlow.size(), 1));
+        list.addAll(normalControlFlow);
+        return list;
+    }
+
+    /**
+     * @return a new list of control-flow edges including exceptional control flow.
+     */
+    public IntPairList getConservativeControlFlow() {
+        IntPairList list = new IntPairList(Math.max(normalControlFlow.size() + exceptionalControlFlow.size(), 1));
+        list.addAll(normalControlFlow);
+        list.addAll(exceptionalControlFlow);
+        return list;
+    }
+
+    /**
+     * @return a control-flow graph without exceptional control flow. The graph is
+     *         created on the first call and shared by subsequent calls.
+     */
+    public DirectedGraph getControlFlowGraph() {
+        DirectedGraph g = controlFlowGraph;
+        if (g == null) {
+            g = new DirectedGraph(instructionCount, getNormalControlFlow());
+            controlFlowGraph = g;
+        }
+        return g;
+    }
+
+    /**
+     * @return a control-flow graph including exceptional control flow. The graph
+     *         is created on the first call and shared by subsequent calls.
+     */
+    public DirectedGraph getConservativeControlFlowGraph() {
+        DirectedGraph g = conservativeControlFlowGraph;
+        if (g == null) {
+            g = new DirectedGraph(instructionCount, getConservativeControlFlow());
+            conservativeControlFlowGraph = g;
+        }
+        return g;
+    }
+
+    /**
+     * @return the algorithm used by <code>getControlDependenceGraph()</code>.
+     */
+    public ControlDependence.Algorithm getControlDependenceAlgorithm() {
+        return controlDependenceAlgorithm;
+    }
+
+    /**
+     * @param algorithm specifies an algorithm to compute control dependencies.
+     * @return this object if it uses the algorithm. Otherwise, a new object
+     *         sharing the other analysis results with this object.
+     */
+    public FlowResult withControlDependenceAlgorithm(ControlDependence.Algorithm algorithm) {
+        if (algorithm == controlDependenceAlgorithm) {
+            return this;
+        }
+        return new FlowResult(this, algorithm);
+    }
+
+    /**
+     * @return a control dependence graph computed from
+     *         <code>getControlFlowGraph()</code> by the algorithm given to
+     *         <code>analyze</code> (<code>REACHABILITY</code> by default). The
+     *         graph is created on the first call and shared by subsequent calls.
+     */
+    public DirectedGraph getControlDependenceGraph() {
+        DirectedGraph g = controlDependenceGraph;
+        if (g == null) {
+            g = ControlDependence.getDependence(instructionCount, getControlFlowGraph(), controlDependenceAlgorithm);
+            controlDependenceGraph = g;
+        }
+        return g;
+    }
+
+    /**
+     * @return a <code>DataDependence</code> object. The return value is null if
+     *         the data-flow analysis failed.
+     */
+    public DataDependence getDataDependence() {
+        return dataDependence;
+    }
+
+    /**
+     * @return an approximate number of bytes used by the object. Instructions of
+     *         the method are excluded.
+     */
+    public long getEstimatedSize() {
+        long size = 64 + 8L * (normalControlFlow.size() + exceptionalControlFlow.size());
+        size += getEstimatedSize(controlFlowGraph);
+        size += getEstimatedSize(conservativeControlFlowGraph);
+        size += getEstimatedSize(controlDependenceGraph);
+        if (dataDependence != null) {
+            size += dataDependence.getEstimatedSize();
+        }
+        return size;
+    }
+
+    private static long getEstimatedSize(DirectedGraph g) {
+        if (g == null) {
+            return 0;
+        }
+        return 32 + 16L * g.getVertexCount() + 12L * g.getEdgeCount();
+    }
+
+    /**
+     * Writes the result in a binary form. Local variable entries are computed if
+     * they are not computed yet.
+     *
+     * @param out is a destination.
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(instructionCount);
+        writeList(out, normalControlFlow);
+        writeList(out, exceptionalControlFlow);
+        out.writeBoolean(dataDependence != null);
+        if (dataDependence != null) {
+            for (int i = 0; i < instructionCount; ++i) {
+                out.writeInt(dataDependence.getOperandCount(i));
+            }
+            List<DataFlowEdge> edges = dataDependence.getEdges();
+            out.writeInt(edges.size());
+            for (DataFlowEdge e : edges) {
+                out.writeInt(e.getSourceInstruction());
+                out.writeInt(e.getDestinationInstruction());
+                out.writeInt(e.getDestinationOperandIndex());
+                out.writeInt(e.getVariableIndex());
+                out.writeBoolean(e.isLocal());
+            }
+            dataDependence.getLocalVariables().write(out);
+        }
+    }
+
+    /**
+     * Reads a result written by <code>write</code>. The result uses
+     * <code>REACHABILITY</code> for control dependence.
+     *
+     * @param in     is a data source.
+     * @param method is the method whose result has been written.
+     * @return a <code>FlowResult</code> object.
+     * @throws IOException if the data is inconsistent with the method.
+     */
+    public static FlowResult read(DataInput in, MethodNode method) throws IOException {
+        int instructionCount = in.readInt();
+        if (instructionCount != method.instructions.size()) {
+            throw new IOException("The number of instructions does not match: " + method.name + method.desc);
+        }
+        IntPairList normalControlFlow = readList(in);
+        IntPairList exceptionalControlFlow = readList(in);
+        DataDependence dataDependence = null;
+        if (in.readBoolean()) {
+            int[] operandCounts = new int[instructionCount];
+            for (int i = 0; i < instructionCount; ++i) {
+                operandCounts[i] = in.readInt();
+            }
+            int edgeCount = in.readInt();
+            List<DataFlowEdge> edges = new ArrayList<DataFlowEdge>(edgeCount);
+            for (int i = 0; i < edgeCount; ++i) {
+                int from = in.readInt();
+                int to = in.readInt();
+                int operandIndex = in.readInt();
+                int variableIndex = in.readInt();
+                boolean isLocal = in.readBoolean();
+                int operandCount = isLocal ? 1 : operandCounts[to];
+                edges.add(new DataFlowEdge(from, to, operandIndex, operandCount, variableIndex, isLocal));
+            }
+            dataDependence = new DataDependence(createInstructionMap(method), method, operandCounts, edges);
+            dataDependence.setLocalVariables(LocalVariables.read(in, method));
+        }
+        return new FlowResult(instructionCount, normalControlFlow, exceptionalControlFlow, dataDependence,
+                ControlDependence.Algorithm.REACHABILITY);
+    }
+
+    private static void writeList(DataOutput out, IntPairList list) throws IOException {
+        out.writeInt(list.size());
+        for (int i = 0; i < list.size(); ++i) {
+            out.writeInt(list.getFirstValue(i));
+            out.writeInt(list.getSecondValue(i));
+        }
+    }
+
+    private static IntPairList readList(DataInput in) throws IOException {
+        int size = in.readInt();
+        IntPairList list = new IntPairList(Math.max(size, 1));
+        for (int i = 0; i < size; ++i) {
+            int first = in.readInt();
+            int second = in.readInt();
+            list.add(first, second);
+        }
+        return list;
+    }
+}
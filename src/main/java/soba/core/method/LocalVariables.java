@@ -1,9 +1,14 @@
 package soba.core.method;
 
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.map.hash.TLongIntHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.objectweb.asm.Opcodes;
@@ -13,7 +18,7 @@ import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
 import soba.core.signature.TypeResolver;
-import soba.util.IntPairProc;
+import soba.util.IntPairList;
 import soba.util.IntPairSet;
 
 /**
@@ -26,7 +31,12 @@ import soba.util.IntPairSet;
  */
 public class LocalVariables {
 
+    private static final int FLAG_OBJECT = 1;
+    private static final int FLAG_ARRAY = 2;
+    private static final int FLAG_ALONE = 4;
+
     private ArrayList<Entry> entries;
+    private int[] instructionToEntry;
     private MethodNode m;
 
     /**
@@ -40,47 +50,75 @@ public class LocalVariables {
 
         // Create entries based on data-flow edges.
         // Each entry is a set of data-flow edges that have some common def/use
-        // instructions.
-        ArrayList<Entry> entries = new ArrayList<Entry>();
+        // instructions. Two edges are connected if they have the same definition
+        // (a variable and a source instruction) or the same use (a destination
+        // instruction and an operand). Connected edges are merged by union-find.
+        List<DataFlowEdge> edges = new ArrayList<DataFlowEdge>();
         for (DataFlowEdge edge : dataDependence.getEdges()) {
             if (edge.isLocal()) {
-                int[] index = findEntries(entries, edge);
-                if (index[0] != -1) {
-                    Entry e1 = entries.get(index[0]);
-                    if (index[1] == -1) {
-                        e1.add(edge);
-                        checkObjectFlag(e1, dataDependence, edge);
-                    } else if (index[1] != index[0]) {
-                        Entry e2 = entries.remove(index[1]);
-                        e1.merge(e2);
-                    } else {
-                        // index[0] == index[1]; both instructions are already involved in a single
-                        // entry.
-                        checkObjectFlag(e1, dataDependence, edge);
-                    }
-                } else {
-                    // Both instructions are not included in an entry.
-                    // Create a new entry for the edge.
-                    Entry e = new Entry(edge);
-                    entries.add(e);
-                    checkObjectFlag(e, dataDependence, edge);
-                }
+                edges.add(edge);
+            }
+        }
 
+        // A set is identified by the edge that created the set.
+        // A set created earlier always becomes the representative of merged sets,
+        // so that entries are ordered by their first edges.
+        int[] parent = new int[edges.size()];
+        int[] flags = new int[edges.size()];
+        int[] edgeSets = new int[edges.size()];
+        TLongIntHashMap defSets = new TLongIntHashMap(edges.size() * 2, 0.5f, Long.MIN_VALUE, -1);
+        TLongIntHashMap useSets = new TLongIntHashMap(edges.size() * 2, 0.5f, Long.MIN_VALUE, -1);
+        for (int i = 0; i < edges.size(); ++i) {
+            DataFlowEdge edge = edges.get(i);
+            long defKey = pack(edge.getVariableIndex(), edge.getSourceInstruction());
+            long useKey = pack(edge.getDestinationInstruction(), edge.getDestinationOperandIndex());
+            int defSet = find(parent, defSets.get(defKey));
+            int useSet = find(parent, useSets.get(useKey));
+            int set;
+            if (defSet == -1 && useSet == -1) {
+                // Both instructions are not included in an entry.
+                // Create a new entry for the edge.
+                set = i;
+                parent[set] = set;
+                flags[set] = getObjectFlags(dataDependence, edge);
+            } else if (defSet == -1 || useSet == -1 || defSet == useSet) {
+                set = Math.max(defSet, useSet);
+                flags[set] |= getObjectFlags(dataDependence, edge);
+            } else {
+                // The edge connects two entries.
+                // The array flag of the later entry is not inherited.
+                set = Math.min(defSet, useSet);
+                int another = Math.max(defSet, useSet);
+                parent[another] = set;
+                flags[set] |= flags[another] & FLAG_OBJECT;
             }
+            defSets.put(defKey, set);
+            useSets.put(useKey, set);
+            edgeSets[i] = set;
         }
 
-        // Associate local variable nodes to entries.
-        List<?> variables = node.localVariables;
-        for (int i = 0; i < variables.size(); ++i) {
-            LocalVariableNode var = (LocalVariableNode) variables.get(i);
-            for (Entry e : entries) {
-                if (e.isDataflowOf(var)) {
-                    e.addLocalVariableNode(var);
-                }
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        Entry[] setEntries = new Entry[edges.size()];
+        for (int i = 0; i < edges.size(); ++i) {
+            DataFlowEdge edge = edges.get(i);
+            int set = find(parent, edgeSets[i]);
+            Entry e = setEntries[set];
+            if (e == null) {
+                e = new Entry(edge);
+                e.setObjectTypeEntry((flags[set] & FLAG_OBJECT) != 0);
+                e.setArrayTypeEntry((flags[set] & FLAG_ARRAY) != 0);
+                setEntries[set] = e;
+                entries.add(e);
+            } else {
+                e.add(edge);
             }
         }
 
+        // Associate local variable nodes to entries.
+        associateVariableNodes(entries);
+
         this.entries = entries;
+        indexInstructions();
 
         // Add entries for STORE instructions without LOAD instructions.
         for (int i = 0; i < node.instructions.size(); ++i) {
@@ -90,25 +128,160 @@ public class LocalVariables {
                 if (entry == -1) {
                     Entry e = new Entry(i, (VarInsnNode) instruction);
                     this.entries.add(e);
+                    instructionToEntry[i] = this.entries.size() - 1;
                 }
             }
         }
     }
 
-    private void checkObjectFlag(Entry e, DataDependence dataflow, DataFlowEdge edge) {
+    private static long pack(int value1, int value2) {
+        return ((long) value1 << 32) | (value2 & 0xffffffffL);
+    }
+
+    /**
+     * @return the representative of a set. If the set is -1, -1 is returned.
+     */
+    private static int find(int[] parent, int set) {
+        if (set == -1) {
+            return -1;
+        }
+        while (parent[set] != set) {
+            parent[set] = parent[parent[set]];
+            set = parent[set];
+        }
+        return set;
+    }
+
+    /**
+     * Fills the table from instructions to entries. An instruction belongs to
+     * the first entry that has the instruction as a definition or a use.
+     */
+    private void indexInstructions() {
+        instructionToEntry = new int[m.instructions.size()];
+        Arrays.fill(instructionToEntry, -1);
+        for (int i = 0; i < entries.size(); ++i) {
+            Entry e = entries.get(i);
+            for (TIntIterator it = e.defs.iterator(); it.hasNext();) {
+                setEntryForInstruction(it.next(), i);
+            }
+            for (TIntIterator it = e.refs.iterator(); it.hasNext();) {
+                setEntryForInstruction(it.next(), i);
+            }
+        }
+    }
+
+    private void setEntryForInstruction(int instructionIndex, int entryIndex) {
+        if (0 <= instructionIndex && instructionIndex < instructionToEntry.length) {
+            int current = instructionToEntry[instructionIndex];
+            if (current == -1 || entryIndex < current) {
+                instructionToEntry[instructionIndex] = entryIndex;
+            }
+        }
+    }
+
+    private LocalVariables(MethodNode node) {
+        this.m = node;
+    }
+
+    private void associateVariableNodes(List<Entry> entries) {
+        List<?> variables = m.localVariables;
+        if (variables == null) {
+            // Abstract and native methods have no local variable tables
+            return;
+        }
+        for (int i = 0; i < variables.size(); ++i) {
+            LocalVariableNode var = (LocalVariableNode) variables.get(i);
+            for (Entry e : entries) {
+                // Entries without data dependence are not associated with variables
+                if (!e.isAlone() && e.isDataflowOf(var)) {
+                    e.addLocalVariableNode(var);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the entries in a binary form. The form is read by
+     * <code>read</code>.
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(entries.size());
+        for (Entry e : entries) {
+            out.writeInt(e.variableIndex);
+            out.writeByte((e.isObjectType ? FLAG_OBJECT : 0) | (e.isArrayType ? FLAG_ARRAY : 0)
+                    | (e.isAlone ? FLAG_ALONE : 0));
+            int[] defs = e.defs.toArray();
+            Arrays.sort(defs);
+            out.writeInt(defs.length);
+            for (int def : defs) {
+                out.writeInt(def);
+            }
+            IntPairList refs = e.refWithOperands.toSortedList();
+            out.writeInt(refs.size());
+            for (int i = 0; i < refs.size(); ++i) {
+                out.writeInt(refs.getFirstValue(i));
+                out.writeInt(refs.getSecondValue(i));
+            }
+        }
+    }
+
+    /**
+     * Reads entries written by <code>write</code>.
+     * 
+     * @param in   is a data source.
+     * @param node is the method whose entries have been written.
+     * @return a <code>LocalVariables</code> object.
+     */
+    static LocalVariables read(DataInput in, MethodNode node) throws IOException {
+        LocalVariables locals = new LocalVariables(node);
+        int count = in.readInt();
+        ArrayList<Entry> entries = new ArrayList<Entry>(count);
+        for (int i = 0; i < count; ++i) {
+            Entry e = locals.new Entry(in.readInt());
+            int flags = in.readByte();
+            e.isObjectType = (flags & FLAG_OBJECT) != 0;
+            e.isArrayType = (flags & FLAG_ARRAY) != 0;
+            e.isAlone = (flags & FLAG_ALONE) != 0;
+            int defCount = in.readInt();
+            for (int j = 0; j < defCount; ++j) {
+                e.defs.add(in.readInt());
+            }
+            int refCount = in.readInt();
+            for (int j = 0; j < refCount; ++j) {
+                int instruction = in.readInt();
+                int operand = in.readInt();
+                e.refs.add(instruction);
+                e.refWithOperands.add(instruction, operand);
+            }
+            e.isParam = e.defs.contains(-1);
+            entries.add(e);
+        }
+        locals.associateVariableNodes(entries);
+        locals.entries = entries;
+        locals.indexInstructions();
+        return locals;
+    }
+
+    /**
+     * @return FLAG_OBJECT and/or FLAG_ARRAY indicated by the instructions of an
+     *         edge.
+     */
+    private static int getObjectFlags(DataDependence dataflow, DataFlowEdge edge) {
+        int flags = 0;
         AbstractInsnNode varNode = dataflow.getInstruction(edge.getDestinationInstruction());
         if (varNode.getOpcode() == Opcodes.ALOAD) {
-            e.setObjectTypeEntry(true);
+            flags |= FLAG_OBJECT;
         }
         if (edge.getSourceInstruction() >= 0) {
             varNode = dataflow.getInstruction(edge.getSourceInstruction());
             if (varNode.getOpcode() == Opcodes.ASTORE) {
-                e.setObjectTypeEntry(true);
+                flags |= FLAG_OBJECT;
             } else if (edge.getDestinationOperandIndex() == 0
                     && (varNode.getOpcode() == Opcodes.AALOAD || varNode.getOpcode() == Opcodes.AASTORE)) {
-                e.setArrayTypeEntry(true);
+                flags |= FLAG_ARRAY;
             }
         }
+        return flags;
     }
 
     /**
@@ -192,6 +365,9 @@ public class LocalVariables {
      *         the specified instruction.
      */
     public int findEntryForInstruction(int instructionIndex) {
+        if (0 <= instructionIndex && instructionIndex < instructionToEntry.length) {
+            return instructionToEntry[instructionIndex];
+        }
         for (int i = 0; i < entries.size(); ++i) {
             Entry e = entries.get(i);
             if (e.containsSource(instructionIndex) || e.containsDestination(instructionIndex)) {
@@ -201,31 +377,6 @@ public class LocalVariables {
         return -1;
     }
 
-    /**
-     * Returns a pair of indices that indicate a pair of Entries containing the
-     * specified values. The return_value[0] specifies a set containing value1,
-     * while the return_value[1] specifies a set containing value2. If no set
-     * contains value1, return_value is a pair (a set containing value2, -1). If no
-     * values are found in the sets, (-1, -1) is returned.
-     * 
-     * @return
-     */
-    private static int[] findEntries(ArrayList<Entry> entries, DataFlowEdge edge) {
-        int[] ret = new int[] { -1, -1 };
-        for (int i = 0; i < entries.size(); ++i) {
-            Entry e = entries.get(i);
-            if (e.isConnected(edge)) {
-                if (ret[0] == -1) {
-                    ret[0] = i;
-                } else if (ret[1] == -1) {
-                    ret[1] = i;
-                    return ret;
-                }
-            }
-        }
-        return ret;
-    }
-
     private class Entry {
 
         private TIntHashSet defs;
@@ -257,6 +408,14 @@ public class LocalVariables {
             // isObjectType and isArrayType are set by an external method.
         }
 
+        private Entry(int variableIndex) {
+            this.variableIndex = variableIndex;
+            this.variables = new ArrayList<LocalVariableNode>(1);
+            defs = new TIntHashSet();
+            refs = new TIntHashSet();
+            refWithOperands = new IntPairSet();
+        }
+
         private Entry(int instructionIndex, VarInsnNode var) {
             assert OpcodeString.isStoreOperation(var) || OpcodeString.isAfterJSR(
                     var) : "A STORE instruction may exist without LOAD instructions. But there are no LOAD instructions without STORE.";
@@ -295,23 +454,6 @@ public class LocalVariables {
             isParam = isParam || e.isParameter();
         }
 
-        private void merge(Entry another) {
-            assert this.variableIndex == another.variableIndex;
-
-            defs.addAll(another.defs.toArray());
-            another.refWithOperands.foreach(new IntPairProc() {
-                @Override
-                public boolean execute(int instructionIndex, int operand) {
-                    refs.add(instructionIndex);
-                    refWithOperands.add(instructionIndex, operand);
-                    return true;
-                }
-            });
-            if (another.isObjectType) {
-                this.isObjectType = another.isObjectType;
-            }
-        }
-
         private boolean isDataflowOf(LocalVariableNode var) {
             if (this.variableIndex == var.index) {
 
@@ -369,15 +511,6 @@ public class LocalVariables {
             }
         }
 
-        /**
-         * @param edge
-         * @return edge is connected with some vertices in the entry.
-         */
-        private boolean isConnected(DataFlowEdge edge) {
-            return this.variableIndex == edge.getVariableIndex() && containsSource(edge.getSourceInstruction())
-                    || containsDestinationOperand(edge.getDestinationInstruction(), edge.getDestinationOperandIndex());
-        }
-
         /**
          * @param instruction
          * @return true if the entry contains the specified source instruction.
@@ -391,15 +524,7 @@ public class LocalVariables {
          * @return true if the entry contains the specified destination instruction.
          */
         private boolean containsDestination(int instruction) {
-            return refWithOperands.containsFirst(instruction);
-        }
-
-        /**
-         * @param instruction
-         * @return true if the entry contains the specified destination instruction.
-         */
-        private boolean containsDestinationOperand(int instruction, int operandIndex) {
-            return refWithOperands.contains(instruction, operandIndex);
+            return refs.contains(instruction);
         }
 
         private boolean isObjectType() {
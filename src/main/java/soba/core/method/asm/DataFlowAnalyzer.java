@@ -7,6 +7,7 @@ import org.objectweb.asm.tree.analysis.Frame;
 import org.objectweb.asm.tree.analysis.Value;
 
 import soba.util.IntPairList;
+import soba.util.IntPairProc;
 import soba.util.IntPairSet;
 import soba.util.IntPairUtil;
 
@@ -52,6 +53,24 @@ public class DataFlowAnalyzer extends Analyzer<Value> {
         return IntPairUtil.createList(controlFlow, exceptionalFlow);
     }
 
+    /**
+     * @return exceptional control-flow edges that are not included in the normal
+     *         control flow.
+     */
+    public IntPairList getExceptionalControlFlow() {
+        final IntPairList list = new IntPairList(Math.max(exceptionalFlow.size(), 1));
+        exceptionalFlow.foreach(new IntPairProc() {
+            @Override
+            public boolean execute(int elem1, int elem2) {
+                if (!controlFlow.contains(elem1, elem2)) {
+                    list.add(elem1, elem2);
+                }
+                return true;
+            }
+        });
+        return list;
+    }
+
     public int getOperandCount(int instructionIndex) {
         return interpreter.getOperandCount(instructionIndex);
     }
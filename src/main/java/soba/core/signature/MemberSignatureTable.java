@@ -0,0 +1,82 @@
+package soba.core.signature;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class assigns a unique integer id to each pair of a member name and a
+ * descriptor, so that method and field lookup can compare integers instead of
+ * strings. Ids are meaningful only within a table. A table is shared by the
+ * classes of a <code>JavaProgram</code>, and the ids are released together with
+ * the program. Method descriptors and field descriptors do not collide because
+ * only method descriptors start with "(".
+ *
+ * The object is thread-safe.
+ */
+public class MemberSignatureTable {
+
+    public static final int NOT_FOUND = -1;
+
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, Integer>> ids;
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Creates a new <code>MemberSignatureTable</code> instance for a single
+     * class.
+     */
+    public MemberSignatureTable() {
+        this(16);
+    }
+
+    /**
+     * Creates a new <code>MemberSignatureTable</code> instance.
+     *
+     * @param expectedNames specifies the number of member names.
+     */
+    public MemberSignatureTable(int expectedNames) {
+        ids = new ConcurrentHashMap<>(expectedNames);
+    }
+
+    /**
+     * @param name       specifies a member name.
+     * @param descriptor specifies a descriptor without generics information.
+     * @return the id of the signature. A new id is assigned to a new signature.
+     */
+    public int getId(String name, String descriptor) {
+        ConcurrentHashMap<String, Integer> descriptors = ids.get(name);
+        if (descriptors == null) {
+            descriptors = new ConcurrentHashMap<>(4);
+            ConcurrentHashMap<String, Integer> previous = ids.putIfAbsent(name, descriptors);
+            if (previous != null) {
+                descriptors = previous;
+            }
+        }
+        Integer id = descriptors.get(descriptor);
+        if (id == null) {
+            Integer newId = nextId.getAndIncrement();
+            id = descriptors.putIfAbsent(descriptor, newId);
+            if (id == null) {
+                id = newId;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @param name       specifies a member name.
+     * @param descriptor specifies a descriptor without generics information.
+     * @return the id of the signature. If no id is assigned to the signature,
+     *         the return value is <code>NOT_FOUND</code>. This method does not
+     *         create a new id.
+     */
+    public int findId(String name, String descriptor) {
+        ConcurrentHashMap<String, Integer> descriptors = ids.get(name);
+        if (descriptors != null) {
+            Integer id = descriptors.get(descriptor);
+            if (id != null) {
+                return id;
+            }
+        }
+        return NOT_FOUND;
+    }
+}
@@ -0,0 +1,129 @@
+package soba.core.vta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import soba.core.MethodInfo;
+
+/**
+ * This class stores the methods invoked by call sites. A call site is
+ * identified by a pair of a method id and an instruction index, and the pair
+ * is packed into a long key of an open-addressing hash table. Call sites that
+ * invoke the same methods share a single array.
+ *
+ * The table is filled by a single thread. After that, the table is read-only
+ * and lookups do not allocate objects.
+ */
+class CallTargetTable {
+
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private int[] values; // index of targets
+    private int count;
+
+    private List<MethodInfo[]> targets;
+    private HashMap<List<MethodInfo>, Integer> targetIndex;
+
+    /**
+     * Creates a new <code>CallTargetTable</code> instance.
+     *
+     * @param expectedSize specifies the number of call sites.
+     */
+    public CallTargetTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        targets = new ArrayList<MethodInfo[]>();
+        targetIndex = new HashMap<List<MethodInfo>, Integer>();
+    }
+
+    /**
+     * Registers the methods invoked by a call site.
+     *
+     * @param methodId    specifies a method including the call site.
+     * @param instruction specifies the instruction index of the call site.
+     * @param methods     specifies the invoked methods. The array must not be
+     *                    modified after the call.
+     */
+    public void put(int methodId, int instruction, MethodInfo[] methods) {
+        Integer index = targetIndex.get(Arrays.asList(methods));
+        if (index == null) {
+            index = targets.size();
+            targets.add(methods);
+            targetIndex.put(Arrays.asList(methods), index);
+        }
+        if ((count + 1) * 2 > keys.length) {
+            rehash();
+        }
+        long key = getKey(methodId, instruction);
+        int slot = findSlot(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            count++;
+        }
+        values[slot] = index;
+    }
+
+    /**
+     * @param methodId    specifies a method including a call site.
+     * @param instruction specifies the instruction index of the call site.
+     * @return the invoked methods. The array is shared and must not be
+     *         modified. If the call site is not registered, the return value is
+     *         null.
+     */
+    public MethodInfo[] get(int methodId, int instruction) {
+        int slot = findSlot(keys, getKey(methodId, instruction));
+        if (keys[slot] == EMPTY) {
+            return null;
+        }
+        return targets.get(values[slot]);
+    }
+
+    /**
+     * @return the number of registered call sites.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the number of distinct arrays of invoked methods.
+     */
+    public int getTargetCount() {
+        return targets.size();
+    }
+
+    private static long getKey(int methodId, int instruction) {
+        assert methodId >= 0 && instruction >= 0;
+        return (((long) methodId) << 32) | instruction;
+    }
+
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h >>> 32) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -14,7 +14,8 @@ public class TopologicalOrderSearch {
         // To find root vertices, count the number of incoming edges for each vertex.
         int[] incoming = new int[graph.getVertexCount()];
         for (int i = 0; i < graph.getVertexCount(); ++i) {
-            for (int to : graph.getEdges(i)) {
+            for (int e = 0; e < graph.getOutDegree(i); ++e) {
+                int to = graph.getEdge(i, e);
                 incoming[to] += 1;
             }
         }
@@ -36,7 +37,8 @@ public class TopologicalOrderSearch {
             queueIndex++;
             boolean continueVisit = visit.onVisit(v);
             if (continueVisit) {
-                for (int to : graph.getEdges(v)) {
+                for (int e = 0; e < graph.getOutDegree(v); ++e) {
+                    int to = graph.getEdge(v, e);
                     incoming[to] -= 1;
                     if (incoming[to] == 0) {
                         queue[queueEndIndex] = to;
@@ -47,4 +49,67 @@ public class TopologicalOrderSearch {
         }
         visit.onFinished();
     }
+
+    /**
+     * Groups vertices by their topological levels. Root vertices are at level
+     * 0, and the level of another vertex is the maximum level of its
+     * predecessors plus one. Vertices in the same level do not depend on each
+     * other. The set of vertices is the same as the vertices visited by
+     * <code>searchFromRoot</code>.
+     * 
+     * @param graph
+     * @return an array of levels. Each level is an array of vertex ids.
+     */
+    public static int[][] computeLevels(final DirectedAcyclicGraph graph) {
+        int[] incoming = new int[graph.getVertexCount()];
+        for (int i = 0; i < graph.getVertexCount(); ++i) {
+            for (int e = 0; e < graph.getOutDegree(i); ++e) {
+                int to = graph.getEdge(i, e);
+                incoming[to] += 1;
+            }
+        }
+
+        int[] queue = new int[graph.getVertexCount()];
+        int[] level = new int[graph.getVertexCount()];
+        int queueEndIndex = 0;
+        for (int i = 0; i < graph.getVertexCount(); ++i) {
+            if (incoming[i] == 0 && graph.isRepresentativeNode(i)) {
+                queue[queueEndIndex] = i;
+                queueEndIndex++;
+            }
+        }
+
+        int levelCount = 0;
+        int queueIndex = 0;
+        while (queueIndex < queueEndIndex) {
+            int v = queue[queueIndex];
+            queueIndex++;
+            levelCount = Math.max(levelCount, level[v] + 1);
+            for (int e = 0; e < graph.getOutDegree(v); ++e) {
+                int to = graph.getEdge(v, e);
+                level[to] = Math.max(level[to], level[v] + 1);
+                incoming[to] -= 1;
+                if (incoming[to] == 0) {
+                    queue[queueEndIndex] = to;
+                    queueEndIndex++;
+                }
+            }
+        }
+
+        // Counting sort of the visited vertices by level
+        int[] sizes = new int[levelCount];
+        for (int i = 0; i < queueEndIndex; ++i) {
+            sizes[level[queue[i]]]++;
+        }
+        int[][] levels = new int[levelCount][];
+        for (int l = 0; l < levelCount; ++l) {
+            levels[l] = new int[sizes[l]];
+            sizes[l] = 0;
+        }
+        for (int i = 0; i < queueEndIndex; ++i) {
+            int v = queue[i];
+            levels[level[v]][sizes[level[v]]++] = v;
+        }
+        return levels;
+    }
 }
@@ -84,16 +84,11 @@ public class TypeSet {
     public boolean contains(String t) {
         if (t == null)
             return false;
-        String[] types = manager.getStrings(this.typesId);
-        for (int i = 0; i < types.length; ++i) {
-            if (t.equals(types[i]))
-                return true;
-        }
-        return false;
+        return manager.contains(this.typesId, t);
     }
 
     public int getTypeCount() {
-        return manager.getStrings(typesId).length;
+        return manager.getTypeCount(typesId);
     }
 
     public String getType(int index) {
@@ -101,7 +96,7 @@ public class TypeSet {
     }
 
     public int getApproximatedTypeCount() {
-        return manager.getStrings(approximatedTypesId).length;
+        return manager.getTypeCount(approximatedTypesId);
     }
 
     public String getApproximatedType(int index) {
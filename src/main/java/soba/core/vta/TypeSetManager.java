@@ -1,56 +1,220 @@
 package soba.core.vta;
 
-import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.list.array.TIntArrayList;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-
-import soba.util.ObjectIdMap;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * This class manages sets of type names used by VTA. Each type name is
+ * translated into a dense type id, and a set of types is represented by a
+ * sorted array of type ids. Sets are hash-consed, so that equal sets share the
+ * same set id and the set operations compare integers.
+ *
+ * Results of <code>merge</code> are memoised in a direct-mapped cache of a
+ * fixed size. A new result overwrites an older one in the same slot, so that
+ * memory consumption does not depend on the number of merges; an evicted
+ * result is simply recomputed.
+ *
+ * The object is thread-safe. <code>merge</code> reads the cache without
+ * locking and computes a union outside of the lock; only registration of a new
+ * set is serialized. <code>getStrings</code> and <code>contains</code> also
+ * read the cached views of a set without locking, and take the lock only to
+ * create a missing view.
+ */
 public class TypeSetManager {
 
-    private ObjectIdMap<String> cache;
-    private TIntObjectHashMap<String[]> strings;
+    /**
+     * The default number of entries of the merge cache.
+     */
+    public static final int DEFAULT_MERGE_CACHE_SIZE = 1 << 16;
+
     private static final String[] EMPTY = new String[0];
-    private static final String SEPARATOR = "|";
-    private static final String SEPARATOR_REGEX = "\\|";
+    private static final int NOT_FOUND = -1;
+
+    /**
+     * Sets larger than this threshold use a bit set for membership tests.
+     */
+    private static final int BITSET_THRESHOLD = 16;
+
+    // type id <-> type name
+    private ConcurrentHashMap<String, Integer> typeIds; // updated with the lock
+    private ArrayList<String> typeNames;
+    private TIntArrayList singletonSets; // type id -> the set id of the type
+
+    // set id -> sorted type ids. A new set is registered with the lock.
+    private volatile int[][] sets;
+    private int[] setHashes;
+    private int setCount;
+    private int[] table; // hash table of set ids (+1); 0 represents an empty slot
 
-    private TIntObjectHashMap<TIntIntHashMap> mergeMap;
+    // Views created on demand. An array is replaced with the lock when it grows.
+    private volatile AtomicReferenceArray<String[]> strings; // set id -> type names sorted by name
+    private volatile AtomicReferenceArray<BitSet> bitsets; // set id -> type ids for large sets
 
+    // direct-mapped merge cache: a pair of set ids -> the merged set id
+    private volatile AtomicReferenceArray<MergeEntry> mergeCache;
+    private LongAdder mergeCount = new LongAdder();
+    private LongAdder mergeCacheHitCount = new LongAdder();
+    private LongAdder mergeCacheEvictionCount = new LongAdder();
+
+    /**
+     * Creates a new <code>TypeSetManager</code> instance with the default size
+     * of the merge cache.
+     */
     public TypeSetManager() {
-        cache = new ObjectIdMap<String>();
-        strings = new TIntObjectHashMap<String[]>();
-        cache.add("");
+        this(DEFAULT_MERGE_CACHE_SIZE);
+    }
 
-        mergeMap = new TIntObjectHashMap<TIntIntHashMap>();
+    /**
+     * Creates a new <code>TypeSetManager</code> instance.
+     *
+     * @param mergeCacheSize specifies the number of entries of the merge cache.
+     *                       The value is rounded up to a power of two. If 0,
+     *                       merge results are not cached.
+     */
+    public TypeSetManager(int mergeCacheSize) {
+        if (mergeCacheSize < 0) {
+            throw new IllegalArgumentException("mergeCacheSize must not be negative: " + mergeCacheSize);
+        }
+        typeIds = new ConcurrentHashMap<String, Integer>(1024);
+        typeNames = new ArrayList<String>(1024);
+        singletonSets = new TIntArrayList(1024);
+        sets = new int[1024][];
+        setHashes = new int[1024];
+        table = new int[2048];
+        strings = new AtomicReferenceArray<String[]>(1024);
+        bitsets = new AtomicReferenceArray<BitSet>(1024);
+        intern(new int[0]);
+
+        if (mergeCacheSize > 0) {
+            int capacity = Integer.highestOneBit(mergeCacheSize);
+            if (capacity < mergeCacheSize) {
+                capacity <<= 1;
+            }
+            mergeCache = new AtomicReferenceArray<MergeEntry>(capacity);
+        }
     }
 
     public int getEmptyId() {
-        return cache.getId("");
+        return 0;
     }
 
-    public int getId(String singleString) {
-        return cache.getId(singleString);
+    /**
+     * @param singleString specifies a type name. An empty string represents an
+     *                     empty set.
+     * @return the id of a set including only the type.
+     */
+    public synchronized int getId(String singleString) {
+        if (singleString.length() == 0) {
+            return getEmptyId();
+        }
+        int type = getTypeId(singleString);
+        int id = singletonSets.get(type);
+        if (id == NOT_FOUND) {
+            id = intern(new int[] { type });
+            singletonSets.set(type, id);
+        }
+        return id;
     }
 
-    public int getId(String[] strings) {
-        return cache.getId(toSingleString(strings));
+    /**
+     * @param strings specifies type names. The array is regarded as a set;
+     *                the order and duplicated elements are ignored.
+     * @return the id of a set including the types.
+     */
+    public synchronized int getId(String[] strings) {
+        int[] types = new int[strings.length];
+        int count = 0;
+        for (String s : strings) {
+            if (s.length() > 0) {
+                types[count++] = getTypeId(s);
+            }
+        }
+        Arrays.sort(types, 0, count);
+        int length = 0;
+        for (int i = 0; i < count; ++i) {
+            if (length == 0 || types[length - 1] != types[i]) {
+                types[length++] = types[i];
+            }
+        }
+        return intern(Arrays.copyOf(types, length));
     }
 
+    /**
+     * @param id specifies a set.
+     * @return the type names in the set, sorted by their names. The array is
+     *         shared and must not be modified.
+     */
     public String[] getStrings(int id) {
-        if (strings.containsKey(id)) {
-            return strings.get(id);
-        } else {
-            String s = cache.getItem(id);
-            if (s.length() == 0) {
-                return EMPTY;
+        String[] array = strings.get(id);
+        return (array != null) ? array : createStrings(id);
+    }
+
+    private synchronized String[] createStrings(int id) {
+        AtomicReferenceArray<String[]> current = strings;
+        String[] array = current.get(id);
+        if (array == null) {
+            int[] types = sets[id];
+            if (types.length == 0) {
+                array = EMPTY;
             } else {
-                String[] array = s.split(SEPARATOR_REGEX);
-                strings.put(id, array);
-                return array;
+                array = new String[types.length];
+                for (int i = 0; i < types.length; ++i) {
+                    array[i] = typeNames.get(types[i]);
+                }
+                Arrays.sort(array);
             }
+            current.set(id, array);
         }
+        return array;
+    }
+
+    /**
+     * @param id specifies a set.
+     * @return the number of types in the set.
+     */
+    public int getTypeCount(int id) {
+        return sets[id].length;
+    }
+
+    /**
+     * @param id   specifies a set.
+     * @param type specifies a type name.
+     * @return true if the set includes the type.
+     */
+    public boolean contains(int id, String type) {
+        Integer t = typeIds.get(type);
+        if (t == null) {
+            return false;
+        }
+        int[] types = sets[id];
+        if (types.length <= BITSET_THRESHOLD) {
+            return Arrays.binarySearch(types, t) >= 0;
+        }
+        BitSet bits = bitsets.get(id);
+        if (bits == null) {
+            bits = createBitSet(id);
+        }
+        return bits.get(t);
+    }
+
+    private synchronized BitSet createBitSet(int id) {
+        AtomicReferenceArray<BitSet> current = bitsets;
+        BitSet bits = current.get(id);
+        if (bits == null) {
+            int[] types = sets[id];
+            bits = new BitSet(types[types.length - 1] + 1);
+            for (int i = 0; i < types.length; ++i) {
+                bits.set(types[i]);
+            }
+            current.set(id, bits);
+        }
+        return bits;
     }
 
     public int merge(int id1, int id2) {
@@ -59,46 +223,238 @@ public class TypeSetManager {
             id1 = id2;
             id2 = swap;
         }
-        TIntIntHashMap map = mergeMap.get(id1);
-        if (map != null) {
-            if (map.containsKey(id2)) {
-                return map.get(id2);
+        if (id1 == id2 || id1 == getEmptyId()) {
+            return id2;
+        }
+        mergeCount.increment();
+        AtomicReferenceArray<MergeEntry> cache = mergeCache;
+        if (cache == null) {
+            return union(id1, id2);
+        }
+        long key = (((long) id1) << 32) | id2;
+        int slot = slot(key, cache.length());
+        MergeEntry entry = cache.get(slot);
+        if (entry != null && entry.key == key) {
+            mergeCacheHitCount.increment();
+            return entry.value;
+        }
+
+        int result = union(id1, id2);
+        if (entry != null) {
+            mergeCacheEvictionCount.increment();
+        }
+        cache.set(slot, new MergeEntry(key, result));
+        return result;
+    }
+
+    private static int slot(long key, int capacity) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (capacity - 1);
+    }
+
+    /**
+     * Releases the merge cache. Subsequent merges are computed without the
+     * cache. Statistics are not changed.
+     */
+    public void discardMergeCache() {
+        mergeCache = null;
+    }
+
+    /**
+     * @return the number of entries of the merge cache. The return value is 0
+     *         if the cache is disabled or discarded.
+     */
+    public int getMergeCacheSize() {
+        AtomicReferenceArray<MergeEntry> cache = mergeCache;
+        return (cache != null) ? cache.length() : 0;
+    }
+
+    /**
+     * @return the number of <code>merge</code> calls excluding trivial ones
+     *         (merging a set with itself or an empty set).
+     */
+    public long getMergeCount() {
+        return mergeCount.sum();
+    }
+
+    /**
+     * @return the number of merges answered by the merge cache.
+     */
+    public long getMergeCacheHitCount() {
+        return mergeCacheHitCount.sum();
+    }
+
+    /**
+     * @return the number of cached results overwritten by other results.
+     */
+    public long getMergeCacheEvictionCount() {
+        return mergeCacheEvictionCount.sum();
+    }
+
+    /**
+     * Computes the union of two sets. An array is allocated only if neither
+     * set includes the other.
+     */
+    private int union(int id1, int id2) {
+        int[][] current = sets;
+        int[] a = current[id1];
+        int[] b = current[id2];
+        int length = unionLength(a, b);
+        if (length == a.length) {
+            return id1; // a includes b
+        } else if (length == b.length) {
+            return id2; // b includes a
+        }
+        int[] union = new int[length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                union[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                union[k++] = b[j++];
+            } else {
+                union[k++] = a[i++];
+                j++;
             }
         }
+        while (i < a.length) {
+            union[k++] = a[i++];
+        }
+        while (j < b.length) {
+            union[k++] = b[j++];
+        }
+        return intern(union);
+    }
 
-        HashSet<String> union = new HashSet<String>();
-        for (String s : getStrings(id1)) {
-            union.add(s);
+    private static int unionLength(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int length = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+            length++;
         }
-        for (String s : getStrings(id2)) {
-            union.add(s);
+        return length + (a.length - i) + (b.length - j);
+    }
+
+    private int getTypeId(String type) {
+        Integer id = typeIds.get(type);
+        if (id != null) {
+            return id;
         }
-        String[] unionStrings = union.toArray(EMPTY);
-        Arrays.sort(unionStrings);
-        int result = getId(unionStrings);
-        if (map == null) {
-            map = new TIntIntHashMap();
-            mergeMap.put(id1, map);
+        int t = typeNames.size();
+        typeIds.put(type, t);
+        typeNames.add(type);
+        singletonSets.add(NOT_FOUND);
+        return t;
+    }
+
+    /**
+     * @param types specifies sorted type ids.
+     * @return the id of the set. If the set is new, the array is registered
+     *         as it is; the caller must not modify it.
+     */
+    private synchronized int intern(int[] types) {
+        int hash = hash(types);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        int[][] current = sets;
+        while (table[slot] != 0) {
+            int id = table[slot] - 1;
+            if (setHashes[id] == hash && Arrays.equals(current[id], types)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = setCount++;
+        if (id == current.length) {
+            int capacity = current.length * 2;
+            current = Arrays.copyOf(current, capacity);
+            sets = current;
+            setHashes = Arrays.copyOf(setHashes, capacity);
+            strings = grow(strings, capacity);
+            bitsets = grow(bitsets, capacity);
+        }
+        current[id] = types;
+        setHashes[id] = hash;
+        table[slot] = id + 1;
+        if (setCount * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private static <T> AtomicReferenceArray<T> grow(AtomicReferenceArray<T> array, int capacity) {
+        AtomicReferenceArray<T> result = new AtomicReferenceArray<T>(capacity);
+        for (int i = 0; i < array.length(); ++i) {
+            result.set(i, array.get(i));
         }
-        map.put(id2, result);
         return result;
     }
 
-    private String toSingleString(String[] types) {
-        StringBuilder b = new StringBuilder();
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < setCount; ++id) {
+            int slot = setHashes[id] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    private static int hash(int[] types) {
+        int h = types.length;
         for (int i = 0; i < types.length; ++i) {
-            if (i > 0)
-                b.append(SEPARATOR);
-            b.append(types[i]);
+            h = h * 31 + types[i];
         }
-        return b.toString();
+        // Spread the bits for the linear probing
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
     }
 
-    public int size() {
+    /**
+     * @return the total length of the type sets represented as strings joined
+     *         by "|".
+     */
+    public synchronized int size() {
         int total = 0;
-        for (int i = 0; i < cache.size(); ++i) {
-            total += cache.getItem(i).length();
+        for (int id = 0; id < setCount; ++id) {
+            int[] types = sets[id];
+            for (int i = 0; i < types.length; ++i) {
+                total += typeNames.get(types[i]).length();
+            }
+            if (types.length > 1) {
+                total += types.length - 1;
+            }
         }
         return total;
     }
+
+    /**
+     * An entry of the merge cache. Final fields make an entry safe to read
+     * from other threads.
+     */
+    private static final class MergeEntry {
+        private final long key;
+        private final int value;
+
+        public MergeEntry(long key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
 }
@@ -1,17 +1,26 @@
 package soba.core.vta;
 
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.procedure.TIntObjectProcedure;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
@@ -38,6 +47,9 @@ public class VTAResolver implements IDynamicBindingResolver {
 
     public static int VERTEX_ERROR = 0;
     private static final String ARRAY_SUFFIX = "[]";
+    private static final int PARALLEL_PROPAGATION_THRESHOLD = 256;
+    private static final int PARALLEL_RESOLUTION_THRESHOLD = 256;
+    private static final MethodInfo[] NO_METHODS = new MethodInfo[0];
 
     private Map<FieldInfo, FieldVertex> fieldVertex;
     private Map<MethodInfo, CallSiteVertices[]> callsiteMap; // methodInfo * instructionIndex -> callsite
@@ -56,6 +68,24 @@ public class VTAResolver implements IDynamicBindingResolver {
 
     private TypeSetManager typeSetManager;
 
+    private Map<MethodInfo, MethodSegment> segments; // the part of the graph created for each method
+    private int vertexCount;
+    private int[] representatives; // vertex ID -> the representative of its SCC
+    private int parallelLevelCount; // the number of levels processed by a fork-join pool
+    private int nextMethodId;
+
+    private volatile CallTargetTable callTargets; // created by precomputeCallTargets
+
+    // Used only by the demand-driven mode
+    private boolean demandDriven;
+    private List<ClassInfo> classes;
+    private ArrayList<Object> vertexOwners; // vertex ID -> MethodInfo or FieldInfo
+    private TIntObjectHashMap<TIntArrayList> incomingEdges;
+    private int indexedEdgeCount;
+    private BitSet computedVertices; // vertices whose reachingTypes are computed
+    private Map<MethodInfo, List<MethodInfo>> callers;
+    private Map<FieldInfo, List<MethodInfo>> fieldAccessors;
+
     /**
      * Creates a new <code>VTAResolver</code> instance. All methods and fields in
      * the program are analyzed.
@@ -93,8 +123,69 @@ public class VTAResolver implements IDynamicBindingResolver {
      * @param selector specifies the analysis target in the program.
      */
     public VTAResolver(final JavaProgram program, final IAnalysisTarget selector) {
+        this(program, selector, 1);
+    }
+
+    /**
+     * Creates a new <code>VTAResolver</code> instance.
+     * 
+     * @param program
+     * @param selector specifies the analysis target in the program.
+     * @param threads  specifies the number of threads for type propagation. If
+     *                 2 or more, strongly connected components of a large
+     *                 graph are detected in parallel, and vertices in the same
+     *                 topological level are processed in parallel. The result
+     *                 is the same as the sequential propagation.
+     */
+    public VTAResolver(final JavaProgram program, final IAnalysisTarget selector, int threads) {
+        this(program, selector, threads, PARALLEL_PROPAGATION_THRESHOLD);
+    }
+
+    /**
+     * Creates a new <code>VTAResolver</code> instance.
+     * 
+     * @param program
+     * @param selector             specifies the analysis target in the program.
+     * @param threads              specifies the number of threads for type
+     *                             propagation.
+     * @param propagationThreshold specifies the minimum number of vertices in
+     *                             a topological level processed in parallel.
+     */
+    VTAResolver(final JavaProgram program, final IAnalysisTarget selector, int threads, int propagationThreshold) {
+        this(program, selector, false);
+
+        // Create vertices for inter-procedural connection
+        for (ClassInfo c : program.getClasses()) {
+            createVertices(c);
+        }
+
+        // Build a type propagation graph
+        for (MethodSegment s : segments.values()) {
+            buildMethodGraph(s);
+        }
+
+        // Construct a graph object
+        DirectedGraph graph = createGraph();
+        DirectedAcyclicGraph typePropagationDAG = new DirectedAcyclicGraph(graph, threads);
+
+        reachingTypes = new TypeSet[typePropagationDAG.getVertexCount()];
+        assignTypes(typePropagationDAG, null);
+        if (threads < 2) {
+            propagateTypes(typePropagationDAG, null);
+        } else {
+            propagateTypesInParallel(typePropagationDAG, threads, propagationThreshold);
+        }
+        representatives = getRepresentatives(typePropagationDAG);
+    }
+
+    /**
+     * Creates a new <code>VTAResolver</code> instance without vertices.
+     * 
+     * @param demandDriven specifies whether the graph is built on demand.
+     */
+    private VTAResolver(final JavaProgram program, final IAnalysisTarget selector, boolean demandDriven) {
         target = selector;
-        edges = new IntPairList(65536);
+        edges = new IntPairList(demandDriven ? 1024 : 65536);
         hierarchy = program.getClassHierarchy();
 
         callsiteMap = new HashMap<MethodInfo, CallSiteVertices[]>();
@@ -102,118 +193,453 @@ public class VTAResolver implements IDynamicBindingResolver {
         fieldVertex = new HashMap<FieldInfo, FieldVertex>();
         localVerticesMap = new HashMap<MethodInfo, MethodVertices>();
         catchVariableVertices = new TIntObjectHashMap<String>();
-        declaredTypeNames = new ArrayList<String>(65536);
-        List<CallSiteVertices> callsitesWithoutCallees = new ArrayList<CallSiteVertices>();
+        declaredTypeNames = new ArrayList<String>(demandDriven ? 1024 : 65536);
+        segments = new LinkedHashMap<MethodInfo, MethodSegment>();
+        typeSetManager = new TypeSetManager();
+
+        this.demandDriven = demandDriven;
+        if (demandDriven) {
+            classes = program.getClasses();
+            vertexOwners = new ArrayList<Object>(1024);
+            incomingEdges = new TIntObjectHashMap<TIntArrayList>();
+            computedVertices = new BitSet();
+            // ERROR vertex has no types
+            computedVertices.set(VERTEX_ERROR);
+            reachingTypes = new TypeSet[] { new TypeSet(typeSetManager) };
+        }
+        vertexCount = VERTEX_ERROR + 1;
+        addVertexType(TypeSet.DEFAULT_UNKNOWN_TYPE, null);
+    }
 
-        // Create vertices for inter-procedural connection
-        fieldVertex = new HashMap<FieldInfo, FieldVertex>();
-        int vID = VERTEX_ERROR + 1;
-        declaredTypeNames.add(TypeSet.DEFAULT_UNKNOWN_TYPE);
-        for (ClassInfo c : program.getClasses()) {
+    /**
+     * Creates a demand-driven <code>VTAResolver</code>. The resolver builds
+     * no vertices in advance. A query explores the type propagation graph
+     * backward from the vertex of the query, and builds the graph only for
+     * methods and fields that may reach the vertex. The types of the explored
+     * vertices are cached for later queries.
+     * 
+     * The result may include more types than a whole-program
+     * <code>VTAResolver</code>. The whole-program analysis merges vertices
+     * with the ERROR vertex (which represents unknown values) if they form a
+     * cycle through aliasing edges, and the merged vertices have no types.
+     * This mode never merges vertices with the ERROR vertex, because finding
+     * such a cycle requires the whole graph.
+     * 
+     * A demand-driven resolver updates its state in queries; it must not be
+     * shared by threads without synchronization. <code>update</code> is not
+     * available.
+     * 
+     * @param program
+     * @param selector specifies the analysis target in the program.
+     * @return a new resolver.
+     */
+    public static VTAResolver createDemandDrivenResolver(final JavaProgram program,
+            final IAnalysisTarget selector) {
+        return new VTAResolver(program, selector, true);
+    }
+
+    /**
+     * @return true if this resolver builds the graph on demand.
+     */
+    public boolean isDemandDriven() {
+        return demandDriven;
+    }
+
+    /**
+     * Updates the analysis result after classes of the program are added,
+     * removed or changed. Only the methods of the added and changed classes,
+     * and the methods whose call sites or field accesses are resolved
+     * differently in the new hierarchy, are analyzed again. Types are
+     * recomputed only for the vertices reachable from the modified part of the
+     * type propagation graph. The result is the same as a new
+     * <code>VTAResolver</code> for the updated program.
+     * 
+     * Vertices of removed methods are not reused. Create a new
+     * <code>VTAResolver</code> to release them after many updates.
+     * 
+     * Type propagation reuses the merge cache of the
+     * <code>TypeSetManager</code> filled by the constructor and the previous
+     * updates. If the resolver will not be updated anymore, call
+     * <code>getTypeSetManager().discardMergeCache()</code> to release it.
+     * 
+     * @param newHierarchy specifies the class hierarchy including the changes.
+     * @param added        specifies new classes.
+     * @param removed      specifies classes removed from the program.
+     * @param changed      specifies new <code>ClassInfo</code> objects for
+     *                     classes whose contents are changed. The previous
+     *                     objects are identified by their class names.
+     * @return the number of vertices whose types are recomputed.
+     *         <code>precomputeCallTargets</code> must be called again to use
+     *         a call target table.
+     */
+    public int update(ClassHierarchy newHierarchy, Collection<ClassInfo> added, Collection<ClassInfo> removed,
+            Collection<ClassInfo> changed) {
+        if (demandDriven) {
+            throw new IllegalStateException("A demand-driven resolver cannot be updated.");
+        }
+        callTargets = null;
+        hierarchy = newHierarchy;
+        int oldVertexCount = vertexCount;
+        BitSet modified = new BitSet(oldVertexCount);
+
+        // Discard the vertices of removed and changed classes.
+        Set<String> discarded = new HashSet<String>();
+        for (ClassInfo c : removed) {
+            discarded.add(c.getClassName());
+        }
+        for (ClassInfo c : changed) {
+            discarded.add(c.getClassName());
+        }
+        for (Iterator<MethodSegment> it = segments.values().iterator(); it.hasNext();) {
+            MethodSegment s = it.next();
+            if (discarded.contains(s.method.getClassName())) {
+                markModifiedVertices(s, modified);
+                for (int v = s.localBegin; v < s.localEnd; ++v) {
+                    catchVariableVertices.remove(v);
+                }
+                localVerticesMap.remove(s.method);
+                newVerticesMap.remove(s.method);
+                callsiteMap.remove(s.method);
+                it.remove();
+            }
+        }
+        for (Iterator<FieldVertex> it = fieldVertex.values().iterator(); it.hasNext();) {
+            FieldVertex fv = it.next();
+            if (discarded.contains(fv.getFieldInfo().getClassName())) {
+                modified.set(fv.getId());
+                it.remove();
+            }
+        }
+
+        // Create vertices for new classes, and then find methods to be analyzed.
+        List<MethodSegment> unchanged = new ArrayList<MethodSegment>(segments.values());
+        List<ClassInfo> newClasses = new ArrayList<ClassInfo>(added);
+        newClasses.addAll(changed);
+        for (ClassInfo c : newClasses) {
+            createVertices(c);
+        }
+        List<MethodSegment> rebuilt = new ArrayList<MethodSegment>();
+        for (MethodSegment s : unchanged) {
+            if (isDependencyChanged(s)) {
+                markModifiedVertices(s, modified);
+                rebuilt.add(s);
+            }
+        }
+        for (ClassInfo c : newClasses) {
             for (int mIndex = 0; mIndex < c.getMethodCount(); mIndex++) {
-                MethodInfo m = c.getMethod(mIndex);
-                if (m.hasMethodBody() && (selector == null || selector.isTargetMethod(m))) {
-                    // Create vertices for local variables (including formal parameters)
-//					MethodBody body = m.getMethodBody();
-                    DataDependence dataflow = m.getDataDependence();
-                    MethodVertices localVertices = new MethodVertices(m, dataflow.getLocalVariables(), vID);
-                    this.localVerticesMap.put(m, localVertices);
-                    vID += localVertices.getVertexCount();
-                    for (int i = 0; i < localVertices.getVertexCount(); ++i) {
-                        declaredTypeNames.add(localVertices.getTypeName(i));
-                    }
+                MethodSegment s = segments.get(c.getMethod(mIndex));
+                if (s != null) {
+                    rebuilt.add(s);
                 }
             }
-            for (int fIndex = 0; fIndex < c.getFieldCount(); fIndex++) {
-                FieldInfo f = c.getField(fIndex);
-                if (!TypeConstants.isPrimitiveTypeName(f.getFieldTypeName())) {
-                    FieldVertex fv = new FieldVertex(f, vID);
-                    fieldVertex.put(f, fv);
-                    vID++;
-                    declaredTypeNames.add(fv.getTypeName());
+        }
+
+        // Reuse edges of the other methods
+        IntPairList oldEdges = edges;
+        edges = new IntPairList(Math.max(oldEdges.size(), 1));
+        Set<MethodSegment> rebuiltSet = new HashSet<MethodSegment>(rebuilt);
+        for (MethodSegment s : segments.values()) {
+            if (!rebuiltSet.contains(s)) {
+                int begin = edges.size();
+                for (int i = s.edgeBegin; i < s.edgeEnd; ++i) {
+                    edges.add(oldEdges.getFirstValue(i), oldEdges.getSecondValue(i));
                 }
+                s.edgeBegin = begin;
+                s.edgeEnd = edges.size();
             }
         }
+        for (MethodSegment s : rebuilt) {
+            buildMethodGraph(s);
+            markModifiedVertices(s, modified);
+        }
+        modified.set(oldVertexCount, vertexCount);
 
-        // Build a type propagation graph
-        for (ClassInfo c : program.getClasses()) {
-            for (int mIndex = 0; mIndex < c.getMethodCount(); mIndex++) {
-                MethodInfo m = c.getMethod(mIndex);
-                if (m.hasMethodBody() && (selector == null || selector.isTargetMethod(m))) {
-//					MethodBody body = m.getMethodBody();
-                    DataDependence dataflow = m.getDataDependence();
-
-                    MethodNode mnode = m.getMethodNode();
-
-                    // Create vertices for "new" instructions
-                    NewVertices newVertices = new NewVertices(mnode.instructions, vID);
-                    vID += newVertices.getVertexCount();
-                    this.newVerticesMap.put(m, newVertices);
-                    for (int i = 0; i < newVertices.getVertexCount(); ++i) {
-                        declaredTypeNames.add(newVertices.getTypeName(i));
-                        assert newVertices.getTypeName(i) != null;
-                    }
+        // Vertices in a component including a modified vertex may be separated.
+        BitSet components = new BitSet(oldVertexCount);
+        for (int v = modified.nextSetBit(0); v >= 0 && v < oldVertexCount; v = modified.nextSetBit(v + 1)) {
+            components.set(representatives[v]);
+        }
+        for (int v = 0; v < oldVertexCount; ++v) {
+            if (components.get(representatives[v])) {
+                modified.set(v);
+            }
+        }
 
-                    // Create vertices for method invocations.
-                    // Connect inter-procedural edges.
-                    CallSiteVertices[] callsites = new CallSiteVertices[m.getInstructionCount()];
-                    callsiteMap.put(m, callsites);
-
-                    for (CallSite callsite : m.getCallSites()) {
-                        MethodInfo[] methods = hierarchy.resolveCall(callsite);
-                        CallSiteVertices actuals = new CallSiteVertices(callsite, vID);
-                        callsites[callsite.getInstructionIndex()] = actuals;
-                        vID += actuals.getVertexCount();
-                        for (int i = 0; i < actuals.getVertexCount(); ++i) {
-                            declaredTypeNames.add(actuals.getTypeName(i));
-                        }
+        DirectedGraph graph = createGraph();
+        DirectedAcyclicGraph typePropagationDAG = new DirectedAcyclicGraph(graph);
+        BitSet cone = getReachableVertices(graph, modified);
+        reachingTypes = Arrays.copyOf(reachingTypes, vertexCount);
+        for (int v = cone.nextSetBit(0); v >= 0; v = cone.nextSetBit(v + 1)) {
+            reachingTypes[v] = null;
+        }
+        assignTypes(typePropagationDAG, cone);
+        propagateTypes(typePropagationDAG, cone);
+        representatives = getRepresentatives(typePropagationDAG);
+        return cone.cardinality();
+    }
+
+    /**
+     * Creates vertices for local variables of methods and fields in a class.
+     */
+    private void createVertices(ClassInfo c) {
+        for (int mIndex = 0; mIndex < c.getMethodCount(); mIndex++) {
+            MethodInfo m = c.getMethod(mIndex);
+            if (isTargetMethod(m)) {
+                createMethodVertices(m);
+            }
+        }
+        for (int fIndex = 0; fIndex < c.getFieldCount(); fIndex++) {
+            FieldInfo f = c.getField(fIndex);
+            if (!TypeConstants.isPrimitiveTypeName(f.getFieldTypeName())) {
+                createFieldVertex(f);
+            }
+        }
+    }
+
+    private boolean isTargetMethod(MethodInfo m) {
+        return m.hasMethodBody() && (target == null || target.isTargetMethod(m));
+    }
 
-                        boolean methodNotIncluded = false;
-                        if (methods.length > 0) {
-                            for (MethodInfo called : methods) {
-
-                                MethodVertices formals = localVerticesMap.get(called);
-                                if (formals != null) {
-                                    for (int i = 0; i < actuals.getParamCount(); ++i) {
-                                        if (actuals.isObjectParam(i)) {
-                                            assert actuals.getParamVertexId(i) != VERTEX_ERROR;
-                                            assert formals.getFormalVertex(i) != VERTEX_ERROR;
-
-                                            addEdge(actuals.getParamVertexId(i), formals.getFormalVertex(i));
-                                        }
-                                    }
-                                    if (actuals.hasReturnValue()) {
-                                        assert formals.getReturnVertex() != VERTEX_ERROR;
-                                        assert actuals.getReturnValueVertex() != VERTEX_ERROR;
-                                        addEdge(formals.getReturnVertex(), actuals.getReturnValueVertex());
-                                    }
-                                } else {
-                                    // The method may be out of target.
-                                    methodNotIncluded = true;
-                                }
+    /**
+     * Creates vertices for local variables (including formal parameters).
+     */
+    private MethodVertices createMethodVertices(MethodInfo m) {
+        DataDependence dataflow = m.getDataDependence();
+        MethodVertices localVertices = new MethodVertices(m, dataflow.getLocalVariables(), vertexCount);
+        this.localVerticesMap.put(m, localVertices);
+        MethodSegment s = new MethodSegment(nextMethodId++, m, vertexCount);
+        vertexCount += localVertices.getVertexCount();
+        s.localEnd = vertexCount;
+        segments.put(m, s);
+        for (int i = 0; i < localVertices.getVertexCount(); ++i) {
+            addVertexType(localVertices.getTypeName(i), m);
+        }
+        return localVertices;
+    }
+
+    private FieldVertex createFieldVertex(FieldInfo f) {
+        FieldVertex fv = new FieldVertex(f, vertexCount);
+        fieldVertex.put(f, fv);
+        vertexCount++;
+        addVertexType(fv.getTypeName(), f);
+        return fv;
+    }
+
+    /**
+     * Records the type name of a new vertex.
+     * 
+     * @param owner specifies a method or a field that created the vertex.
+     */
+    private void addVertexType(String typeName, Object owner) {
+        declaredTypeNames.add(typeName);
+        if (vertexOwners != null) {
+            vertexOwners.add(owner);
+        }
+    }
+
+    /**
+     * @return vertices for local variables of a method. In the demand-driven
+     *         mode, the vertices are created if necessary. The return value is
+     *         null if the method is not analyzed.
+     */
+    private MethodVertices getMethodVertices(MethodInfo m) {
+        MethodVertices vertices = localVerticesMap.get(m);
+        if (vertices == null && demandDriven && isTargetMethod(m)) {
+            vertices = createMethodVertices(m);
+        }
+        return vertices;
+    }
+
+    /**
+     * Creates vertices for "new" instructions and method invocations in a
+     * method, and edges from/to the vertices. The edges are appended to the
+     * edge list. Vertices created by a previous call are reused.
+     */
+    private void buildMethodGraph(MethodSegment s) {
+        MethodInfo m = s.method;
+        DataDependence dataflow = m.getDataDependence();
+        MethodNode mnode = m.getMethodNode();
+        s.edgeBegin = edges.size();
+        s.callsitesWithoutCallees = new ArrayList<CallSiteVertices>();
+
+        // Create vertices for "new" instructions
+        if (!newVerticesMap.containsKey(m)) {
+            NewVertices newVertices = new NewVertices(mnode.instructions, vertexCount);
+            vertexCount += newVertices.getVertexCount();
+            this.newVerticesMap.put(m, newVertices);
+            for (int i = 0; i < newVertices.getVertexCount(); ++i) {
+                addVertexType(newVertices.getTypeName(i), m);
+                assert newVertices.getTypeName(i) != null;
+            }
+        }
+
+        // Create vertices for method invocations.
+        // Connect inter-procedural edges.
+        CallSiteVertices[] callsites = callsiteMap.get(m);
+        if (callsites == null) {
+            callsites = new CallSiteVertices[m.getInstructionCount()];
+            callsiteMap.put(m, callsites);
+        }
+
+        List<MethodInfo[]> callees = new ArrayList<MethodInfo[]>();
+        for (CallSite callsite : m.getCallSites()) {
+            MethodInfo[] methods = hierarchy.resolveCall(callsite);
+            callees.add(methods);
+            CallSiteVertices actuals = callsites[callsite.getInstructionIndex()];
+            if (actuals == null) {
+                actuals = new CallSiteVertices(callsite, vertexCount);
+                callsites[callsite.getInstructionIndex()] = actuals;
+                vertexCount += actuals.getVertexCount();
+                for (int i = 0; i < actuals.getVertexCount(); ++i) {
+                    addVertexType(actuals.getTypeName(i), m);
+                }
+            }
+
+            boolean methodNotIncluded = false;
+            if (methods.length > 0) {
+                for (MethodInfo called : methods) {
+
+                    MethodVertices formals = getMethodVertices(called);
+                    if (formals != null) {
+                        for (int i = 0; i < actuals.getParamCount(); ++i) {
+                            if (actuals.isObjectParam(i)) {
+                                assert actuals.getParamVertexId(i) != VERTEX_ERROR;
+                                assert formals.getFormalVertex(i) != VERTEX_ERROR;
+
+                                addEdge(actuals.getParamVertexId(i), formals.getFormalVertex(i));
                             }
                         }
-                        if ((methodNotIncluded || methods.length == 0) && actuals.hasReturnValue())
-                            callsitesWithoutCallees.add(actuals);
-
+                        if (actuals.hasReturnValue()) {
+                            assert formals.getReturnVertex() != VERTEX_ERROR;
+                            assert actuals.getReturnValueVertex() != VERTEX_ERROR;
+                            addEdge(formals.getReturnVertex(), actuals.getReturnValueVertex());
+                        }
+                    } else {
+                        // The method may be out of target.
+                        methodNotIncluded = true;
                     }
+                }
+            }
+            if ((methodNotIncluded || methods.length == 0) && actuals.hasReturnValue())
+                s.callsitesWithoutCallees.add(actuals);
 
-                    // Process instructions in a method
-                    for (int i = 0; i < m.getInstructionCount(); ++i) {
-                        AbstractInsnNode instruction = mnode.instructions.get(i);
-                        analyzeInstruction(i, instruction, m, dataflow);
-                    }
+        }
+        s.callees = callees.toArray(new MethodInfo[callees.size()][]);
+
+        // Process instructions in a method
+        TIntArrayList fieldInstructions = new TIntArrayList();
+        List<FieldVertex> fields = new ArrayList<FieldVertex>();
+        for (int i = 0; i < m.getInstructionCount(); ++i) {
+            AbstractInsnNode instruction = mnode.instructions.get(i);
+            analyzeInstruction(i, instruction, m, dataflow);
+            if (instruction.getType() == AbstractInsnNode.FIELD_INSN) {
+                fieldInstructions.add(i);
+                fields.add(getFieldVertexId((FieldInsnNode) instruction));
+            }
+        }
+        s.fieldInstructions = fieldInstructions.toArray();
+        s.fields = fields.toArray(new FieldVertex[fields.size()]);
+        s.edgeEnd = edges.size();
+    }
+
+    /**
+     * @return true if a call site or a field access in the method is resolved
+     *         differently from the last analysis.
+     */
+    private boolean isDependencyChanged(MethodSegment s) {
+        int index = 0;
+        for (CallSite callsite : s.method.getCallSites()) {
+            if (!isSameMethods(hierarchy.resolveCall(callsite), s.callees[index++])) {
+                return true;
+            }
+        }
+        InsnList instructions = s.method.getMethodNode().instructions;
+        for (int i = 0; i < s.fieldInstructions.length; ++i) {
+            FieldInsnNode node = (FieldInsnNode) instructions.get(s.fieldInstructions[i]);
+            if (getFieldVertexId(node) != s.fields[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameMethods(MethodInfo[] methods1, MethodInfo[] methods2) {
+        if (methods1 == methods2) {
+            return true;
+        } else if (methods1.length != methods2.length) {
+            return false;
+        }
+        // The order of methods may depend on the hierarchy.
+        Set<MethodInfo> set = Collections.newSetFromMap(new IdentityHashMap<MethodInfo, Boolean>());
+        set.addAll(Arrays.asList(methods1));
+        for (MethodInfo m : methods2) {
+            if (!set.contains(m)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the vertices whose incoming edges or types are given by the
+     * method.
+     */
+    private void markModifiedVertices(MethodSegment s, BitSet modified) {
+        for (int i = s.edgeBegin; i < s.edgeEnd; ++i) {
+            modified.set(edges.getSecondValue(i));
+        }
+        for (CallSiteVertices vertices : s.callsitesWithoutCallees) {
+            modified.set(vertices.getReturnValueVertex());
+        }
+    }
+
+    /**
+     * @return a graph including the edges of all methods. The edge list is
+     *         copied because <code>DirectedGraph</code> sorts the list, while
+     *         the edges of each method must be kept together.
+     */
+    private DirectedGraph createGraph() {
+        IntPairList copy = new IntPairList(Math.max(edges.size(), 1));
+        copy.addAll(edges);
+        return new DirectedGraph(vertexCount, copy);
+    }
+
+    /**
+     * @return vertices reachable from the specified vertices.
+     */
+    private static BitSet getReachableVertices(DirectedGraph graph, BitSet start) {
+        BitSet visited = (BitSet) start.clone();
+        TIntArrayList worklist = new TIntArrayList();
+        for (int v = start.nextSetBit(0); v >= 0; v = start.nextSetBit(v + 1)) {
+            worklist.add(v);
+        }
+        while (!worklist.isEmpty()) {
+            int v = worklist.removeAt(worklist.size() - 1);
+            for (int e = 0; e < graph.getOutDegree(v); ++e) {
+                int next = graph.getEdge(v, e);
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    worklist.add(next);
                 }
             }
         }
+        return visited;
+    }
 
-        // Construct a graph object
-        DirectedGraph graph = new DirectedGraph(vID, edges);
-        DirectedAcyclicGraph typePropagationDAG = new DirectedAcyclicGraph(graph);
+    private static int[] getRepresentatives(DirectedAcyclicGraph typePropagationDAG) {
+        int[] result = new int[typePropagationDAG.getVertexCount()];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = typePropagationDAG.getRepresentativeNode(i);
+        }
+        return result;
+    }
 
-        this.typeSetManager = new TypeSetManager();
-        assignTypes(typePropagationDAG, callsitesWithoutCallees, selector);
-        propagateTypes(typePropagationDAG);
+    /**
+     * @return the <code>TypeSetManager</code> object holding the type sets of
+     *         this analysis, e.g. to read its statistics.
+     */
+    public TypeSetManager getTypeSetManager() {
+        return typeSetManager;
     }
 
     /**
@@ -231,75 +657,501 @@ public class VTAResolver implements IDynamicBindingResolver {
     @Override
     public MethodInfo[] resolveCall(CallSite cs) {
         int instruction = cs.getInstructionIndex();
-        CallSiteVertices[] callsites = callsiteMap.get(cs.getOwnerMethod());
+        CallTargetTable table = callTargets;
+        if (table != null) {
+            MethodSegment s = segments.get(cs.getOwnerMethod());
+            MethodInfo[] methods = (s != null) ? table.get(s.id, instruction) : null;
+            return (methods != null) ? methods : NO_METHODS;
+        }
+        CallSiteVertices[] callsites = getCallSiteVertices(cs.getOwnerMethod());
         if (callsites != null) {
             CallSiteVertices params = callsites[instruction];
             if (params != null) {
-                HashSet<MethodInfo> called = new HashSet<>();
-                int v = params.getParamVertexId(0);
-                TypeSet types = reachingTypes[v];
-                String methodName = params.getCallSite().getMethodName();
-                String methodDesc = params.getCallSite().getDescriptor();
-                if (types != null) {
-                    ArrayList<String> declaredType = new ArrayList<String>();
-                    declaredType.add(declaredTypeNames.get(v));
-                    Collection<String> declaredSubtypes = hierarchy.getAllSubtypes(declaredType);
-
-                    for (int i = 0; i < types.getTypeCount(); ++i) {
-                        String className = types.getType(i);
-                        if (declaredSubtypes.contains(className)) {
-                            MethodInfo m = hierarchy.resolveSpecialCall(className, methodName, methodDesc);
-                            if (m != null && !target.isExcludedType(m.getClassName())) {
-                                called.add(m);
-                            }
-                        }
+                return computeCallTargets(params);
+            } else {
+                // params == null if the specified instruction is not an invocation.
+                return new MethodInfo[0];
+            }
+        } else {
+            // callsites == null if the caller is not included in the analysis.
+            return new MethodInfo[0];
+        }
+    }
+
+    /**
+     * Resolves all the call sites in advance and stores the results in a
+     * table. Subsequent <code>resolveCall</code> calls look up the table and
+     * return shared arrays without allocation; the arrays must not be
+     * modified.
+     * 
+     * @param threads specifies the number of threads. Call sites are resolved
+     *                in parallel only if the class hierarchy is frozen.
+     */
+    public void precomputeCallTargets(int threads) {
+        if (demandDriven) {
+            throw new IllegalStateException("A demand-driven resolver cannot resolve all call sites.");
+        }
+        final List<CallSiteVertices> sites = new ArrayList<CallSiteVertices>();
+        TIntArrayList methodIds = new TIntArrayList();
+        for (MethodSegment s : segments.values()) {
+            for (CallSiteVertices params : callsiteMap.get(s.method)) {
+                if (params != null) {
+                    sites.add(params);
+                    methodIds.add(s.id);
+                }
+            }
+        }
+
+        final MethodInfo[][] results = new MethodInfo[sites.size()][];
+        if (threads < 2 || !hierarchy.isFrozen() || sites.size() < PARALLEL_RESOLUTION_THRESHOLD) {
+            for (int i = 0; i < results.length; ++i) {
+                results[i] = computeCallTargets(sites.get(i));
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new ResolutionTask(sites, results, 0, results.length));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        CallTargetTable table = new CallTargetTable(results.length);
+        for (int i = 0; i < results.length; ++i) {
+            table.put(methodIds.get(i), sites.get(i).getCallSite().getInstructionIndex(), results[i]);
+        }
+        callTargets = table;
+    }
+
+    /**
+     * @return the number of call sites stored by
+     *         <code>precomputeCallTargets</code>. The return value is 0 if the
+     *         table is not created.
+     */
+    public int getCallTargetTableSize() {
+        CallTargetTable table = callTargets;
+        return (table != null) ? table.size() : 0;
+    }
+
+    /**
+     * @return the number of topological levels whose vertices were processed
+     *         by a fork-join pool in the constructor.
+     */
+    int getParallelLevelCount() {
+        return parallelLevelCount;
+    }
+
+    private class ResolutionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<CallSiteVertices> sites;
+        private MethodInfo[][] results;
+        private int begin;
+        private int end;
+
+        public ResolutionTask(List<CallSiteVertices> sites, MethodInfo[][] results, int begin, int end) {
+            this.sites = sites;
+            this.results = results;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin <= PARALLEL_RESOLUTION_THRESHOLD) {
+                for (int i = begin; i < end; ++i) {
+                    results[i] = computeCallTargets(sites.get(i));
+                }
+            } else {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new ResolutionTask(sites, results, begin, middle),
+                        new ResolutionTask(sites, results, middle, end));
+            }
+        }
+    }
+
+    /**
+     * @param params specifies the vertices of a call site.
+     * @return methods that may be invoked by the call site.
+     */
+    private MethodInfo[] computeCallTargets(CallSiteVertices params) {
+        HashSet<MethodInfo> called = new HashSet<>();
+        int v = params.getParamVertexId(0);
+        TypeSet types = getReachingTypes(v);
+        String methodName = params.getCallSite().getMethodName();
+        String methodDesc = params.getCallSite().getDescriptor();
+        if (types != null) {
+            // A frozen hierarchy returns a compiled set whose contains() is
+            // a constant-time subtype check.
+            Collection<String> declaredSubtypes = hierarchy
+                    .getAllSubtypes(Collections.singletonList(declaredTypeNames.get(v)));
+
+            for (int i = 0; i < types.getTypeCount(); ++i) {
+                String className = types.getType(i);
+                if (declaredSubtypes.contains(className)) {
+                    MethodInfo m = hierarchy.resolveSpecialCall(className, methodName, methodDesc);
+                    if (m != null && !target.isExcludedType(m.getClassName())) {
+                        called.add(m);
                     }
+                }
+            }
 
-                    ArrayList<String> approxTypes = new ArrayList<String>();
-                    for (int i = 0; i < types.getApproximatedTypeCount(); ++i) {
-                        approxTypes.add(types.getApproximatedType(i));
+            ArrayList<String> approxTypes = new ArrayList<String>();
+            for (int i = 0; i < types.getApproximatedTypeCount(); ++i) {
+                approxTypes.add(types.getApproximatedType(i));
+            }
+            Collection<String> subtypes = hierarchy.getAllSubtypes(approxTypes);
+            for (String className : subtypes) {
+                if (declaredSubtypes.contains(className)) {
+                    MethodInfo m = hierarchy.resolveSpecialCall(className, methodName, methodDesc);
+                    if (m != null && !target.isExcludedType(m.getClassName())) {
+                        called.add(m);
                     }
-                    Collection<String> subtypes = hierarchy.getAllSubtypes(approxTypes);
-                    for (String className : subtypes) {
-                        if (declaredSubtypes.contains(className)) {
-                            MethodInfo m = hierarchy.resolveSpecialCall(className, methodName, methodDesc);
-                            if (m != null && !target.isExcludedType(m.getClassName())) {
-                                called.add(m);
-                            }
+                }
+            }
+            MethodInfo[] methods = called.toArray(new MethodInfo[0]);
+            Arrays.sort(methods, new Comparator<MethodInfo>() {
+                @Override
+                public int compare(MethodInfo o1, MethodInfo o2) {
+                    int idx = o1.getClassName().compareTo(o2.getClassName());
+                    if (idx != 0)
+                        return idx;
+
+                    idx = o1.getMethodName().compareTo(o2.getMethodName());
+                    if (idx != 0)
+                        return idx;
+
+                    idx = o1.getDescriptor().compareTo(o2.getDescriptor());
+                    if (idx != 0)
+                        return idx;
+
+                    return o1.hashCode() - o2.hashCode();
+                }
+            });
+            return methods;
+        } else {
+            // types == null if the invocation is not processed -- this condition is never
+            // satisfied.
+            return new MethodInfo[0];
+        }
+    }
+
+    /**
+     * @return vertices for call sites in a method. The return value is null if
+     *         the method is not analyzed.
+     */
+    private CallSiteVertices[] getCallSiteVertices(MethodInfo m) {
+        if (demandDriven && getMethodVertices(m) != null) {
+            buildMethodGraphOnDemand(m);
+        }
+        return callsiteMap.get(m);
+    }
+
+    /**
+     * @return the types that may reach a vertex. In the demand-driven mode,
+     *         the types are computed if necessary.
+     */
+    private TypeSet getReachingTypes(int v) {
+        if (demandDriven && !computedVertices.get(v)) {
+            computeTypesOnDemand(v);
+        }
+        return reachingTypes[v];
+    }
+
+    /**
+     * Computes the types of a vertex and the vertices that may reach it. The
+     * graph is explored backward from the vertex. Vertices whose types are
+     * already computed are not explored again.
+     * 
+     * Types are propagated in a graph including only the explored vertices
+     * (the slice) and their computed predecessors, renumbered from 0, so that
+     * the cost of a query does not depend on the vertices explored by the
+     * previous queries.
+     */
+    private void computeTypesOnDemand(int start) {
+        // vertex ID -> local ID. Local IDs of the slice are smaller than sliceSize.
+        TIntIntHashMap localIds = new TIntIntHashMap(64, 0.5f, -1, -1);
+        TIntArrayList vertices = new TIntArrayList(); // local ID -> vertex ID
+        TIntArrayList worklist = new TIntArrayList();
+        worklist.add(start);
+        while (!worklist.isEmpty()) {
+            int v = worklist.removeAt(worklist.size() - 1);
+            if (localIds.containsKey(v) || computedVertices.get(v)) {
+                continue;
+            }
+            localIds.put(v, vertices.size());
+            vertices.add(v);
+            exploreVertex(v);
+            TIntArrayList predecessors = incomingEdges.get(v);
+            if (predecessors != null) {
+                worklist.addAll(predecessors);
+            }
+        }
+        int sliceSize = vertices.size();
+
+        // Predecessors outside of the slice already have their types.
+        IntPairList sliceEdges = new IntPairList();
+        for (int i = 0; i < sliceSize; ++i) {
+            TIntArrayList predecessors = incomingEdges.get(vertices.get(i));
+            if (predecessors != null) {
+                for (int j = 0; j < predecessors.size(); ++j) {
+                    int from = localIds.get(predecessors.get(j));
+                    if (from < 0) {
+                        from = vertices.size();
+                        localIds.put(predecessors.get(j), from);
+                        vertices.add(predecessors.get(j));
+                    }
+                    sliceEdges.add(from, i);
+                }
+            }
+        }
+        DirectedAcyclicGraph sliceDAG = new DirectedAcyclicGraph(new DirectedGraph(vertices.size(), sliceEdges));
+        TypeSet[] types = new TypeSet[vertices.size()];
+        for (int i = sliceSize; i < types.length; ++i) {
+            types[i] = reachingTypes[vertices.get(i)];
+        }
+        assignTypesInSlice(sliceDAG, localIds, vertices, sliceSize, types);
+        propagateTypesInSlice(sliceDAG, sliceSize, types);
+
+        if (reachingTypes.length < vertexCount) {
+            reachingTypes = Arrays.copyOf(reachingTypes, Math.max(vertexCount, reachingTypes.length * 2));
+        }
+        for (int i = 0; i < sliceSize; ++i) {
+            int v = vertices.get(i);
+            reachingTypes[v] = types[sliceDAG.getRepresentativeNode(i)];
+            computedVertices.set(v);
+        }
+    }
+
+    /**
+     * Assigns types to the vertices of a slice. Only the methods and fields
+     * owning the vertices are processed.
+     * 
+     * @param sliceDAG  specifies a DAG of local IDs.
+     * @param localIds  translates a vertex ID into a local ID.
+     * @param vertices  translates a local ID into a vertex ID.
+     * @param sliceSize specifies the number of vertices in the slice.
+     * @param types     receives the types indexed by local IDs.
+     */
+    private void assignTypesInSlice(DirectedAcyclicGraph sliceDAG, TIntIntHashMap localIds, TIntArrayList vertices,
+            int sliceSize, TypeSet[] types) {
+        Set<MethodInfo> methods = new HashSet<MethodInfo>();
+        for (int i = 0; i < sliceSize; ++i) {
+            int v = vertices.get(i);
+            Object owner = vertexOwners.get(v);
+            if (owner instanceof MethodInfo) {
+                methods.add((MethodInfo) owner);
+                // Assign approximated types for exception types in catch blocks
+                String catchType = catchVariableVertices.get(v);
+                if (catchType != null) {
+                    assignApproximatedType(types, sliceDAG.getRepresentativeNode(i), catchType);
+                }
+            } else if (owner instanceof FieldInfo) {
+                // Assign approximated types to fields which are not included in
+                // analysis target.
+                FieldInfo f = (FieldInfo) owner;
+                if (target != null && !target.isTargetField(f)) {
+                    assignApproximatedType(types, sliceDAG.getRepresentativeNode(i),
+                            extractBaseType(fieldVertex.get(f).getTypeName()));
+                }
+            }
+        }
+        for (MethodInfo m : methods) {
+            NewVertices newVertices = newVerticesMap.get(m);
+            if (newVertices != null) {
+                for (int i = 0; i < newVertices.getVertexCount(); ++i) {
+                    int local = getLocalId(localIds, sliceSize, newVertices.getVertex(i));
+                    if (local >= 0) {
+                        assignSpecificType(types, sliceDAG.getRepresentativeNode(local),
+                                extractBaseType(newVertices.getTypeName(i)));
+                    }
+                }
+            }
+            MethodSegment s = segments.get(m);
+            if (s != null) {
+                for (CallSiteVertices callsite : s.callsitesWithoutCallees) {
+                    int local = getLocalId(localIds, sliceSize, callsite.getReturnValueVertex());
+                    if (local >= 0) {
+                        assignApproximatedType(types, sliceDAG.getRepresentativeNode(local),
+                                extractBaseType(callsite.getReturnValueTypeName()));
+                    }
+                }
+            }
+            // Assign approximated types for parameters from outside
+            if (target != null && target.assumeExternalCallers(m)) {
+                MethodVertices methodVertices = localVerticesMap.get(m);
+                for (int i = 0; i < m.getParamCount(); ++i) {
+                    if (methodVertices.hasFormalVertex(i)) {
+                        int local = getLocalId(localIds, sliceSize, methodVertices.getFormalVertex(i));
+                        if (local >= 0) {
+                            assignApproximatedType(types, sliceDAG.getRepresentativeNode(local),
+                                    extractBaseType(m.getParamType(i)));
                         }
                     }
-                    MethodInfo[] methods = called.toArray(new MethodInfo[0]);
-                    Arrays.sort(methods, new Comparator<MethodInfo>() {
-                        @Override
-                        public int compare(MethodInfo o1, MethodInfo o2) {
-                            int idx = o1.getClassName().compareTo(o2.getClassName());
-                            if (idx != 0)
-                                return idx;
-
-                            idx = o1.getMethodName().compareTo(o2.getMethodName());
-                            if (idx != 0)
-                                return idx;
-
-                            idx = o1.getDescriptor().compareTo(o2.getDescriptor());
-                            if (idx != 0)
-                                return idx;
-
-                            return o1.hashCode() - o2.hashCode();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the local ID of a vertex in a slice, or -1 if the vertex is out
+     *         of the slice.
+     */
+    private static int getLocalId(TIntIntHashMap localIds, int sliceSize, int v) {
+        int local = localIds.get(v);
+        return (local < sliceSize) ? local : -1;
+    }
+
+    /**
+     * Propagates types in a slice in a topological order. The vertices out of
+     * the slice have no incoming edges, and their types are not changed.
+     */
+    private void propagateTypesInSlice(DirectedAcyclicGraph sliceDAG, final int sliceSize, final TypeSet[] types) {
+        final DirectedAcyclicGraph reverse = sliceDAG.getReverseGraph();
+        TopologicalOrderSearch.searchFromRoot(sliceDAG, new ITopologicalVisitor() {
+
+            @Override
+            public boolean onVisit(int vertexId) {
+                if (vertexId < sliceSize) {
+                    propagateTypesTo(types, vertexId, reverse);
+                }
+                return true;
+            }
+
+            @Override
+            public void onFinished() {
+            }
+        });
+    }
+
+    /**
+     * Builds the graph for methods that may create edges to a vertex, so that
+     * all the incoming edges of the vertex are available.
+     */
+    private void exploreVertex(int v) {
+        Object owner = vertexOwners.get(v);
+        if (owner instanceof MethodInfo) {
+            // Edges are created by the owner method, and by its callers
+            // for formal parameters and a return value.
+            MethodInfo m = (MethodInfo) owner;
+            buildMethodGraphOnDemand(m);
+            if (isInterfaceVertex(m, v)) {
+                for (MethodInfo caller : getCallers(m)) {
+                    buildMethodGraphOnDemand(caller);
+                }
+            }
+        } else if (owner instanceof FieldInfo) {
+            for (MethodInfo accessor : getFieldAccessors((FieldInfo) owner)) {
+                buildMethodGraphOnDemand(accessor);
+            }
+        }
+
+        // Index new edges
+        for (int i = indexedEdgeCount; i < edges.size(); ++i) {
+            int to = edges.getSecondValue(i);
+            TIntArrayList predecessors = incomingEdges.get(to);
+            if (predecessors == null) {
+                predecessors = new TIntArrayList(4);
+                incomingEdges.put(to, predecessors);
+            }
+            predecessors.add(edges.getFirstValue(i));
+        }
+        indexedEdgeCount = edges.size();
+    }
+
+    /**
+     * @return true if the vertex represents a formal parameter or a return
+     *         value of the method.
+     */
+    private boolean isInterfaceVertex(MethodInfo m, int v) {
+        MethodVertices vertices = localVerticesMap.get(m);
+        if (vertices.getReturnVertex() == v) {
+            return true;
+        }
+        for (int i = 0; i < m.getParamCount(); ++i) {
+            if (vertices.hasFormalVertex(i) && vertices.getFormalVertex(i) == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void buildMethodGraphOnDemand(MethodInfo m) {
+        MethodSegment s = segments.get(m);
+        if (s == null) {
+            getMethodVertices(m);
+            s = segments.get(m);
+        }
+        if (s.callees == null) {
+            buildMethodGraph(s);
+        }
+    }
+
+    /**
+     * @return methods whose call sites may invoke the method according to the
+     *         class hierarchy.
+     */
+    private List<MethodInfo> getCallers(MethodInfo m) {
+        if (callers == null) {
+            createReverseIndex();
+        }
+        List<MethodInfo> result = callers.get(m);
+        return (result != null) ? result : Collections.<MethodInfo>emptyList();
+    }
+
+    /**
+     * @return methods that read or write the field.
+     */
+    private List<MethodInfo> getFieldAccessors(FieldInfo f) {
+        if (fieldAccessors == null) {
+            createReverseIndex();
+        }
+        List<MethodInfo> result = fieldAccessors.get(f);
+        return (result != null) ? result : Collections.<MethodInfo>emptyList();
+    }
+
+    /**
+     * Scans instructions of all the analyzed methods to find callers of
+     * methods and accessors of fields. This does not require data-flow
+     * analysis.
+     */
+    private void createReverseIndex() {
+        callers = new HashMap<MethodInfo, List<MethodInfo>>();
+        fieldAccessors = new HashMap<FieldInfo, List<MethodInfo>>();
+        for (ClassInfo c : classes) {
+            for (int mIndex = 0; mIndex < c.getMethodCount(); mIndex++) {
+                MethodInfo m = c.getMethod(mIndex);
+                if (!isTargetMethod(m)) {
+                    continue;
+                }
+                for (CallSite callsite : m.getCallSites()) {
+                    for (MethodInfo called : hierarchy.resolveCall(callsite)) {
+                        addReverseIndex(callers, called, m);
+                    }
+                }
+                InsnList instructions = m.getMethodNode().instructions;
+                for (int i = 0; i < instructions.size(); ++i) {
+                    AbstractInsnNode instruction = instructions.get(i);
+                    if (instruction.getType() == AbstractInsnNode.FIELD_INSN) {
+                        FieldInfo f = resolveField((FieldInsnNode) instruction);
+                        if (f != null) {
+                            addReverseIndex(fieldAccessors, f, m);
                         }
-                    });
-                    return methods;
-                } else {
-                    // types == null if the invocation is not processed -- this condition is never
-                    // satisfied.
-                    return new MethodInfo[0];
+                    }
                 }
-            } else {
-                // params == null if the specified instruction is not an invocation.
-                return new MethodInfo[0];
             }
-        } else {
-            // callsites == null if the caller is not included in the analysis.
-            return new MethodInfo[0];
+        }
+    }
+
+    private static <K> void addReverseIndex(Map<K, List<MethodInfo>> index, K key, MethodInfo m) {
+        List<MethodInfo> methods = index.get(key);
+        if (methods == null) {
+            methods = new ArrayList<MethodInfo>(2);
+            index.put(key, methods);
+        }
+        if (methods.isEmpty() || methods.get(methods.size() - 1) != m) {
+            methods.add(m);
         }
     }
 
@@ -307,30 +1159,38 @@ public class VTAResolver implements IDynamicBindingResolver {
      * Assign types for each vertex.
      * 
      * @param typePropagationDAG
+     * @param targetVertices     specifies vertices whose types are assigned.
+     *                           If null, all vertices are processed.
      */
-    private void assignTypes(final DirectedAcyclicGraph typePropagationDAG,
-            List<CallSiteVertices> callsitesWithoutCallees, IAnalysisTarget selector) {
-        reachingTypes = new TypeSet[typePropagationDAG.getVertexCount()];
+    private void assignTypes(final DirectedAcyclicGraph typePropagationDAG, final BitSet targetVertices) {
         for (NewVertices vertices : newVerticesMap.values()) {
             for (int i = 0; i < vertices.getVertexCount(); ++i) {
                 String typeName = extractBaseType(vertices.getTypeName(i));
                 int v = vertices.getVertex(i);
-                assignSpecificType(typePropagationDAG, v, typeName);
+                if (targetVertices == null || targetVertices.get(v)) {
+                    assignSpecificType(typePropagationDAG, v, typeName);
+                }
             }
         }
-        for (CallSiteVertices vertices : callsitesWithoutCallees) {
-            assert vertices.hasReturnValue();
-            int v = vertices.getReturnValueVertex();
-            assignApproximatedType(typePropagationDAG, v, extractBaseType(vertices.getReturnValueTypeName()));
+        for (MethodSegment s : segments.values()) {
+            for (CallSiteVertices vertices : s.callsitesWithoutCallees) {
+                assert vertices.hasReturnValue();
+                int v = vertices.getReturnValueVertex();
+                if (targetVertices == null || targetVertices.get(v)) {
+                    assignApproximatedType(typePropagationDAG, v, extractBaseType(vertices.getReturnValueTypeName()));
+                }
+            }
         }
         // Assign approximated types for parameters from outside
         for (MethodInfo m : localVerticesMap.keySet()) {
-            if (selector != null && selector.assumeExternalCallers(m)) {
+            if (target != null && target.assumeExternalCallers(m)) {
                 MethodVertices methodVertices = localVerticesMap.get(m);
                 for (int i = 0; i < m.getParamCount(); ++i) {
                     if (methodVertices.hasFormalVertex(i)) {
                         int v = methodVertices.getFormalVertex(i);
-                        assignApproximatedType(typePropagationDAG, v, extractBaseType(m.getParamType(i)));
+                        if (targetVertices == null || targetVertices.get(v)) {
+                            assignApproximatedType(typePropagationDAG, v, extractBaseType(m.getParamType(i)));
+                        }
                     }
                 }
             }
@@ -339,17 +1199,19 @@ public class VTAResolver implements IDynamicBindingResolver {
         catchVariableVertices.forEachEntry(new TIntObjectProcedure<String>() {
             @Override
             public boolean execute(int v, String typeName) {
-                assignApproximatedType(typePropagationDAG, v, typeName);
+                if (targetVertices == null || targetVertices.get(v)) {
+                    assignApproximatedType(typePropagationDAG, v, typeName);
+                }
                 return true;
             }
         });
         // Assign approximated types to fields which are not included in analysis
         // target.
-        if (selector != null) {
+        if (target != null) {
             for (FieldVertex fv : fieldVertex.values()) {
                 int vertexId = fv.getId();
                 FieldInfo f = fv.getFieldInfo();
-                if (!selector.isTargetField(f)) {
+                if (!target.isTargetField(f) && (targetVertices == null || targetVertices.get(vertexId))) {
                     assignApproximatedType(typePropagationDAG, vertexId, extractBaseType(fv.getTypeName()));
                 }
             }
@@ -364,11 +1226,14 @@ public class VTAResolver implements IDynamicBindingResolver {
      * @param typeName           specifies a type name.
      */
     private void assignSpecificType(DirectedAcyclicGraph typePropagationDAG, int v, String typeName) {
-        v = typePropagationDAG.getRepresentativeNode(v);
-        if (reachingTypes[v] == null) {
-            reachingTypes[v] = new TypeSet(typeSetManager, typeName);
+        assignSpecificType(reachingTypes, typePropagationDAG.getRepresentativeNode(v), typeName);
+    }
+
+    private void assignSpecificType(TypeSet[] types, int v, String typeName) {
+        if (types[v] == null) {
+            types[v] = new TypeSet(typeSetManager, typeName);
         } else {
-            reachingTypes[v] = reachingTypes[v].addType(typeName);
+            types[v] = types[v].addType(typeName);
         }
     }
 
@@ -380,70 +1245,178 @@ public class VTAResolver implements IDynamicBindingResolver {
      * @param typeName           specifies a type name.
      */
     private void assignApproximatedType(DirectedAcyclicGraph typePropagationDAG, int v, String typeName) {
-        v = typePropagationDAG.getRepresentativeNode(v);
-        if (reachingTypes[v] == null) {
-            reachingTypes[v] = TypeSet.createApproximation(typeSetManager, typeName);
+        assignApproximatedType(reachingTypes, typePropagationDAG.getRepresentativeNode(v), typeName);
+    }
+
+    private void assignApproximatedType(TypeSet[] types, int v, String typeName) {
+        if (types[v] == null) {
+            types[v] = TypeSet.createApproximation(typeSetManager, typeName);
         } else {
-            reachingTypes[v] = reachingTypes[v].addApproximatedType(typeName);
+            types[v] = types[v].addApproximatedType(typeName);
         }
     }
 
-    private void propagateTypes(final DirectedAcyclicGraph typePropagationDAG) {
+    /**
+     * Propagates types in a topological order.
+     * 
+     * @param typePropagationDAG
+     * @param targetVertices     specifies vertices whose types are computed.
+     *                           The types of the other vertices must be
+     *                           already computed. If null, all vertices are
+     *                           processed.
+     */
+    private void propagateTypes(final DirectedAcyclicGraph typePropagationDAG, final BitSet targetVertices) {
         final DirectedAcyclicGraph reverse = typePropagationDAG.getReverseGraph();
 
         TopologicalOrderSearch.searchFromRoot(typePropagationDAG, new ITopologicalVisitor() {
 
             @Override
             public boolean onVisit(int vertexId) {
-                // Don't propagate types through ERROR vertex.
-                if (vertexId == VERTEX_ERROR) {
-                    reachingTypes[vertexId] = new TypeSet(typeSetManager);
-                    return true;
-                }
-
-                int[] incoming = reverse.getEdges(vertexId);
-                if (incoming.length == 1) {
-                    if (reachingTypes[vertexId] == null) {
-                        reachingTypes[vertexId] = reachingTypes[incoming[0]];
-                    } else {
-                        ArrayList<TypeSet> types = new ArrayList<TypeSet>();
-                        types.add(reachingTypes[vertexId]);
-                        types.add(reachingTypes[incoming[0]]);
-                        reachingTypes[vertexId] = new TypeSet(typeSetManager, types);
-                    }
-                } else if (incoming.length > 1) {
-                    // Merge reaching types.
-                    ArrayList<TypeSet> types = new ArrayList<TypeSet>();
-                    if (reachingTypes[vertexId] != null) {
-                        types.add(reachingTypes[vertexId]);
-                    }
-                    for (int i = 0; i < incoming.length; ++i) {
-                        assert reachingTypes[incoming[i]] != null;
-                        types.add(reachingTypes[incoming[i]]);
-                    }
-                    reachingTypes[vertexId] = new TypeSet(typeSetManager, types);
-                } else {
-                    assert incoming.length == 0 : "Unreachable vertices";
-                    // Assign an empty set for unreachable vertices.
-                    if (reachingTypes[vertexId] == null) {
-                        reachingTypes[vertexId] = new TypeSet(typeSetManager);
-                    }
+                if (targetVertices == null || targetVertices.get(vertexId)) {
+                    propagateTypesTo(vertexId, reverse);
                 }
-
                 return true;
             }
 
             @Override
             public void onFinished() {
-                // Vertices in the same SCC share the same TypeSet.
-                for (int i = 0; i < reachingTypes.length; ++i) {
-                    int v = typePropagationDAG.getRepresentativeNode(i);
-                    if (v != i) {
-                        reachingTypes[i] = reachingTypes[v];
+                shareTypesInComponents(typePropagationDAG);
+            }
+        });
+    }
+
+    /**
+     * Propagates types level by level. Vertices in a level depend only on
+     * vertices in the previous levels, so that they are processed by a
+     * fork-join pool in parallel.
+     * 
+     * @param typePropagationDAG
+     * @param threads            specifies the number of worker threads.
+     * @param threshold          specifies the minimum number of vertices in a
+     *                           level processed in parallel. A task also
+     *                           processes up to this number of vertices
+     *                           sequentially.
+     */
+    private void propagateTypesInParallel(final DirectedAcyclicGraph typePropagationDAG, int threads,
+            int threshold) {
+        final DirectedAcyclicGraph reverse = typePropagationDAG.getReverseGraph();
+        int[][] levels = TopologicalOrderSearch.computeLevels(typePropagationDAG);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int[] level : levels) {
+                if (level.length < threshold) {
+                    for (int v : level) {
+                        propagateTypesTo(v, reverse);
                     }
+                } else {
+                    pool.invoke(new PropagationTask(level, 0, level.length, reverse, threshold));
+                    parallelLevelCount++;
                 }
             }
-        });
+        } finally {
+            pool.shutdown();
+        }
+        shareTypesInComponents(typePropagationDAG);
+    }
+
+    private class PropagationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private int[] vertices;
+        private int begin;
+        private int end;
+        private DirectedAcyclicGraph reverse;
+        private int threshold;
+
+        public PropagationTask(int[] vertices, int begin, int end, DirectedAcyclicGraph reverse, int threshold) {
+            this.vertices = vertices;
+            this.begin = begin;
+            this.end = end;
+            this.reverse = reverse;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin <= threshold) {
+                for (int i = begin; i < end; ++i) {
+                    propagateTypesTo(vertices[i], reverse);
+                }
+            } else {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new PropagationTask(vertices, begin, middle, reverse, threshold),
+                        new PropagationTask(vertices, middle, end, reverse, threshold));
+            }
+        }
+    }
+
+    /**
+     * Computes the types of a vertex from its predecessors.
+     * 
+     * @param vertexId specifies a vertex whose predecessors are processed.
+     * @param reverse  specifies the reverse graph of the type propagation DAG.
+     */
+    private void propagateTypesTo(int vertexId, DirectedAcyclicGraph reverse) {
+        // Don't propagate types through ERROR vertex.
+        if (vertexId == VERTEX_ERROR) {
+            reachingTypes[vertexId] = new TypeSet(typeSetManager);
+            return;
+        }
+        propagateTypesTo(reachingTypes, vertexId, reverse);
+    }
+
+    /**
+     * Computes the types of a vertex from its predecessors.
+     * 
+     * @param reachingTypes specifies the types of vertices.
+     * @param vertexId      specifies a vertex whose predecessors are processed.
+     * @param reverse       specifies the reverse graph of the type propagation
+     *                      DAG.
+     */
+    private void propagateTypesTo(TypeSet[] reachingTypes, int vertexId, DirectedAcyclicGraph reverse) {
+        int incomingCount = reverse.getOutDegree(vertexId);
+        if (incomingCount == 1) {
+            int from = reverse.getEdge(vertexId, 0);
+            if (reachingTypes[vertexId] == null) {
+                reachingTypes[vertexId] = reachingTypes[from];
+            } else {
+                ArrayList<TypeSet> types = new ArrayList<TypeSet>();
+                types.add(reachingTypes[vertexId]);
+                types.add(reachingTypes[from]);
+                reachingTypes[vertexId] = new TypeSet(typeSetManager, types);
+            }
+        } else if (incomingCount > 1) {
+            // Merge reaching types.
+            ArrayList<TypeSet> types = new ArrayList<TypeSet>();
+            if (reachingTypes[vertexId] != null) {
+                types.add(reachingTypes[vertexId]);
+            }
+            for (int i = 0; i < incomingCount; ++i) {
+                int from = reverse.getEdge(vertexId, i);
+                assert reachingTypes[from] != null;
+                types.add(reachingTypes[from]);
+            }
+            reachingTypes[vertexId] = new TypeSet(typeSetManager, types);
+        } else {
+            assert incomingCount == 0 : "Unreachable vertices";
+            // Assign an empty set for unreachable vertices.
+            if (reachingTypes[vertexId] == null) {
+                reachingTypes[vertexId] = new TypeSet(typeSetManager);
+            }
+        }
+    }
+
+    /**
+     * Vertices in the same SCC share the same TypeSet.
+     */
+    private void shareTypesInComponents(DirectedAcyclicGraph typePropagationDAG) {
+        for (int i = 0; i < reachingTypes.length; ++i) {
+            int v = typePropagationDAG.getRepresentativeNode(i);
+            if (v != i) {
+                reachingTypes[i] = reachingTypes[v];
+            }
+        }
     }
 
     private void analyzeInstruction(int index, AbstractInsnNode instruction, MethodInfo m, DataDependence dataflow) {
@@ -672,6 +1645,22 @@ public class VTAResolver implements IDynamicBindingResolver {
     }
 
     private FieldVertex getFieldVertexId(FieldInsnNode node) {
+        FieldInfo f = resolveField(node);
+        if (f != null) {
+            FieldVertex fv = fieldVertex.get(f);
+            if (fv != null) {
+                return fv;
+            } else if (demandDriven && !TypeConstants.isPrimitiveTypeName(f.getFieldTypeName())) {
+                return createFieldVertex(f);
+            } else {
+                assert TypeConstants.isPrimitiveTypeName(f.getFieldTypeName());
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private FieldInfo resolveField(FieldInsnNode node) {
         String className = node.owner;
         String fieldName = node.name;
         String desc = node.desc;
@@ -684,16 +1673,7 @@ public class VTAResolver implements IDynamicBindingResolver {
         }
         ClassInfo c = hierarchy.getClassInfo(owner);
         if (c != null) {
-            FieldInfo f = c.findField(fieldName, desc);
-            if (f != null) {
-                FieldVertex fv = fieldVertex.get(f);
-                if (fv != null) {
-                    return fv;
-                } else {
-                    assert TypeConstants.isPrimitiveTypeName(f.getFieldTypeName());
-                    return null;
-                }
-            }
+            return c.findField(fieldName, desc);
         }
         return null;
     }
@@ -706,13 +1686,13 @@ public class VTAResolver implements IDynamicBindingResolver {
      * @return a TypeSet including types that may be assigned to a receiver object.
      */
     public TypeSet getReceiverTypeAtCallsite(MethodInfo m, int instruction) {
-        CallSiteVertices[] callsites = callsiteMap.get(m);
+        CallSiteVertices[] callsites = getCallSiteVertices(m);
         if (callsites != null) {
             CallSiteVertices params = callsites[instruction];
             if (params != null) {
                 if (!params.getCallSite().isStaticMethod()) {
                     int v = params.getParamVertexId(0);
-                    return reachingTypes[v];
+                    return getReachingTypes(v);
                 } else {
                     return null;
                 }
@@ -726,14 +1706,37 @@ public class VTAResolver implements IDynamicBindingResolver {
     }
 
     public TypeSet getMethodParamType(MethodInfo m, int paramIndex) {
-        MethodVertices vertices = localVerticesMap.get(m);
+        MethodVertices vertices = getMethodVertices(m);
         if (vertices.hasFormalVertex(paramIndex)) {
-            return reachingTypes[vertices.getFormalVertex(paramIndex)];
+            return getReachingTypes(vertices.getFormalVertex(paramIndex));
         } else {
             return null;
         }
     }
 
+    /**
+     * This object records the part of the type propagation graph created for a
+     * method, and the call sites and field accesses resolved for the part.
+     */
+    private static class MethodSegment {
+        private int id;
+        private MethodInfo method;
+        private int localBegin; // vertices for local variables
+        private int localEnd;
+        private int edgeBegin; // edges in the edge list
+        private int edgeEnd;
+        private List<CallSiteVertices> callsitesWithoutCallees = Collections.emptyList();
+        private MethodInfo[][] callees; // for each call site; null until the graph is built
+        private int[] fieldInstructions;
+        private FieldVertex[] fields; // for each field instruction
+
+        public MethodSegment(int id, MethodInfo m, int localBegin) {
+            this.id = id;
+            this.method = m;
+            this.localBegin = localBegin;
+        }
+    }
+
     private static class FieldVertex {
         private int vertexID;
         private FieldInfo fieldInfo;
@@ -27,6 +27,15 @@ public class IntPairList {
         count = 0;
     }
 
+    /**
+     * Creates a new <code>IntPairList</code> instance using an array of
+     * composed values as it is.
+     */
+    IntPairList(long[] values, int count) {
+        this.values = values;
+        this.count = count;
+    }
+
     /**
      * @return the number of elements.
      */
@@ -34,8 +43,20 @@ public class IntPairList {
         return count;
     }
 
-    private long compose(int elem1, int elem2) {
-        return (((long) elem1) << 32) | elem2;
+    /**
+     * @return a long value composed of two integers. The second value is
+     *         masked so that a negative value does not overwrite the first.
+     */
+    static long compose(int elem1, int elem2) {
+        return (((long) elem1) << 32) | (elem2 & 0xFFFFFFFFL);
+    }
+
+    static int getFirst(long value) {
+        return (int) (value >> 32);
+    }
+
+    static int getSecond(long value) {
+        return (int) value;
     }
 
     /**
@@ -46,7 +67,7 @@ public class IntPairList {
         if (index < 0 || index >= count) {
             throw new ArrayIndexOutOfBoundsException(index);
         }
-        return (int) (values[index] >> 32);
+        return getFirst(values[index]);
     }
 
     /**
@@ -57,7 +78,7 @@ public class IntPairList {
         if (index < 0 || index >= count) {
             throw new ArrayIndexOutOfBoundsException(index);
         }
-        return (int) (values[index] & 0xFFFFFFFF);
+        return getSecond(values[index]);
     }
 
     /**
@@ -1,42 +1,65 @@
 package soba.util;
 
-import gnu.trove.map.hash.TIntObjectHashMap;
-import gnu.trove.procedure.TIntObjectProcedure;
-import gnu.trove.procedure.TIntProcedure;
-import gnu.trove.set.hash.TIntHashSet;
+import java.util.Arrays;
 
 /**
- * This class represents a set of integer pairs.
+ * This class represents a set of integer pairs. A pair is packed into a long
+ * value in the same way as <code>IntPairList</code>, and the values are stored
+ * in an open-addressing hash table with linear probing.
  */
 public class IntPairSet {
 
-    private TIntObjectHashMap<TIntHashSet> intPairs;
-    private int pairCount;
+    /**
+     * A key representing an empty slot. The pair represented by the same key
+     * is stored in a separate flag.
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private int pairCount; // the number of pairs excluding EMPTY
+    private boolean containsEmptyKey;
 
     /**
      * Creates a new <code>IntPairSet</code> instance.
      */
     public IntPairSet() {
-        intPairs = new TIntObjectHashMap<TIntHashSet>();
-        pairCount = 0;
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    /**
+     * Creates a new <code>IntPairSet</code> instance.
+     *
+     * @param expectedSize specifies the number of pairs stored without
+     *                     resizing the table.
+     */
+    public IntPairSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, DEFAULT_CAPACITY) - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
     }
 
     /**
      * Adds a pair of integers. If the same pair of integers has been already
      * stored, this method does not change the state.
-     * 
+     *
      * @param elem1 specifies a first value.
      * @param elem2 specifies a second value.
      */
     public void add(int elem1, int elem2) {
-        TIntHashSet secondValues = intPairs.get(elem1);
-        if (secondValues == null) {
-            secondValues = new TIntHashSet();
-            intPairs.put(elem1, secondValues);
+        long key = IntPairList.compose(elem1, elem2);
+        if (key == EMPTY) {
+            containsEmptyKey = true;
+            return;
         }
-        boolean added = secondValues.add(elem2);
-        if (added) {
-            ++pairCount;
+        int slot = findSlot(keys, key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            pairCount++;
+            if (pairCount * 2 > keys.length) {
+                rehash();
+            }
         }
     }
 
@@ -44,63 +67,96 @@ public class IntPairSet {
      * @return true if the set contains a pair (elem1, elem2).
      */
     public boolean contains(int elem1, int elem2) {
-        TIntHashSet secondValues = intPairs.get(elem1);
-        if (secondValues != null) {
-            return secondValues.contains(elem2);
-        } else {
-            return false;
+        long key = IntPairList.compose(elem1, elem2);
+        if (key == EMPTY) {
+            return containsEmptyKey;
         }
+        return keys[findSlot(keys, key)] == key;
     }
 
     /**
+     * This method scans the whole table; the time is proportional to the
+     * capacity of the set.
+     *
      * @return true if the set contains a pair (elem1, _).
      */
     public boolean containsFirst(int elem1) {
-        TIntHashSet secondValues = intPairs.get(elem1);
-        if (secondValues != null) {
-            return !secondValues.isEmpty();
-        } else {
-            return false;
+        if (containsEmptyKey && IntPairList.getFirst(EMPTY) == elem1) {
+            return true;
         }
+        for (long key : keys) {
+            if (key != EMPTY && IntPairList.getFirst(key) == elem1) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * @return the number of pairs in the set.
      */
     public int size() {
-        return pairCount;
+        return containsEmptyKey ? pairCount + 1 : pairCount;
     }
 
     /**
-     * Executes a procedure for each element.
-     * 
+     * Executes a procedure for each element. The order of elements is not
+     * specified. This method does not allocate objects.
+     *
      * @param proc
      */
     public void foreach(final IntPairProc proc) {
-        intPairs.forEachEntry(new IntPairIterator(proc));
+        if (containsEmptyKey) {
+            if (!proc.execute(IntPairList.getFirst(EMPTY), IntPairList.getSecond(EMPTY))) {
+                return;
+            }
+        }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                if (!proc.execute(IntPairList.getFirst(key), IntPairList.getSecond(key))) {
+                    return;
+                }
+            }
+        }
     }
 
-    private class IntPairIterator implements TIntObjectProcedure<TIntHashSet> {
-
-        private IntPairProc proc;
-        private boolean continueFlag;
-
-        public IntPairIterator(IntPairProc proc) {
-            this.proc = proc;
-            this.continueFlag = true;
+    /**
+     * @return a new list of the pairs, sorted in the same order as
+     *         <code>IntPairList.sort()</code>.
+     */
+    public IntPairList toSortedList() {
+        long[] values = new long[Math.max(size(), 1)];
+        int count = 0;
+        if (containsEmptyKey) {
+            values[count++] = EMPTY;
         }
+        for (long key : keys) {
+            if (key != EMPTY) {
+                values[count++] = key;
+            }
+        }
+        Arrays.sort(values, 0, count);
+        return new IntPairList(values, count);
+    }
 
-        @Override
-        public boolean execute(final int firstValue, TIntHashSet secondValues) {
-            secondValues.forEach(new TIntProcedure() {
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h >>> 32) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
 
-                @Override
-                public boolean execute(int secondValue) {
-                    continueFlag = proc.execute(firstValue, secondValue);
-                    return continueFlag;
-                }
-            });
-            return continueFlag;
+    private void rehash() {
+        long[] oldKeys = keys;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (long key : oldKeys) {
+            if (key != EMPTY) {
+                keys[findSlot(keys, key)] = key;
+            }
         }
     }
 }
@@ -6,19 +6,10 @@ package soba.util;
 public class IntPairUtil {
 
     /**
-     * Creates an IntPairList from an IntPairSet. The resultant list is not sorted;
-     * the order of elements depends on the set's implementation.
+     * Creates an IntPairList from an IntPairSet. The resultant list is sorted.
      */
     public static IntPairList createList(IntPairSet set) {
-        final IntPairList list = new IntPairList(set.size());
-        set.foreach(new IntPairProc() {
-            @Override
-            public boolean execute(int elem1, int elem2) {
-                list.add(elem1, elem2);
-                return true;
-            }
-        });
-        return list;
+        return set.toSortedList();
     }
 
     /**
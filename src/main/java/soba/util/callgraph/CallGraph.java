@@ -1,8 +1,5 @@
 package soba.util.callgraph;
 
-import gnu.trove.list.TIntList;
-import gnu.trove.list.array.TIntArrayList;
-
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,13 +12,14 @@ import soba.util.IntPairList;
 import soba.util.ObjectIdMap;
 import soba.util.graph.DepthFirstSearch;
 import soba.util.graph.DirectedGraph;
-import soba.util.graph.IDepthFirstVisitor;
 
 public class CallGraph {
 
     private ObjectIdMap<MethodInfo> methodToId;
     private DirectedGraph callGraph;
     private DirectedGraph reverseCallGraph;
+    private DepthFirstSearch calleeSearch;
+    private DepthFirstSearch callerSearch;
 
     public CallGraph(JavaProgram program) {
         this(program, program.getClassHierarchy());
@@ -49,6 +47,8 @@ public class CallGraph {
         }
         callGraph = new DirectedGraph(methodToId.size(), edges);
         reverseCallGraph = callGraph.getReverseGraph();
+        calleeSearch = new DepthFirstSearch(callGraph);
+        callerSearch = new DepthFirstSearch(reverseCallGraph);
     }
 
     public int size() {
@@ -66,77 +66,39 @@ public class CallGraph {
     public List<MethodInfo> getCallees(MethodInfo caller) {
         int callerId = methodToId.getId(caller);
         List<MethodInfo> callees = new ArrayList<>();
-        for (int calleeId : callGraph.getEdges(callerId)) {
-            callees.add(methodToId.getItem(calleeId));
+        for (int i = 0; i < callGraph.getOutDegree(callerId); ++i) {
+            callees.add(methodToId.getItem(callGraph.getEdge(callerId, i)));
         }
         return callees;
     }
 
-    public List<MethodInfo> getAllCallees(MethodInfo caller) {
-        SimpleVisitor visitor = new SimpleVisitor();
-        DepthFirstSearch.search(callGraph, methodToId.getId(caller), visitor);
-        List<MethodInfo> callees = new ArrayList<>();
-        for (int calleeId : visitor.getVisitedIdsWithoutOwn()) {
-            callees.add(methodToId.getItem(calleeId));
-        }
-        return callees;
+    public synchronized List<MethodInfo> getAllCallees(MethodInfo caller) {
+        return getReachableMethods(calleeSearch, methodToId.getId(caller));
     }
 
     public List<MethodInfo> getCallers(MethodInfo callee) {
         int calleeId = methodToId.getId(callee);
         List<MethodInfo> callers = new ArrayList<>();
-        for (int callerId : reverseCallGraph.getEdges(calleeId)) {
-            callers.add(methodToId.getItem(callerId));
+        for (int i = 0; i < reverseCallGraph.getOutDegree(calleeId); ++i) {
+            callers.add(methodToId.getItem(reverseCallGraph.getEdge(calleeId, i)));
         }
         return callers;
     }
 
-    public List<MethodInfo> getAllCallers(MethodInfo callee) {
-        SimpleVisitor visitor = new SimpleVisitor();
-        DepthFirstSearch.search(reverseCallGraph, methodToId.getId(callee), visitor);
-        List<MethodInfo> callers = new ArrayList<>();
-        for (int callerId : visitor.getVisitedIdsWithoutOwn()) {
-            callers.add(methodToId.getItem(callerId));
-        }
-        return callers;
+    public synchronized List<MethodInfo> getAllCallers(MethodInfo callee) {
+        return getReachableMethods(callerSearch, methodToId.getId(callee));
     }
 
-    private class SimpleVisitor implements IDepthFirstVisitor {
-
-        private TIntList visited;
-
-        private SimpleVisitor() {
-            visited = new TIntArrayList();
+    /**
+     * @return methods visited by DFS in pre-order, excluding the start method.
+     */
+    private List<MethodInfo> getReachableMethods(DepthFirstSearch search, int startId) {
+        List<MethodInfo> methods = new ArrayList<>();
+        search.start(startId);
+        search.next(); // skip the start method
+        for (int id = search.next(); id != DepthFirstSearch.FINISHED; id = search.next()) {
+            methods.add(methodToId.getItem(id));
         }
-
-        private int[] getVisitedIdsWithoutOwn() {
-            return visited.toArray(1, visited.size() - 1);
-        }
-
-        @Override
-        public void onStart(int startVertexId) {
-        }
-
-        @Override
-        public boolean onVisit(int vertexId) {
-            if (visited.contains(vertexId)) {
-                return false;
-            }
-            visited.add(vertexId);
-            return true;
-        }
-
-        @Override
-        public void onVisitAgain(int vertexId) {
-        }
-
-        @Override
-        public void onLeave(int vertexId) {
-        }
-
-        @Override
-        public void onFinished(boolean[] visited) {
-        }
-
+        return methods;
     }
 }
@@ -102,7 +102,7 @@ public class DumpClass {
             if (!methodInfo.hasMethodBody())
                 continue;
 
-            DataDependence info = methodInfo.getDataDependence();
+            DataDependence info = methodInfo.getDataDependence(dumpStackframe);
 
             if (info != null) {
                 methodCount++;
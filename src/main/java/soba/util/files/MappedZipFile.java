@@ -0,0 +1,388 @@
+package soba.util.files;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * A class to read a zip/jar file through a memory-mapped buffer. Different from
+ * <code>ZipFile</code>, this class reads the central directory of the archive,
+ * so that entries can be skipped without inflating them. Each
+ * <code>Entry</code> object can be read independently; multiple threads may
+ * read entries of the same archive at once.
+ */
+public class MappedZipFile implements IClassList {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final long UINT32_MAX = 0xFFFFFFFFL;
+    private static final int UINT16_MAX = 0xFFFF;
+
+    private File zip;
+    private String label;
+    private boolean searchRecursive;
+
+    public MappedZipFile(File zipFile) {
+        assert ZipFile.isZipFile(zipFile);
+        this.zip = zipFile;
+    }
+
+    public void setLabel(String l) {
+        this.label = l;
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    public void enableRecursiveSearch() {
+        searchRecursive = true;
+    }
+
+    @Override
+    public void process(IClassListCallback c) {
+        String zipFilename = zip.getAbsolutePath();
+        try {
+            processArchive(map(zip), zipFilename, c);
+        } catch (IOException e) {
+            c.reportError(zipFilename, e);
+        } catch (RuntimeException e) {
+            c.reportError(zipFilename, e);
+        }
+    }
+
+    /**
+     * Lists entries accepted by a callback without inflating them. Nested archives
+     * are also listed if recursive search is enabled.
+     *
+     * @param c specifies entries to be listed by <code>isTarget</code>. Errors
+     *          are reported to the object.
+     * @return a list of entries in the order of the central directories.
+     */
+    public List<Entry> listEntries(IClassListCallback c) {
+        List<Entry> result = new ArrayList<>();
+        String zipFilename = zip.getAbsolutePath();
+        try {
+            listEntries(map(zip), zipFilename, c, result);
+        } catch (IOException e) {
+            c.reportError(zipFilename, e);
+        } catch (RuntimeException e) {
+            c.reportError(zipFilename, e);
+        }
+        return result;
+    }
+
+    private boolean processArchive(ByteBuffer archive, String zipFilename, IClassListCallback c) throws IOException {
+        for (Entry entry : readCentralDirectory(archive, zipFilename)) {
+            try {
+                if (c.isTarget(entry.getEntryName())) {
+                    InputStream stream = entry.openStream();
+                    c.process(entry.getName(), stream);
+                    stream.close();
+                } else if (searchRecursive && ZipFile.isZipFile(entry.getEntryName())) {
+                    if (processArchive(entry.getBuffer(), entry.getName(), c)) {
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                if (c.reportError(entry.getName(), e))
+                    return true;
+            } catch (RuntimeException e) {
+                if (c.reportError(entry.getName(), e))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean listEntries(ByteBuffer archive, String zipFilename, IClassListCallback c, List<Entry> result)
+            throws IOException {
+        for (Entry entry : readCentralDirectory(archive, zipFilename)) {
+            try {
+                if (c.isTarget(entry.getEntryName())) {
+                    result.add(entry);
+                } else if (searchRecursive && ZipFile.isZipFile(entry.getEntryName())) {
+                    if (listEntries(entry.getBuffer(), entry.getName(), c, result)) {
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                if (c.reportError(entry.getName(), e))
+                    return true;
+            } catch (RuntimeException e) {
+                if (c.reportError(entry.getName(), e))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer map(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("The archive is too large to be mapped: " + f.getAbsolutePath());
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+
+    /**
+     * Reads the central directory of an archive.
+     *
+     * @param archive     is the whole content of an archive.
+     * @param zipFilename is used to name the entries.
+     * @return a list of file entries. Directory entries are excluded.
+     */
+    private static List<Entry> readCentralDirectory(ByteBuffer archive, String zipFilename) throws IOException {
+        int end = findEndOfCentralDirectory(archive);
+        if (end < 0) {
+            throw new ZipException("The end of central directory is not found: " + zipFilename);
+        }
+        long entryCount = archive.getShort(end + 10) & UINT16_MAX;
+        long directoryOffset = archive.getInt(end + 16) & UINT32_MAX;
+
+        int locator = end - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0 && archive.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+            int zip64End = toOffset(archive, archive.getLong(locator + 8), zipFilename);
+            if (archive.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+                throw new ZipException("Invalid ZIP64 end of central directory: " + zipFilename);
+            }
+            entryCount = archive.getLong(zip64End + 32);
+            directoryOffset = archive.getLong(zip64End + 48);
+        }
+
+        List<Entry> entries = new ArrayList<>((int) Math.min(entryCount, 65536));
+        int pos = toOffset(archive, directoryOffset, zipFilename);
+        for (long i = 0; i < entryCount; ++i) {
+            if (archive.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header: " + zipFilename);
+            }
+            int flags = archive.getShort(pos + 8) & UINT16_MAX;
+            int method = archive.getShort(pos + 10) & UINT16_MAX;
+            long compressedSize = archive.getInt(pos + 20) & UINT32_MAX;
+            long size = archive.getInt(pos + 24) & UINT32_MAX;
+            int nameLength = archive.getShort(pos + 28) & UINT16_MAX;
+            int extraLength = archive.getShort(pos + 30) & UINT16_MAX;
+            int commentLength = archive.getShort(pos + 32) & UINT16_MAX;
+            long localHeaderOffset = archive.getInt(pos + 42) & UINT32_MAX;
+            String name = readString(archive, pos + CENTRAL_HEADER_SIZE, nameLength);
+
+            // ZIP64 extended information replaces the fields filled with 0xFFFFFFFF
+            int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = archive.getShort(extra) & UINT16_MAX;
+                int length = archive.getShort(extra + 2) & UINT16_MAX;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (size == UINT32_MAX) {
+                        size = archive.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == UINT32_MAX) {
+                        compressedSize = archive.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == UINT32_MAX) {
+                        localHeaderOffset = archive.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+
+            if (!name.endsWith("/")) {
+                if ((flags & 1) != 0) {
+                    throw new ZipException("Encrypted entries are not supported: " + zipFilename + "/" + name);
+                }
+                entries.add(new Entry(archive, zipFilename, name, method, compressedSize, size,
+                        toOffset(archive, localHeaderOffset, zipFilename)));
+            }
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer archive) {
+        int limit = Math.max(0, archive.limit() - END_SIZE - MAX_COMMENT_SIZE);
+        for (int pos = archive.limit() - END_SIZE; pos >= limit; --pos) {
+            if (archive.getInt(pos) == END_SIGNATURE) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private static int toOffset(ByteBuffer archive, long offset, String zipFilename) throws ZipException {
+        if (offset < 0 || offset >= archive.limit()) {
+            throw new ZipException("Invalid offset in the archive: " + zipFilename);
+        }
+        return (int) offset;
+    }
+
+    private static String readString(ByteBuffer archive, int pos, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer b = archive.duplicate();
+        b.position(pos);
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An entry of a memory-mapped archive.
+     */
+    public static class Entry {
+
+        private ByteBuffer archive;
+        private String zipFilename;
+        private String entryName;
+        private int method;
+        private long compressedSize;
+        private long size;
+        private int localHeaderOffset;
+
+        private Entry(ByteBuffer archive, String zipFilename, String entryName, int method, long compressedSize,
+                long size, int localHeaderOffset) {
+            this.archive = archive;
+            this.zipFilename = zipFilename;
+            this.entryName = entryName;
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        /**
+         * @return the name of the entry including the archive name.
+         */
+        public String getName() {
+            return zipFilename + "/" + entryName;
+        }
+
+        /**
+         * @return the name of the entry in the archive.
+         */
+        public String getEntryName() {
+            return entryName;
+        }
+
+        /**
+         * @return the uncompressed size of the entry.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return the uncompressed content of the entry. This method is thread-safe.
+         * @throws IOException
+         */
+        public byte[] read() throws IOException {
+            if (size > Integer.MAX_VALUE - 8 || compressedSize > Integer.MAX_VALUE - 8) {
+                throw new ZipException("The entry is too large: " + getName());
+            }
+            ByteBuffer data = getRawData();
+            if (method == STORED) {
+                byte[] bytes = new byte[data.remaining()];
+                data.get(bytes);
+                return bytes;
+            } else if (method == DEFLATED) {
+                // An extra dummy byte is required by Inflater in the nowrap mode.
+                byte[] input = new byte[data.remaining() + 1];
+                data.get(input, 0, input.length - 1);
+                byte[] output = new byte[(int) size];
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(input);
+                    int n = 0;
+                    while (n < output.length) {
+                        int inflated = inflater.inflate(output, n, output.length - n);
+                        if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                            break;
+                        }
+                        n += inflated;
+                    }
+                    if (n != output.length) {
+                        throw new ZipException("Unexpected end of the entry: " + getName());
+                    }
+                } catch (DataFormatException e) {
+                    throw new ZipException(e.getMessage() + ": " + getName());
+                } finally {
+                    inflater.end();
+                }
+                return output;
+            } else {
+                throw new ZipException("Unsupported compression method " + method + ": " + getName());
+            }
+        }
+
+        /**
+         * @return a stream to read the uncompressed content of the entry.
+         * @throws IOException
+         */
+        public InputStream openStream() throws IOException {
+            return new ByteArrayInputStream(read());
+        }
+
+        /**
+         * @return a buffer of the entry content. A stored entry is not copied; the
+         *         returned buffer shares the mapped region of the archive.
+         * @throws IOException
+         */
+        private ByteBuffer getBuffer() throws IOException {
+            ByteBuffer buffer;
+            if (method == STORED) {
+                buffer = getRawData().slice();
+            } else {
+                buffer = ByteBuffer.wrap(read());
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+
+        private ByteBuffer getRawData() throws IOException {
+            if (archive.getInt(localHeaderOffset) != LOCAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid local header: " + getName());
+            }
+            int nameLength = archive.getShort(localHeaderOffset + 26) & UINT16_MAX;
+            int extraLength = archive.getShort(localHeaderOffset + 28) & UINT16_MAX;
+            long start = (long) localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+            long length = method == STORED ? size : compressedSize;
+            if (start + length > archive.limit()) {
+                throw new ZipException("The entry exceeds the archive: " + getName());
+            }
+            ByteBuffer data = archive.duplicate();
+            data.position((int) start);
+            data.limit((int) (start + length));
+            return data;
+        }
+    }
+}
@@ -1,100 +1,182 @@
 package soba.util.graph;
 
-import java.util.Stack;
+import java.util.Arrays;
 
 /**
  * An implementation of Depth-First Search for IDirectedGraph object.
+ *
+ * An instance keeps the traversal state for a graph and can be reused for
+ * multiple searches. Visited vertices are marked with a generation number, so
+ * that the marks are not cleared between searches, and the DFS stack is a pair
+ * of int arrays. Once created, a search does not allocate objects.
+ *
+ * <pre>
+ * DepthFirstSearch dfs = new DepthFirstSearch(graph);
+ * dfs.start(v);
+ * for (int w = dfs.next(); w != DepthFirstSearch.FINISHED; w = dfs.next()) {
+ *     if (...) dfs.prune(); // skip vertices beyond w
+ * }
+ * </pre>
+ *
+ * An instance is not thread-safe.
  */
 public class DepthFirstSearch {
 
     /**
-     * Executes DFS from the specified vertex.
-     * 
-     * @param startVertexId
-     * @param visit         will receive a call back from this method.
+     * The return value of <code>next</code> when all the reachable vertices
+     * are visited.
      */
-    public static void search(final IDirectedGraph graph, int startVertexId, IDepthFirstVisitor visit) {
-        Stack<DfsProgress> stack = new Stack<DfsProgress>();
-        boolean[] visited = new boolean[graph.getVertexCount()];
-        visit.onStart(startVertexId);
+    public static final int FINISHED = -1;
 
-        DfsProgress progress = new DfsProgress(graph, startVertexId);
-        stack.push(progress);
+    private IDirectedGraph graph;
+    private int[] visitedGeneration;
+    private int generation;
 
-        while (!stack.isEmpty()) {
-            // The top of the stack represents the current location and state.
-            DfsProgress node = stack.peek();
+    // DFS stack: a vertex and the index of its next edge
+    private int[] stackVertex;
+    private int[] stackEdge;
+    private int depth;
+    private boolean startPending;
 
-            boolean isFirstVisit = !visited[node.getVertex()];
-            visited[node.getVertex()] = true;
+    /**
+     * Creates a new <code>DepthFirstSearch</code> instance.
+     *
+     * @param graph is a graph to be searched. The graph must not be modified
+     *              while the instance is used.
+     */
+    public DepthFirstSearch(IDirectedGraph graph) {
+        this.graph = graph;
+        int vertexCount = graph.getVertexCount();
+        this.visitedGeneration = new int[vertexCount];
+        this.stackVertex = new int[vertexCount];
+        this.stackEdge = new int[vertexCount];
+    }
 
-            if (isFirstVisit) {
-                boolean continueVisit = visit.onVisit(node.getVertex());
-                if (!continueVisit) {
-                    stack.pop(); // go back to the previous vertex
-                    visit.onLeave(node.getVertex());
-                    continue;
-                }
-            }
+    /**
+     * Executes DFS from the specified vertex.
+     *
+     * @param startVertexId
+     * @param visit         will receive a call back from this method.
+     */
+    public static void search(final IDirectedGraph graph, int startVertexId, IDepthFirstVisitor visit) {
+        new DepthFirstSearch(graph).search(startVertexId, visit);
+    }
 
-            // Find a next node to visit
-            int nextNode = -1;
-            while (node.hasNext()) {
-                int nextNodeCandidate = node.next();
-                if (!visited[nextNodeCandidate]) {
-                    nextNode = nextNodeCandidate;
-                    break;
+    /**
+     * Executes DFS from the specified vertex. The visit marks of the previous
+     * search are discarded.
+     *
+     * @param startVertexId
+     * @param visit         will receive a call back from this method.
+     *                      <code>onFinished</code> receives a new array.
+     */
+    public void search(int startVertexId, IDepthFirstVisitor visit) {
+        start(startVertexId);
+        startPending = false;
+        visit.onStart(startVertexId);
+        if (visit.onVisit(startVertexId)) {
+            while (depth > 0) {
+                int vertex = stackVertex[depth - 1];
+                int edgeIndex = stackEdge[depth - 1];
+                if (edgeIndex < graph.getOutDegree(vertex)) {
+                    stackEdge[depth - 1] = edgeIndex + 1;
+                    int next = graph.getEdge(vertex, edgeIndex);
+                    if (isVisited(next)) {
+                        visit.onVisitAgain(next);
+                    } else {
+                        push(next);
+                        if (!visit.onVisit(next)) {
+                            depth--; // go back to the previous vertex
+                            visit.onLeave(next);
+                        }
+                    }
                 } else {
-                    visit.onVisitAgain(nextNodeCandidate);
+                    // All the edges are visited. Go back to the previous vertex.
+                    depth--;
+                    visit.onLeave(vertex);
                 }
             }
-            if (nextNode != -1) {
-                // If found, set the next visit
-                stack.push(new DfsProgress(graph, nextNode));
-            } else {
-                // If not found, go back to the previous node from the current node.
-                stack.pop();
-                visit.onLeave(node.getVertex());
-            }
+        } else {
+            depth = 0;
+            visit.onLeave(startVertexId);
         }
 
+        boolean[] visited = new boolean[visitedGeneration.length];
+        for (int i = 0; i < visited.length; ++i) {
+            visited[i] = isVisited(i);
+        }
         visit.onFinished(visited);
     }
 
     /**
-     * This object manages visited edges from a vertex.
+     * Starts a new search from the specified vertex. The visit marks of the
+     * previous search are discarded. The first call of <code>next</code>
+     * returns the start vertex.
+     *
+     * @param startVertexId
      */
-    private static class DfsProgress {
-
-        private IDirectedGraph graph;
-        private int vertex;
-        private int edgeIndex;
-
-        public DfsProgress(IDirectedGraph graph, int vertexId) {
-            this.graph = graph;
-            this.vertex = vertexId;
-            this.edgeIndex = 0;
-        }
-
-        public int getVertex() {
-            return vertex;
+    public void start(int startVertexId) {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(visitedGeneration, 0);
+            generation = 0;
         }
+        generation++;
+        depth = 0;
+        push(startVertexId);
+        startPending = true;
+    }
 
-        public boolean hasNext() {
-            int[] edgeList = graph.getEdges(vertex);
-            return (edgeList != null) && (edgeIndex < edgeList.length);
+    /**
+     * @return the next vertex in the pre-order of the search. Each reachable
+     *         vertex is returned once. If all the vertices are visited, the
+     *         return value is <code>FINISHED</code>.
+     */
+    public int next() {
+        if (startPending) {
+            startPending = false;
+            return stackVertex[0];
         }
-
-        public int next() {
-            if (graph.getEdges(vertex) != null) {
-                int next = graph.getEdges(vertex)[edgeIndex];
-                edgeIndex++;
-                return next;
+        while (depth > 0) {
+            int vertex = stackVertex[depth - 1];
+            int edgeIndex = stackEdge[depth - 1];
+            if (edgeIndex < graph.getOutDegree(vertex)) {
+                stackEdge[depth - 1] = edgeIndex + 1;
+                int next = graph.getEdge(vertex, edgeIndex);
+                if (!isVisited(next)) {
+                    push(next);
+                    return next;
+                }
             } else {
-                return -1;
+                depth--;
             }
         }
+        return FINISHED;
+    }
+
+    /**
+     * Excludes the edges from the vertex returned by the last
+     * <code>next</code> from the search. Vertices reachable only through the
+     * vertex are not visited. The vertex itself remains visited.
+     */
+    public void prune() {
+        assert depth > 0 : "prune() must be called after next() returned a vertex";
+        depth--;
+        startPending = false;
+    }
+
+    /**
+     * @param vertexId specifies a vertex.
+     * @return true if the vertex has been visited in the current search.
+     */
+    public boolean isVisited(int vertexId) {
+        return visitedGeneration[vertexId] == generation;
+    }
 
+    private void push(int vertexId) {
+        visitedGeneration[vertexId] = generation;
+        stackVertex[depth] = vertexId;
+        stackEdge[depth] = 0;
+        depth++;
     }
 
 }
@@ -1,12 +1,6 @@
 package soba.util.graph;
 
-import java.util.Arrays;
-
 import soba.util.IntPairProc;
-import soba.util.IntPairSet;
-import soba.util.IntPairUtil;
-import soba.util.IntSetStack;
-import soba.util.IntStack;
 
 /**
  * This class represents a directed acyclic graph.
@@ -25,9 +19,30 @@ public class DirectedAcyclicGraph implements IDirectedGraph {
      * @param base is a directed graph.
      */
     public DirectedAcyclicGraph(IDirectedGraph base) {
+        this(base, 1);
+    }
+
+    /**
+     * Creates a new <code>DirectedAcyclicGraph</code> instance from a specified
+     * base graph. If the base graph has strongly connected components, they are
+     * removed.
+     * 
+     * @param base    is a directed graph.
+     * @param threads specifies the number of threads. If 2 or more and the
+     *                graph is large, components are detected by the parallel
+     *                forward-backward algorithm, and the representative node
+     *                of each component is the minimum vertex ID in the
+     *                component. Otherwise, Tarjan's algorithm is used, and the
+     *                representative node is the first visited vertex.
+     */
+    public DirectedAcyclicGraph(IDirectedGraph base, int threads) {
         this.base = base;
-        this.sccIds = new int[base.getVertexCount()];
-        removeStronglyConnectedComponents();
+        if (threads >= 2 && base.getVertexCount() >= StronglyConnectedComponents.PARALLEL_THRESHOLD) {
+            this.sccIds = StronglyConnectedComponents.computeInParallel(base, threads);
+        } else {
+            this.sccIds = StronglyConnectedComponents.compute(base);
+        }
+        this.dag = StronglyConnectedComponents.condense(base, sccIds);
     }
 
     /**
@@ -45,6 +60,18 @@ public class DirectedAcyclicGraph implements IDirectedGraph {
         return dag.getEdges(memberId);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getOutDegree(int vertexId) {
+        return dag.getOutDegree(vertexId);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEdge(int vertexId, int index) {
+        return dag.getEdge(vertexId, index);
+    }
+
     /**
      * @return the number of vertices. The value is the same as the base graph.
      */
@@ -98,12 +125,11 @@ public class DirectedAcyclicGraph implements IDirectedGraph {
                     if (this.sccIds[i] != another.sccIds[i])
                         return false;
                     if (isRepresentativeNode(i)) {
-                        int[] to1 = this.getEdges(i);
-                        int[] to2 = another.getEdges(i);
-                        if (to1.length != to2.length)
+                        int degree = this.getOutDegree(i);
+                        if (degree != another.getOutDegree(i))
                             return false;
-                        for (int j = 0; j < to1.length; ++j) {
-                            if (to1[j] != to2[j])
+                        for (int j = 0; j < degree; ++j) {
+                            if (this.getEdge(i, j) != another.getEdge(i, j))
                                 return false;
                         }
                     }
@@ -119,81 +145,4 @@ public class DirectedAcyclicGraph implements IDirectedGraph {
         }
     }
 
-    private TarjanData data;
-
-    /**
-     * Apply Tarjan's algorithm to detect SCCs.
-     */
-    private void removeStronglyConnectedComponents() {
-        data = new TarjanData();
-        for (int i = 0; i < base.getVertexCount(); ++i) {
-            if (data.visitIndex[i] == -1) {
-                tarjanDFS(i);
-            }
-        }
-
-        final IntPairSet dagEdges = new IntPairSet();
-        base.forEachEdge(new IntPairProc() {
-
-            @Override
-            public boolean execute(int elem1, int elem2) {
-                int from = sccIds[elem1];
-                int to = sccIds[elem2];
-                if (from != to)
-                    dagEdges.add(from, to);
-                return true;
-            }
-        });
-        dag = new DirectedGraph(base.getVertexCount(), IntPairUtil.createList(dagEdges));
-        data = null;
-    }
-
-    private void tarjanDFS(int vId) {
-        data.visitIndex[vId] = data.currentIndex;
-        data.lowlink[vId] = data.currentIndex;
-        data.currentIndex++;
-        data.stack.push(vId);
-        // System.out.println("currentIndex = " + data.currentIndex + ", stack = " +
-        // data.stack.size());
-
-        // For each edge from vId
-        for (int to : base.getEdges(vId)) {
-            // If the next vertex is not visited yet, visit it.
-            if (data.visitIndex[to] == -1) {
-                tarjanDFS(to);
-                data.lowlink[vId] = Math.min(data.lowlink[vId], data.lowlink[to]);
-            } else if (data.stack.contains(to)) {
-                data.lowlink[vId] = Math.min(data.lowlink[vId], data.visitIndex[to]);
-            }
-        }
-
-        // If the minimum ID of reachable vertices is equals to the vertex ID,
-        // then the vertex is a "root" of SCC.
-        // (If vID is not a "root" and included in a SCC,
-        // the vID is kept on the stack -- the root of SCC will pop the vID.)
-        if (data.lowlink[vId] == data.visitIndex[vId]) {
-            int pop;
-            do {
-                pop = data.stack.pop();
-                sccIds[pop] = vId;
-            } while (pop != vId); // until pop == vId
-        }
-    }
-
-    private class TarjanData {
-        public int currentIndex;
-        public int[] visitIndex; // ID for each vertex
-        public int[] lowlink; // the minimum ID of vertices reachable from a vertex
-        public IntStack stack;
-
-        public TarjanData() {
-            currentIndex = 0;
-            visitIndex = new int[base.getVertexCount()];
-            lowlink = new int[base.getVertexCount()];
-            stack = new IntSetStack(base.getVertexCount());
-            Arrays.fill(visitIndex, -1);
-        }
-
-    }
-
 }
@@ -5,18 +5,19 @@ import java.util.Arrays;
 import soba.util.IntPairList;
 import soba.util.IntPairProc;
 
-import gnu.trove.set.hash.TIntHashSet;
-
 /**
  * An instance of this class is a directed graph. Each vertex is represented as
  * an integer between 0 and vertexCount-1.
+ * 
+ * Edges are stored in the compressed sparse row format: the edges from vertex
+ * V are <code>targets[offsets[V]]</code> to
+ * <code>targets[offsets[V+1]-1]</code>, sorted by their destinations.
  */
 public class DirectedGraph implements IDirectedGraph {
 
     private int vertexCount;
-    private int edgeCount;
-    private IntPairList edges;
-    private int[][] forward;
+    private int[] offsets;
+    private int[] targets;
 
     private static final int[] EMPTY_ARRAY = new int[0];
 
@@ -29,48 +30,65 @@ public class DirectedGraph implements IDirectedGraph {
      */
     public DirectedGraph(int vertexCount, IntPairList edges) {
         this.vertexCount = vertexCount;
-        this.edges = edges;
-        this.edgeCount = edges.size();
-        this.edges.sort();
-        this.forward = constructEdgeArray(edges);
+        edges.sort();
+        constructEdgeArray(edges);
     }
 
     /**
-     * @param edges are pairs of vertex IDs.
-     * @return array representing edges. Duplicated edges are excluded in the
-     *         resultant array.
+     * Creates a new <code>DirectedGraph</code> instance from arrays in the
+     * compressed sparse row format. The arrays are used as they are.
+     * 
+     * @param vertexCount is the number of vertices.
+     * @param offsets     specifies the beginning of edges from each vertex in
+     *                    <code>targets</code>. The length is vertexCount+1.
+     * @param targets     specifies destinations of edges. Destinations from a
+     *                    vertex must be sorted without duplication.
      */
-    private int[][] constructEdgeArray(IntPairList edges) {
-        // forwardTemp[V] means a list of edges from vertex V.
-        TIntHashSet[] forwardTemp = new TIntHashSet[vertexCount];
+    DirectedGraph(int vertexCount, int[] offsets, int[] targets) {
+        assert offsets.length == vertexCount + 1 && offsets[vertexCount] == targets.length;
+        this.vertexCount = vertexCount;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Translates sorted pairs of vertex IDs into the offsets and targets
+     * arrays. Duplicated edges are adjacent in the sorted list, so that they
+     * are excluded in the same pass.
+     */
+    private void constructEdgeArray(IntPairList edges) {
+        offsets = new int[vertexCount + 1];
+        targets = new int[edges.size()];
+        int count = 0;
+        int lastFrom = -1;
+        int lastTo = -1;
         for (int i = 0; i < edges.size(); ++i) {
             int from = edges.getFirstValue(i);
             int to = edges.getSecondValue(i);
-
-            if (forwardTemp[from] == null) {
-                forwardTemp[from] = new TIntHashSet(2);
+            if (from == lastFrom && to == lastTo) {
+                continue;
             }
-            forwardTemp[from].add(to);
-        }
-        // Translate a set object to an array.
-        int[][] forward = new int[vertexCount][];
-        for (int i = 0; i < vertexCount; ++i) {
-            if (forwardTemp[i] != null) {
-                int[] array = forwardTemp[i].toArray();
-                Arrays.sort(array);
-                forward[i] = array;
-            } else {
-                forward[i] = EMPTY_ARRAY;
+            if (from < 0 || from >= vertexCount) {
+                throw new ArrayIndexOutOfBoundsException(from);
             }
+            offsets[from + 1]++;
+            targets[count++] = to;
+            lastFrom = from;
+            lastTo = to;
+        }
+        for (int v = 0; v < vertexCount; ++v) {
+            offsets[v + 1] += offsets[v];
+        }
+        if (count < targets.length) {
+            targets = Arrays.copyOf(targets, count);
         }
-        return forward;
     }
 
     /**
-     * @return the number of edges.
+     * @return the number of edges. Duplicated edges are counted once.
      */
     public int getEdgeCount() {
-        return edgeCount;
+        return targets.length;
     }
 
     /** {@inheritDoc} */
@@ -79,16 +97,58 @@ public class DirectedGraph implements IDirectedGraph {
         return vertexCount;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * Executes a procedure for each edge. Edges are visited in the order of
+     * their source vertices and then their destinations.
+     */
     @Override
     public void forEachEdge(IntPairProc proc) {
-        edges.foreach(proc);
+        for (int from = 0; from < vertexCount; ++from) {
+            for (int i = offsets[from]; i < offsets[from + 1]; ++i) {
+                if (!proc.execute(from, targets[i]))
+                    return;
+            }
+        }
     }
 
-    /** {@inheritDoc} */
+    /**
+     * @return a new array of vertex IDs connected from the specified vertex,
+     *         sorted in ascending order. <code>getOutDegree</code> and
+     *         <code>getEdge</code> access the edges without creating an array.
+     */
     @Override
     public int[] getEdges(int memberId) {
-        return this.forward[memberId];
+        int begin = offsets[memberId];
+        int end = offsets[memberId + 1];
+        if (begin == end) {
+            return EMPTY_ARRAY;
+        }
+        return Arrays.copyOfRange(targets, begin, end);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getOutDegree(int vertexId) {
+        return offsets[vertexId + 1] - offsets[vertexId];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getEdge(int vertexId, int index) {
+        if (index < 0 || index >= getOutDegree(vertexId)) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return targets[offsets[vertexId] + index];
+    }
+
+    /**
+     * @param from specifies a source vertex.
+     * @param to   specifies a destination vertex.
+     * @return true if the graph has an edge from <code>from</code> to
+     *         <code>to</code>. The edges are searched by binary search.
+     */
+    public boolean hasEdge(int from, int to) {
+        return Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to) >= 0;
     }
 
     /**
@@ -87,7 +87,8 @@ public class DominanceTree {
 
         // initialize idom
         for (int from = 0; from < base.getVertexCount(); ++from) {
-            for (int to : base.getEdges(from)) {
+            for (int e = 0; e < base.getOutDegree(from); ++e) {
+                int to = base.getEdge(from, e);
                 if (reversePostOrder[from] < reversePostOrder[to])
                     immediateDominator[to] = from;
             }
@@ -99,10 +100,9 @@ public class DominanceTree {
             changed = false;
             for (int v : sortedVertices) {
                 // dom(v) == Nearest Common Ancestor of v's predecessors
-                int[] pred = reverse.getEdges(v);
-                for (int idx = 0; idx < pred.length; ++idx) {
+                for (int idx = 0; idx < reverse.getOutDegree(v); ++idx) {
                     int idom = immediateDominator[v];
-                    int nca = nearestCommonAncestor(idom, pred[idx]);
+                    int nca = nearestCommonAncestor(idom, reverse.getEdge(v, idx));
                     if (idom != nca) {
                         changed = true;
                         immediateDominator[v] = nca;
@@ -15,6 +15,24 @@ public interface IDirectedGraph {
      */
     public int[] getEdges(int memberId);
 
+    /**
+     * @param vertexId specifies a vertex.
+     * @return the number of edges from the specified vertex.
+     */
+    public default int getOutDegree(int vertexId) {
+        return getEdges(vertexId).length;
+    }
+
+    /**
+     * @param vertexId specifies a vertex.
+     * @param index    specifies an edge between 0 and getOutDegree(vertexId)-1.
+     * @return the vertex ID connected by the specified edge. The order of
+     *         edges is the same as <code>getEdges</code>.
+     */
+    public default int getEdge(int vertexId, int index) {
+        return getEdges(vertexId)[index];
+    }
+
     /**
      * Executes a procedure for each edge.
      */
@@ -72,12 +72,30 @@ public class SingleRootDirectedGraph implements IDirectedGraph {
         }
     }
 
+    @Override
+    public int getOutDegree(int vertexId) {
+        if (vertexId < base.getVertexCount()) {
+            return base.getOutDegree(vertexId);
+        } else {
+            return edgesFromRoot.length;
+        }
+    }
+
+    @Override
+    public int getEdge(int vertexId, int index) {
+        if (vertexId < base.getVertexCount()) {
+            return base.getEdge(vertexId, index);
+        } else {
+            return edgesFromRoot[index];
+        }
+    }
+
     @Override
     public void forEachEdge(IntPairProc proc) {
         // base vertices
         for (int from = 0; from < base.getVertexCount(); ++from) {
-            for (int to : base.getEdges(from)) {
-                if (!proc.execute(from, to))
+            for (int e = 0; e < base.getOutDegree(from); ++e) {
+                if (!proc.execute(from, base.getEdge(from, e)))
                     return;
             }
         }
@@ -0,0 +1,413 @@
+package soba.util.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import soba.util.IntPairList;
+import soba.util.IntPairProc;
+
+/**
+ * This class detects strongly connected components (SCCs) of a directed graph.
+ * The result is an array mapping each vertex to a representative vertex of
+ * its SCC.
+ *
+ * The sequential algorithm is an iterative version of Tarjan's algorithm using
+ * primitive arrays instead of recursive calls; the root of each SCC is the
+ * representative. The parallel algorithm is the forward-backward algorithm
+ * with trimming; the minimum vertex ID in each SCC is the representative.
+ */
+class StronglyConnectedComponents {
+
+    /**
+     * Graphs smaller than this threshold are processed by the sequential
+     * algorithm even if multiple threads are available.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Subproblems of the forward-backward algorithm smaller than this threshold
+     * are solved by Tarjan's algorithm.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    private static final int UNVISITED = -1;
+    private static final int DONE = -1;
+
+    private IDirectedGraph graph;
+    private int[] sccIds;
+    private int[] visitIndex;
+    private int[] lowlink;
+
+    // for the forward-backward algorithm
+    private IDirectedGraph reverse;
+    private int[] colors;
+    private int[] inDegree;
+    private int[] outDegree;
+    private AtomicInteger nextColor;
+
+    private StronglyConnectedComponents(IDirectedGraph graph) {
+        this.graph = graph;
+        int vertexCount = graph.getVertexCount();
+        sccIds = new int[vertexCount];
+        visitIndex = new int[vertexCount];
+        lowlink = new int[vertexCount];
+        Arrays.fill(sccIds, UNVISITED);
+        Arrays.fill(visitIndex, UNVISITED);
+    }
+
+    /**
+     * Detects SCCs by Tarjan's algorithm.
+     *
+     * @param graph is a directed graph.
+     * @return an array mapping each vertex to the root of its SCC. The roots
+     *         are the same as the recursive version of Tarjan's algorithm
+     *         visiting vertices in the ascending order of their IDs.
+     */
+    public static int[] compute(IDirectedGraph graph) {
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(graph);
+        scc.tarjan(null, graph.getVertexCount(), null, 0);
+        return scc.sccIds;
+    }
+
+    /**
+     * Detects SCCs by the forward-backward algorithm.
+     *
+     * @param graph   is a directed graph.
+     * @param threads specifies the number of worker threads.
+     * @return an array mapping each vertex to the minimum vertex ID in its SCC.
+     */
+    public static int[] computeInParallel(IDirectedGraph graph, int threads) {
+        if (!(graph instanceof DirectedGraph)) {
+            // Duplicated edges are removed, so that the degrees of a vertex
+            // are consistent with the reverse graph.
+            graph = copy(graph);
+        }
+        StronglyConnectedComponents scc = new StronglyConnectedComponents(graph);
+        int vertexCount = graph.getVertexCount();
+        scc.reverse = GraphUtil.getReverseGraph(graph);
+        scc.colors = new int[vertexCount];
+        scc.inDegree = new int[vertexCount];
+        scc.outDegree = new int[vertexCount];
+        scc.nextColor = new AtomicInteger(1);
+
+        int[] vertices = new int[vertexCount];
+        for (int i = 0; i < vertexCount; ++i) {
+            vertices[i] = i;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(scc.new ForwardBackwardTask(vertices, 0));
+        } finally {
+            pool.shutdown();
+        }
+        scc.useMinimumRepresentatives();
+        return scc.sccIds;
+    }
+
+    private static DirectedGraph copy(IDirectedGraph graph) {
+        final IntPairList edges = new IntPairList();
+        graph.forEachEdge(new IntPairProc() {
+            @Override
+            public boolean execute(int from, int to) {
+                edges.add(from, to);
+                return true;
+            }
+        });
+        return new DirectedGraph(graph.getVertexCount(), edges);
+    }
+
+    /**
+     * Builds a DAG whose vertices are the representatives of SCCs. Edges in
+     * the same SCC are removed, and duplicated edges between SCCs are merged.
+     *
+     * @param base   is a directed graph.
+     * @param sccIds maps each vertex to the representative of its SCC.
+     * @return a graph with the same number of vertices as the base graph.
+     *         Vertices other than the representatives have no edges.
+     */
+    public static DirectedGraph condense(IDirectedGraph base, int[] sccIds) {
+        int vertexCount = base.getVertexCount();
+
+        // Group vertices by their representatives (counting sort)
+        int[] memberOffsets = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; ++v) {
+            memberOffsets[sccIds[v] + 1]++;
+        }
+        for (int i = 0; i < vertexCount; ++i) {
+            memberOffsets[i + 1] += memberOffsets[i];
+        }
+        int[] members = new int[vertexCount];
+        int[] position = Arrays.copyOf(memberOffsets, vertexCount);
+        int edgeCount = 0;
+        for (int v = 0; v < vertexCount; ++v) {
+            members[position[sccIds[v]]++] = v;
+            edgeCount += base.getOutDegree(v);
+        }
+
+        // Collect edges from each SCC. mark[T] == R means that an edge R->T
+        // has been already added.
+        int[] offsets = new int[vertexCount + 1];
+        int[] targets = new int[edgeCount];
+        int[] mark = new int[vertexCount];
+        Arrays.fill(mark, UNVISITED);
+        int count = 0;
+        for (int r = 0; r < vertexCount; ++r) {
+            offsets[r] = count;
+            for (int k = memberOffsets[r]; k < memberOffsets[r + 1]; ++k) {
+                int v = members[k];
+                for (int e = 0; e < base.getOutDegree(v); ++e) {
+                    int to = sccIds[base.getEdge(v, e)];
+                    if (to != r && mark[to] != r) {
+                        mark[to] = r;
+                        targets[count++] = to;
+                    }
+                }
+            }
+            Arrays.sort(targets, offsets[r], count);
+        }
+        offsets[vertexCount] = count;
+        return new DirectedGraph(vertexCount, offsets, Arrays.copyOf(targets, count));
+    }
+
+    /**
+     * Applies Tarjan's algorithm to the specified vertices. The DFS is
+     * simulated by an explicit stack of (vertex, edge index) pairs.
+     *
+     * @param vertices specifies start vertices. If null, vertices 0 to
+     *                 count-1 are used.
+     * @param count    is the number of the start vertices.
+     * @param colors   if not null, edges to vertices whose color is not
+     *                 <code>color</code> are ignored.
+     * @param color    specifies the color of the vertices.
+     */
+    private void tarjan(int[] vertices, int count, int[] colors, int color) {
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] callVertex = new int[count];
+        int[] callEdge = new int[count];
+        int index = 0;
+        for (int k = 0; k < count; ++k) {
+            int root = (vertices != null) ? vertices[k] : k;
+            if (visitIndex[root] != UNVISITED) {
+                continue;
+            }
+            visitIndex[root] = index;
+            lowlink[root] = index;
+            index++;
+            stack[stackSize++] = root;
+            callVertex[0] = root;
+            callEdge[0] = 0;
+            int depth = 1;
+
+            while (depth > 0) {
+                int v = callVertex[depth - 1];
+                int e = callEdge[depth - 1];
+                if (e < graph.getOutDegree(v)) {
+                    callEdge[depth - 1] = e + 1;
+                    int to = graph.getEdge(v, e);
+                    if (colors != null && colors[to] != color) {
+                        continue;
+                    }
+                    if (visitIndex[to] == UNVISITED) {
+                        // Visit the next vertex
+                        visitIndex[to] = index;
+                        lowlink[to] = index;
+                        index++;
+                        stack[stackSize++] = to;
+                        callVertex[depth] = to;
+                        callEdge[depth] = 0;
+                        depth++;
+                    } else if (sccIds[to] == UNVISITED) {
+                        // A visited vertex without SCC is on the stack.
+                        lowlink[v] = Math.min(lowlink[v], visitIndex[to]);
+                    }
+                } else {
+                    // All the edges are visited. Return to the caller.
+                    depth--;
+                    if (lowlink[v] == visitIndex[v]) {
+                        int pop;
+                        do {
+                            pop = stack[--stackSize];
+                            sccIds[pop] = v;
+                        } while (pop != v);
+                    }
+                    if (depth > 0) {
+                        int caller = callVertex[depth - 1];
+                        lowlink[caller] = Math.min(lowlink[caller], lowlink[v]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces representatives with the minimum vertex IDs in SCCs, so that
+     * the result does not depend on the order of the parallel execution.
+     */
+    private void useMinimumRepresentatives() {
+        int[] minimum = new int[sccIds.length];
+        Arrays.fill(minimum, Integer.MAX_VALUE);
+        for (int v = 0; v < sccIds.length; ++v) {
+            minimum[sccIds[v]] = Math.min(minimum[sccIds[v]], v);
+        }
+        for (int v = 0; v < sccIds.length; ++v) {
+            sccIds[v] = minimum[sccIds[v]];
+        }
+    }
+
+    /**
+     * Solves a subproblem of the forward-backward algorithm. A subproblem is a
+     * set of vertices having the same color; no SCC spans two subproblems.
+     * Subproblems have disjoint sets of vertices, so that tasks write
+     * different elements of the shared arrays.
+     */
+    private class ForwardBackwardTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private int[] vertices;
+        private int color;
+
+        public ForwardBackwardTask(int[] vertices, int color) {
+            this.vertices = vertices;
+            this.color = color;
+        }
+
+        @Override
+        protected void compute() {
+            int count = trim();
+            if (count == 0) {
+                return;
+            } else if (count <= SEQUENTIAL_THRESHOLD) {
+                tarjan(vertices, count, colors, color);
+                return;
+            }
+
+            // Vertices reachable from the pivot are colored forwardColor.
+            // A random pivot avoids removing SCCs one by one from a long
+            // chain of SCCs.
+            int pivot = vertices[ThreadLocalRandom.current().nextInt(count)];
+            int forwardColor = nextColor.getAndIncrement();
+            int backwardColor = nextColor.getAndIncrement();
+            int[] queue = new int[count];
+            int queueEnd = 0;
+            colors[pivot] = forwardColor;
+            queue[queueEnd++] = pivot;
+            for (int i = 0; i < queueEnd; ++i) {
+                int v = queue[i];
+                for (int e = 0; e < graph.getOutDegree(v); ++e) {
+                    int to = graph.getEdge(v, e);
+                    if (colors[to] == color) {
+                        colors[to] = forwardColor;
+                        queue[queueEnd++] = to;
+                    }
+                }
+            }
+
+            // Vertices reaching the pivot are in the SCC if they are
+            // forwardColor. Others are colored backwardColor.
+            queueEnd = 0;
+            colors[pivot] = DONE;
+            sccIds[pivot] = pivot;
+            queue[queueEnd++] = pivot;
+            for (int i = 0; i < queueEnd; ++i) {
+                int v = queue[i];
+                for (int e = 0; e < reverse.getOutDegree(v); ++e) {
+                    int from = reverse.getEdge(v, e);
+                    if (colors[from] == forwardColor) {
+                        colors[from] = DONE;
+                        sccIds[from] = pivot;
+                        queue[queueEnd++] = from;
+                    } else if (colors[from] == color) {
+                        colors[from] = backwardColor;
+                        queue[queueEnd++] = from;
+                    }
+                }
+            }
+
+            // The remaining vertices are divided into three subproblems.
+            invokeAll(new ForwardBackwardTask(select(count, forwardColor), forwardColor),
+                    new ForwardBackwardTask(select(count, backwardColor), backwardColor),
+                    new ForwardBackwardTask(select(count, color), color));
+        }
+
+        /**
+         * Removes vertices without incoming or outgoing edges in the
+         * subproblem. Such a vertex is an SCC by itself. The remaining
+         * vertices are moved to the beginning of <code>vertices</code>.
+         *
+         * @return the number of remaining vertices.
+         */
+        private int trim() {
+            // A vertex is enqueued at most twice: for in and out degrees.
+            int[] queue = new int[vertices.length * 2];
+            int queueEnd = 0;
+            for (int v : vertices) {
+                int in = 0;
+                for (int e = 0; e < reverse.getOutDegree(v); ++e) {
+                    if (colors[reverse.getEdge(v, e)] == color) {
+                        in++;
+                    }
+                }
+                int out = 0;
+                for (int e = 0; e < graph.getOutDegree(v); ++e) {
+                    if (colors[graph.getEdge(v, e)] == color) {
+                        out++;
+                    }
+                }
+                inDegree[v] = in;
+                outDegree[v] = out;
+                if (in == 0 || out == 0) {
+                    queue[queueEnd++] = v;
+                }
+            }
+            for (int i = 0; i < queueEnd; ++i) {
+                int v = queue[i];
+                if (colors[v] != color) {
+                    continue;
+                }
+                colors[v] = DONE;
+                sccIds[v] = v;
+                for (int e = 0; e < graph.getOutDegree(v); ++e) {
+                    int to = graph.getEdge(v, e);
+                    if (colors[to] == color && --inDegree[to] == 0) {
+                        queue[queueEnd++] = to;
+                    }
+                }
+                for (int e = 0; e < reverse.getOutDegree(v); ++e) {
+                    int from = reverse.getEdge(v, e);
+                    if (colors[from] == color && --outDegree[from] == 0) {
+                        queue[queueEnd++] = from;
+                    }
+                }
+            }
+            return select(vertices.length, color, vertices);
+        }
+
+        /**
+         * @return a new array of the vertices with the specified color.
+         */
+        private int[] select(int count, int c) {
+            int[] selected = new int[count];
+            return Arrays.copyOf(selected, select(count, c, selected));
+        }
+
+        /**
+         * Copies the vertices with the specified color to an array.
+         *
+         * @return the number of the copied vertices.
+         */
+        private int select(int count, int c, int[] result) {
+            int n = 0;
+            for (int i = 0; i < count; ++i) {
+                if (colors[vertices[i]] == c) {
+                    result[n++] = vertices[i];
+                }
+            }
+            return n;
+        }
+    }
+}
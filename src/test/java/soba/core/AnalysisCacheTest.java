@@ -0,0 +1,100 @@
+package soba.core;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soba.core.method.DataDependence;
+import soba.core.method.DataFlowEdge;
+import soba.core.method.LocalVariables;
+import soba.util.graph.DirectedGraph;
+
+public class AnalysisCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndLoad() throws IOException {
+        JavaProgram original = JavaProgramTest.readExampleProgram();
+        AnalysisCache cache = new AnalysisCache(folder.getRoot());
+        cache.analyze(original);
+        assertThat(cache.getLoadCount(), is(0));
+        assertThat(cache.getStoreCount(), is(original.getClasses().size()));
+
+        JavaProgram reloaded = JavaProgramTest.readExampleProgram();
+        AnalysisCache another = new AnalysisCache(folder.getRoot());
+        another.analyze(reloaded);
+        assertThat(another.getLoadCount(), is(reloaded.getClasses().size()));
+        assertThat(another.getStoreCount(), is(0));
+
+        for (ClassInfo c : original.getClasses()) {
+            ClassInfo loaded = reloaded.getClassInfo(c.getClassName());
+            for (int i = 0; i < c.getMethods().size(); ++i) {
+                MethodInfo expected = c.getMethods().get(i);
+                MethodInfo actual = loaded.getMethods().get(i);
+                assertThat(actual.hasFlowResult(), is(true));
+                assertSameGraph(actual.getControlFlow(), expected.getControlFlow());
+                assertSameGraph(actual.getConservativeControlFlow(), expected.getConservativeControlFlow());
+                assertSameDataDependence(actual.getDataDependence(), expected.getDataDependence());
+            }
+        }
+    }
+
+    @Test
+    public void testChangedVersion() throws IOException {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        ClassInfo c = program.getClassInfo(ExampleProgram.CLASS_C);
+        AnalysisCache cache = new AnalysisCache(folder.getRoot());
+        assertThat(cache.load(c), is(false));
+        cache.store(c);
+        assertThat(cache.load(c), is(true));
+    }
+
+    private static void assertSameGraph(DirectedGraph actual, DirectedGraph expected) {
+        assertThat(actual.getVertexCount(), is(expected.getVertexCount()));
+        for (int v = 0; v < expected.getVertexCount(); ++v) {
+            assertArrayEquals(expected.getEdges(v), actual.getEdges(v));
+        }
+    }
+
+    private static void assertSameDataDependence(DataDependence actual, DataDependence expected) {
+        if (expected == null) {
+            assertThat(actual, is(nullValue()));
+            return;
+        }
+        List<DataFlowEdge> expectedEdges = expected.getEdges();
+        List<DataFlowEdge> actualEdges = actual.getEdges();
+        assertThat(actualEdges, hasSize(expectedEdges.size()));
+        for (int i = 0; i < expectedEdges.size(); ++i) {
+            assertThat(actualEdges.get(i).toString(), is(expectedEdges.get(i).toString()));
+        }
+        for (int i = 0; i < expected.getMethod().instructions.size(); ++i) {
+            int[][] expectedDef = expected.getDataDefinition(i);
+            int[][] actualDef = actual.getDataDefinition(i);
+            assertThat(actualDef.length, is(expectedDef.length));
+            for (int j = 0; j < expectedDef.length; ++j) {
+                assertArrayEquals(expectedDef[j], actualDef[j]);
+            }
+        }
+        LocalVariables expectedLocals = expected.getLocalVariables();
+        LocalVariables actualLocals = actual.getLocalVariables();
+        assertThat(actualLocals.getVariableEntryCount(), is(expectedLocals.getVariableEntryCount()));
+        for (int i = 0; i < expectedLocals.getVariableEntryCount(); ++i) {
+            assertThat(actualLocals.getVariableName(i), is(expectedLocals.getVariableName(i)));
+            assertThat(actualLocals.getVariableIndex(i), is(expectedLocals.getVariableIndex(i)));
+            assertThat(actualLocals.isObjectVariable(i), is(expectedLocals.isObjectVariable(i)));
+            assertThat(actualLocals.isArrayVariable(i), is(expectedLocals.isArrayVariable(i)));
+            assertThat(actualLocals.isParameter(i), is(expectedLocals.isParameter(i)));
+        }
+        for (int i = 0; i < expected.getMethod().instructions.size(); ++i) {
+            assertThat(actualLocals.findEntryForInstruction(i), is(expectedLocals.findEntryForInstruction(i)));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package soba.core;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import soba.core.BoundedFlowCache.EvictionPolicy;
+import soba.core.method.FlowResult;
+
+public class BoundedFlowCacheTest {
+
+    private static final String TESTDATA_CLASS = "soba/testdata/DefUseTestData";
+
+    private static List<MethodInfo> methods;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        methods = program.getClassInfo(TESTDATA_CLASS).getMethods();
+    }
+
+    private static FlowResult analyze(MethodInfo m) {
+        return FlowResult.analyze(m.getMethodNode());
+    }
+
+    @Test
+    public void testLeastRecentlyUsed() {
+        MethodInfo m0 = methods.get(0);
+        MethodInfo m1 = methods.get(1);
+        MethodInfo m2 = methods.get(2);
+        FlowResult r0 = analyze(m0);
+        FlowResult r1 = analyze(m1);
+        FlowResult r2 = analyze(m2);
+        long budget = r0.getEstimatedSize() + Math.max(r1.getEstimatedSize(), r2.getEstimatedSize());
+        BoundedFlowCache cache = new BoundedFlowCache(budget);
+
+        cache.put(m0, r0);
+        cache.put(m1, r1);
+        assertThat(cache.get(m0), is(sameInstance(r0)));
+        cache.put(m2, r2);
+
+        assertThat(cache.contains(m0), is(true));
+        assertThat(cache.contains(m1), is(false));
+        assertThat(cache.contains(m2), is(true));
+        assertThat(cache.get(m1), is(nullValue()));
+        assertThat(cache.getHitCount(), is(1L));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.getUsedBytes(), is(r0.getEstimatedSize() + r2.getEstimatedSize()));
+    }
+
+    @Test
+    public void testLargestFirst() {
+        MethodInfo largest = null;
+        FlowResult largestResult = null;
+        BoundedFlowCache unbounded = new BoundedFlowCache(Long.MAX_VALUE, EvictionPolicy.LARGEST_FIRST, false);
+        long total = 0;
+        for (MethodInfo m : methods) {
+            FlowResult r = analyze(m);
+            unbounded.put(m, r);
+            total += r.getEstimatedSize();
+            if (largestResult == null || r.getEstimatedSize() > largestResult.getEstimatedSize()) {
+                largest = m;
+                largestResult = r;
+            }
+        }
+        assertThat(unbounded.getUsedBytes(), is(total));
+        assertThat(unbounded.getEvictionCount(), is(0L));
+
+        BoundedFlowCache cache = new BoundedFlowCache(total - 1, EvictionPolicy.LARGEST_FIRST, false);
+        for (MethodInfo m : methods) {
+            cache.put(m, unbounded.get(m));
+        }
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(cache.contains(largest), is(false));
+        assertThat(cache.getEntryCount(), is(methods.size() - 1));
+        assertThat(cache.getUsedBytes(), is(total - largestResult.getEstimatedSize()));
+    }
+
+    @Test
+    public void testSoftReferences() {
+        MethodInfo m0 = methods.get(0);
+        MethodInfo m1 = methods.get(1);
+        FlowResult r0 = analyze(m0);
+        FlowResult r1 = analyze(m1);
+        BoundedFlowCache cache = new BoundedFlowCache(0, EvictionPolicy.LEAST_RECENTLY_USED, true);
+        cache.put(m0, r0);
+        cache.put(m1, r1);
+        assertThat(cache.getEntryCount(), is(0));
+        assertThat(cache.getEvictionCount(), is(2L));
+
+        // r0 is strongly reachable from this method
+        assertThat(cache.contains(m0), is(true));
+        assertThat(cache.get(m0), is(sameInstance(r0)));
+
+        cache.put(m1, null);
+        assertThat(cache.contains(m1), is(false));
+    }
+
+    @Test
+    public void testMethodInfo() {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        ClassInfo c = program.getClassInfo(TESTDATA_CLASS);
+        MethodInfo m = c.getMethods().get(1);
+        FlowResult original = m.getFlowResult();
+
+        BoundedFlowCache cache = new BoundedFlowCache(0);
+        program.setFlowCache(cache);
+        assertThat(c.getFlowCache(), is((IFlowCache) cache));
+        assertThat(m.hasFlowResult(), is(false));
+
+        FlowResult recomputed = m.getFlowResult();
+        assertThat(recomputed, is(not(sameInstance(original))));
+        assertThat(m.hasFlowResult(), is(false));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getEvictionCount(), is(1L));
+        assertThat(m.getControlFlow().getEdgeCount(), is(original.getNormalControlFlow().size()));
+        assertThat(m.getDataDependence().getEdges().size(), is(original.getDataDependence().getEdges().size()));
+
+        program.setFlowCache(null);
+        assertThat(m.getFlowResult(), is(sameInstance(m.getFlowResult())));
+    }
+}
@@ -8,9 +8,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.junit.Before;
@@ -199,6 +205,156 @@ public class ClassHierarchyTest implements ExampleProgram {
         checkClasses(methodsMi, CLASS_D);
     }
 
+    @Test
+    public void testDispatchCache() {
+        MethodInfo[] before = ch.resolveCall(CLASS_C, "n", "()V", true);
+        assertThat(ch.getDispatchCacheSize(), is(0));
+        assertThat(ch.getDispatchCacheMissCount(), is(0L));
+
+        ch.freeze();
+        MethodInfo[] methodsN = ch.resolveCall(CLASS_C, "n", "()V", true);
+        assertThat(Arrays.asList(methodsN), containsInAnyOrder(before));
+        assertThat(ch.resolveCall(CLASS_C, "n", "()V", true), is(sameInstance(methodsN)));
+        assertThat(ch.getDispatchCacheMissCount(), is(1L));
+        assertThat(ch.getDispatchCacheHitCount(), is(1L));
+
+        // Static/special calls are cached separately
+        MethodInfo special = ch.resolveSpecialCall(CLASS_H, "m", "()V");
+        assertThat(special.getClassName(), is(CLASS_D));
+        assertThat(ch.resolveSpecialCall(CLASS_H, "m", "()V"), is(sameInstance(special)));
+        checkClasses(ch.resolveCall(CLASS_H, "m", "()V", false), CLASS_D);
+        assertThat(ch.resolveSpecialCall(CLASS_C, "undefined", "()V"), is(nullValue()));
+        assertThat(ch.resolveCall(CLASS_C, "undefined", "()V", false).length, is(0));
+        assertThat(ch.getDispatchCacheSize(), is(3));
+        assertThat(ch.getDispatchCacheMissCount(), is(3L));
+        assertThat(ch.getDispatchCacheHitCount(), is(4L));
+    }
+
+    @Test
+    public void testFrozenSubtypes() {
+        checkFrozenHierarchy(ch);
+    }
+
+    @Test
+    public void testFrozenSubtypesWithManualEdges() {
+        // X is a subtype of E and a super type of H and G in another subtree.
+        // Y and Z form a cycle, and Z is not registered.
+        ch.registerSubtype("pkg/X", CLASS_E);
+        ch.registerSubtype(CLASS_H, "pkg/X");
+        ch.registerSubtype(CLASS_G, "pkg/X");
+        ch.registerSubtype("pkg/Y", CLASS_K);
+        ch.registerSubtype("pkg/Z", "pkg/Y");
+        ch.registerSubtype("pkg/Y", "pkg/Z");
+        checkFrozenHierarchy(ch);
+        assertThat(ch.isSubtype(CLASS_H, CLASS_E), is(true));
+        assertThat(ch.isSubtype(CLASS_D, CLASS_E), is(false));
+        assertThat(ch.isSubtype("pkg/Z", CLASS_I), is(true));
+    }
+
+    /**
+     * Compares the results of a frozen hierarchy with the unfrozen one.
+     */
+    private void checkFrozenHierarchy(ClassHierarchy hierarchy) {
+        List<String> types = new ArrayList<>();
+        for (String t : hierarchy.getClasses()) {
+            types.add(t);
+        }
+        types.addAll(Arrays.asList("java/lang/Object", "pkg/X", "pkg/Y", "pkg/Z", "pkg/Unknown", "[I[]"));
+
+        List<Collection<String>> subtypes = new ArrayList<>();
+        List<Collection<String>> supertypes = new ArrayList<>();
+        for (String t : types) {
+            subtypes.add(new HashSet<>(hierarchy.getAllSubtypes(Arrays.asList(t))));
+            supertypes.add(new HashSet<>(hierarchy.listAllSuperTypes(t)));
+        }
+        Set<String> allSubtypes = new HashSet<>(hierarchy.getAllSubtypes(types));
+        Set<String> requested = new HashSet<>(hierarchy.getRequestedClasses());
+        hierarchy.getRequestedClasses().clear();
+
+        hierarchy.freeze();
+        for (int idx = 0; idx < types.size(); ++idx) {
+            String t = types.get(idx);
+            Collection<String> frozenSubtypes = hierarchy.getAllSubtypes(Arrays.asList(t));
+            assertThat(t, new HashSet<>(frozenSubtypes), is(subtypes.get(idx)));
+            assertThat(t, frozenSubtypes.size(), is(subtypes.get(idx).size()));
+            assertThat(t, new HashSet<>(hierarchy.listAllSuperTypes(t)), is(supertypes.get(idx)));
+            assertThat(hierarchy.listAllSuperTypes(t), is(sameInstance(hierarchy.listAllSuperTypes(t))));
+            for (String other : types) {
+                assertThat(t + " <: " + other, hierarchy.isSubtype(t, other),
+                        is(subtypes.get(types.indexOf(other)).contains(t)));
+                assertThat(frozenSubtypes.contains(other), is(subtypes.get(idx).contains(other)));
+            }
+        }
+        assertThat(new HashSet<>(hierarchy.getAllSubtypes(types)), is(allSubtypes));
+        assertThat(hierarchy.getRequestedClasses(), is(requested));
+    }
+
+    @Test
+    public void testUnregisteredSubtypesCollectedOnce() {
+        // pkg/A is registered; pkg/B and pkg/C are its unregistered subtypes.
+        Map<String, Set<String>> subtypes = new HashMap<>();
+        subtypes.put("pkg/A", new HashSet<>(Arrays.asList("pkg/B")));
+        subtypes.put("pkg/B", new HashSet<>(Arrays.asList("pkg/C")));
+        CompiledHierarchy compiled = new CompiledHierarchy(subtypes, Arrays.asList("pkg/A"));
+        int a = compiled.getTypeId("pkg/A");
+        int b = compiled.getTypeId("pkg/B");
+
+        List<String> result = new ArrayList<>();
+        compiled.collectUnregisteredSubtypes(a, result);
+        assertThat(result, containsInAnyOrder("pkg/B", "pkg/C"));
+        compiled.collectUnregisteredSubtypes(a, result);
+        assertThat(result, hasSize(2));
+        compiled.collectUnregisteredSubtypes(b, result);
+        assertThat(result, hasSize(3));
+        assertThat(result.get(2), is("pkg/C"));
+    }
+
+    @Test
+    public void testConcurrentQueries() throws Exception {
+        ch.freeze();
+        try {
+            ch.getSubtypes(CLASS_C).add("pkg/NewChild");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+        try {
+            ch.getSuperInterfaces(CLASS_D).add("pkg/NewInterface");
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+
+        final int threads = 4;
+        final int queries = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                final int thread = t;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        boolean ok = true;
+                        for (int q = 0; q < queries; ++q) {
+                            ok &= ch.resolveCall(CLASS_C, "n", "()V", true).length == 4;
+                            ok &= ch.isSubtype(CLASS_H, CLASS_C);
+                            ok &= ch.getClassInfo("pkg/Unknown" + thread + "_" + (q % 10)) == null;
+                            ok &= ch.getSuperClass(CLASS_D).equals(CLASS_C);
+                        }
+                        return ok;
+                    }
+                }));
+            }
+            for (Future<Boolean> r : results) {
+                assertThat(r.get(), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(ch.getRequestedClasses(), hasSize(threads * 10));
+        assertThat(ch.getRequestedClasses(), hasItem("pkg/Unknown3_9"));
+        assertThat(ch.getDispatchCacheHitCount() + ch.getDispatchCacheMissCount(), is((long) threads * queries));
+    }
+
     @Test
     public void testFields() {
         assertThat(ch.resolveField(FieldAccess.createGetField(CLASS_D, "x", "I", false)).getClassName(), is(CLASS_C));
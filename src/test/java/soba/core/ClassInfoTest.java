@@ -6,10 +6,12 @@ import static org.hamcrest.Matchers.*;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 
 import org.junit.Test;
 
 import soba.core.ClassInfo;
+import soba.core.signature.MemberSignatureTable;
 
 public class ClassInfoTest implements ExampleProgram {
 
@@ -181,4 +183,52 @@ public class ClassInfoTest implements ExampleProgram {
 
     }
 
+    @Test
+    public void testLazyClassInfo() throws Exception {
+        String fileName = "target/test-classes/" + CLASS_D + ".class";
+        ClassInfo eager = new ClassInfo(fileName, new FileInputStream(fileName));
+        byte[] bytes = Files.readAllBytes(new File(fileName).toPath());
+        ClassInfo c = new ClassInfo(fileName, bytes, null, true);
+
+        assertThat(c.isLazy(), is(true));
+        assertThat(eager.isLazy(), is(false));
+        assertThat(c.getClassName(), is(CLASS_D));
+        assertThat(c.getSuperClass(), is(CLASS_C));
+        assertThat(c.getHash(), is(eager.getHash()));
+        assertThat(c.getMethodCount(), is(eager.getMethodCount()));
+
+        MethodInfo m = c.findMethod("example", "(IJDLjava/lang/String;)I");
+        MethodInfo expected = eager.findMethod("example", "(IJDLjava/lang/String;)I");
+        assertThat(m.getInstructionCount(), is(expected.getInstructionCount()));
+        assertThat(m.getMethodNode(), is(sameInstance(m.getMethodNode())));
+        assertThat(m.getDataDependence().getEdges(), hasSize(expected.getDataDependence().getEdges().size()));
+        assertThat(m.getParamCount(), is(expected.getParamCount()));
+
+        c.releaseMethodBodies();
+        assertThat(m.getInstructionCount(), is(expected.getInstructionCount()));
+    }
+
+    @Test
+    public void testMemberIndex() throws Exception {
+        String fileName = "target/test-classes/" + CLASS_D + ".class";
+        ClassInfo c = new ClassInfo(fileName, new FileInputStream(fileName));
+        MemberSignatureTable table = c.getMemberSignatureTable();
+        for (MethodInfo m : c.getMethods()) {
+            assertThat(c.findMethod(m.getMethodName(), m.getDescriptor()), is(sameInstance(m)));
+            int id = table.findId(m.getMethodName(), m.getDescriptor());
+            assertThat(id, is(not(MemberSignatureTable.NOT_FOUND)));
+            assertThat(table.getId(m.getMethodName(), m.getDescriptor()), is(id));
+        }
+        assertThat(c.findMethod("m", "()I"), is(nullValue()));
+        assertThat(table.findId("testMemberIndex", "(Ljava/lang/Object;)V"), is(MemberSignatureTable.NOT_FOUND));
+
+        String dataFileName = "target/test-classes/" + CLASS_L + ".class";
+        ClassInfo data = new ClassInfo(dataFileName, new FileInputStream(dataFileName));
+        assertThat(data.getFields(), is(not(empty())));
+        for (FieldInfo f : data.getFields()) {
+            assertThat(data.findField(f.getFieldName(), f.getDescriptor()), is(sameInstance(f)));
+            assertThat(data.findMethod(f.getFieldName(), f.getDescriptor()), is(nullValue()));
+        }
+        assertThat(data.findField("notExist", "I"), is(nullValue()));
+    }
 }
@@ -0,0 +1,162 @@
+package soba.core;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import soba.core.method.ControlDependence;
+import soba.util.files.Directory;
+import soba.util.files.IClassList;
+import soba.util.graph.DirectedGraph;
+
+public class FlowAnalysisDriverTest {
+
+    @Test
+    public void testAnalyze() {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        final List<MethodInfo> analyzed = Collections.synchronizedList(new ArrayList<MethodInfo>());
+        final List<Integer> totals = Collections.synchronizedList(new ArrayList<Integer>());
+        FlowAnalysisDriver driver = new FlowAnalysisDriver(4);
+        driver.setListener(new IFlowAnalysisListener() {
+            @Override
+            public void methodAnalyzed(MethodInfo m, int completedCount, int totalCount) {
+                analyzed.add(m);
+                totals.add(totalCount);
+            }
+
+            @Override
+            public void methodFailed(MethodInfo m, Exception error) {
+                fail(m.getMethodKey() + " " + error);
+            }
+        });
+        FlowAnalysisDriver.Report report = driver.analyze(program);
+
+        int expected = 0;
+        long instructions = 0;
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                if (m.hasMethodBody()) {
+                    expected++;
+                    instructions += m.getInstructionCount();
+                    assertThat(m.hasFlowResult(), is(true));
+                    assertThat(analyzed, hasItem(m));
+                }
+            }
+        }
+        assertThat(report.getMethodCount(), is(expected));
+        assertThat(report.getInstructionCount(), is(instructions));
+        assertThat(analyzed, hasSize(expected));
+        assertThat(totals, everyItem(is(expected)));
+        assertThat(report.getErrors(), is(empty()));
+        assertThat(report.getDataFlowFailures(), is(empty()));
+    }
+
+    @Test
+    public void testLazyProgram() {
+        Directory dir = new Directory(new File("target/test-classes/soba/testdata/"));
+        JavaProgram program = new JavaProgram(new IClassList[] { dir }, null, 1, true);
+        final List<MethodInfo> targets = new ArrayList<>();
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                if (m.hasMethodBody()) {
+                    targets.add(m);
+                }
+            }
+        }
+        final MethodInfo last = targets.get(targets.size() - 1);
+        final List<Boolean> lastLoaded = Collections.synchronizedList(new ArrayList<Boolean>());
+        FlowAnalysisDriver driver = new FlowAnalysisDriver(1);
+        driver.setListener(new IFlowAnalysisListener() {
+            @Override
+            public void methodAnalyzed(MethodInfo m, int completedCount, int totalCount) {
+                if (completedCount == 1) {
+                    // The caller thread does not parse the method bodies
+                    lastLoaded.add(last.isMethodBodyLoaded());
+                }
+            }
+
+            @Override
+            public void methodFailed(MethodInfo m, Exception error) {
+                fail(m.getMethodKey() + " " + error);
+            }
+        });
+        FlowAnalysisDriver.Report report = driver.analyze(targets);
+
+        assertThat(lastLoaded, is(Collections.singletonList(false)));
+        long instructions = 0;
+        for (MethodInfo m : targets) {
+            assertThat(m.hasFlowResult(), is(true));
+            instructions += m.getInstructionCount();
+        }
+        assertThat(report.getMethodCount(), is(targets.size()));
+        assertThat(report.getInstructionCount(), is(instructions));
+    }
+
+    @Test
+    public void testMethodFilter() {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        FlowAnalysisDriver driver = new FlowAnalysisDriver(2);
+        driver.setMethodFilter(new IMethodFilter() {
+            @Override
+            public boolean acceptMethod(MethodInfo m) {
+                return m.getClassName().equals(ExampleProgram.CLASS_C);
+            }
+        });
+        FlowAnalysisDriver.Report report = driver.analyze(program);
+
+        ClassInfo c = program.getClassInfo(ExampleProgram.CLASS_C);
+        int expected = 0;
+        for (MethodInfo m : c.getMethods()) {
+            if (m.hasMethodBody()) {
+                expected++;
+                assertThat(m.hasFlowResult(), is(true));
+            }
+        }
+        assertThat(report.getMethodCount(), is(expected));
+        assertThat(program.getClassInfo(ExampleProgram.CLASS_D).getMethods().get(0).hasFlowResult(), is(false));
+    }
+
+    @Test
+    public void testSharedGraphs() {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        new FlowAnalysisDriver(2).analyze(program);
+        MethodInfo m = program.getClassInfo(ExampleProgram.CLASS_C).getMethods().get(0);
+        assertThat(m.getControlFlow(), is(sameInstance(m.getControlFlow())));
+        assertThat(m.getControlDependence(), is(sameInstance(m.getControlDependence())));
+    }
+
+    @Test
+    public void testControlDependenceAlgorithm() {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        FlowAnalysisDriver driver = new FlowAnalysisDriver(2);
+        driver.setControlDependenceAlgorithm(ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER);
+        driver.analyze(program);
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                if (m.hasMethodBody()) {
+                    DirectedGraph expected = ControlDependence.getDependence(m.getInstructionCount(),
+                            m.getControlFlow(), ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER);
+                    DirectedGraph cd = m.getControlDependence();
+                    assertThat(cd, is(sameInstance(
+                            m.getControlDependence(ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER))));
+                    for (int v = 0; v < m.getInstructionCount(); ++v) {
+                        assertThat(cd.getEdges(v), is(expected.getEdges(v)));
+                    }
+                }
+            }
+        }
+
+        // Switching the algorithm keeps the control-flow graph
+        MethodInfo m = program.getClassInfo(ExampleProgram.CLASS_C).getMethods().get(0);
+        DirectedGraph controlFlow = m.getControlFlow();
+        DirectedGraph cd = m.getControlDependence(ControlDependence.Algorithm.REACHABILITY);
+        assertThat(m.getControlDependence(), is(sameInstance(cd)));
+        assertThat(m.getControlFlow(), is(sameInstance(controlFlow)));
+    }
+}
@@ -1,18 +1,31 @@
 package soba.core;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import soba.core.JavaProgram;
 import soba.util.files.Directory;
 import soba.util.files.IClassList;
+import soba.util.files.MappedZipFile;
+import soba.util.files.ZipFile;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class JavaProgramTest implements ExampleProgram {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private static JavaProgram program;
 
     public static JavaProgram readExampleProgram() {
@@ -50,4 +63,105 @@ public class JavaProgramTest implements ExampleProgram {
         assertThat(program.getClassInfo("NotExistClass"), is(nullValue()));
     }
 
+    @Test
+    public void testJavaProgramParallel() {
+        Directory dir = new Directory(new File("target/test-classes/soba/testdata/"));
+        JavaProgram parallel = new JavaProgram(new IClassList[] { dir }, null, 4);
+
+        assertThat(parallel.getClasses(), hasSize(program.getClasses().size()));
+        for (int i = 0; i < program.getClasses().size(); ++i) {
+            ClassInfo expected = program.getClasses().get(i);
+            ClassInfo actual = parallel.getClasses().get(i);
+            assertThat(actual.getClassName(), is(expected.getClassName()));
+            assertThat(actual.getHash(), is(expected.getHash()));
+        }
+        assertThat(parallel.getDuplicated(), is(empty()));
+        assertThat(parallel.getFiltered(), is(empty()));
+        assertThat(parallel.getErrors(), is(empty()));
+        assertThat(parallel.getClassHierarchy().getSuperClass(CLASS_D),
+                is(program.getClassHierarchy().getSuperClass(CLASS_D)));
+    }
+
+    @Test
+    public void testMemberSignatureTable() {
+        // Signature ids are scoped to a program
+        JavaProgram another = readExampleProgram();
+        ClassInfo c = program.getClassInfo(CLASS_C);
+        assertThat(c.getMemberSignatureTable(),
+                is(sameInstance(program.getClassInfo(CLASS_D).getMemberSignatureTable())));
+        assertThat(another.getClassInfo(CLASS_C).getMemberSignatureTable(),
+                is(not(sameInstance(c.getMemberSignatureTable()))));
+        MethodInfo m = c.getMethods().get(0);
+        assertThat(another.getClassInfo(CLASS_C).findMethod(m.getMethodName(), m.getDescriptor()).getMethodName(),
+                is(m.getMethodName()));
+    }
+
+    @Test
+    public void testCorruptClassEntry() throws IOException {
+        File[] classFiles = new File("target/test-classes/soba/testdata/").listFiles();
+        Arrays.sort(classFiles);
+        File jar = folder.newFile("corrupt.jar");
+        int classCount = 0;
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            // Copies of classes make the failure detected while the parallel mode is reading the archive
+            for (int copy = 0; copy < 10; ++copy) {
+                if (copy == 2) {
+                    out.putNextEntry(new ZipEntry("soba/Truncated.class"));
+                    out.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+                    out.closeEntry();
+                }
+                for (File f : classFiles) {
+                    if (ZipFile.isClassFile(f)) {
+                        out.putNextEntry(new ZipEntry("soba/copy" + copy + "/" + f.getName()));
+                        out.write(Files.readAllBytes(f.toPath()));
+                        out.closeEntry();
+                        if (copy == 0) {
+                            classCount++;
+                        }
+                    }
+                }
+            }
+            // A class file version unsupported by ASM
+            out.putNextEntry(new ZipEntry("soba/Unsupported.class"));
+            out.write(new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 99 });
+            out.closeEntry();
+        }
+
+        // A zip file stops reading the archive at the first class that cannot be parsed
+        JavaProgram sequential = new JavaProgram(new IClassList[] { new ZipFile(jar) });
+        assertThat(sequential.getClasses(), hasSize(classCount));
+        assertThat(sequential.getDuplicated(), hasSize(classCount));
+        assertThat(sequential.getErrors(), hasSize(1));
+        assertThat(sequential.getErrors().get(0).getDataName(), endsWith("soba/Truncated.class"));
+        for (int threads : new int[] { 1, 4 }) {
+            JavaProgram parallel = new JavaProgram(new IClassList[] { new ZipFile(jar) }, null, threads);
+            assertSameClasses(parallel, sequential);
+        }
+
+        // A mapped zip file records an error and continues
+        sequential = new JavaProgram(new IClassList[] { new MappedZipFile(jar) });
+        assertThat(sequential.getClasses(), hasSize(classCount));
+        assertThat(sequential.getDuplicated(), hasSize(classCount * 9));
+        assertThat(sequential.getErrors(), hasSize(2));
+        assertThat(sequential.getErrors().get(1).getDataName(), endsWith("soba/Unsupported.class"));
+        assertSameClasses(new JavaProgram(new IClassList[] { new MappedZipFile(jar) }, null, 4), sequential);
+
+        // The parallel mode continues with the next list
+        Directory dir = new Directory(new File("target/test-classes/soba/testdata/"));
+        IClassList[] lists = new IClassList[] { new ZipFile(jar), dir };
+        assertSameClasses(new JavaProgram(lists, null, 4), new JavaProgram(lists));
+    }
+
+    private static void assertSameClasses(JavaProgram actual, JavaProgram expected) {
+        assertThat(actual.getClasses(), hasSize(expected.getClasses().size()));
+        for (int i = 0; i < expected.getClasses().size(); ++i) {
+            assertThat(actual.getClasses().get(i).getClassName(), is(expected.getClasses().get(i).getClassName()));
+        }
+        assertThat(actual.getDuplicated(), hasSize(expected.getDuplicated().size()));
+        assertThat(actual.getErrors(), hasSize(expected.getErrors().size()));
+        for (int i = 0; i < expected.getErrors().size(); ++i) {
+            assertThat(actual.getErrors().get(i).getDataName(), is(expected.getErrors().get(i).getDataName()));
+        }
+    }
+
 }
@@ -73,4 +73,98 @@ public class ControlDependenceTest {
         assertThat(edgesFrom7, is(arrayContainingInAnyOrder(9, 10)));
     }
 
+    @Test
+    public void testPostDominanceFrontier() {
+        DirectedGraph g = buildControlFlowGraph();
+        DirectedGraph cd = ControlDependence.getDependence(14, g, ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER);
+
+        // Not a branch vertex
+        for (int v : new int[] { 0, 2, 4, 5, 8, 9, 10, 11, 12, 13 }) {
+            assertThat(UtilForAssertThat.asIntegerArray(cd.getEdges(v)), is(emptyArray()));
+        }
+
+        // Conditional branches. 5 and 8 depend on 6 but not on 3, as REACHABILITY.
+        DirectedGraph reachability = ControlDependence.getDependence(14, g);
+        for (int v = 0; v < 14; ++v) {
+            assertThat(cd.getEdges(v), is(reachability.getEdges(v)));
+        }
+        Integer[] edgesFrom3 = UtilForAssertThat.asIntegerArray(cd.getEdges(3));
+        assertThat(edgesFrom3, is(arrayContainingInAnyOrder(4, 6, 7, 11, 12)));
+    }
+
+    @Test
+    public void testDifferenceInChainOfBranches() {
+        // if (0) { if (1) { if (2) goto 5; } 3 } else { 5 } 6
+        IntPairList edges = new IntPairList();
+        edges.add(0, 1);
+        edges.add(0, 5);
+        edges.add(1, 2);
+        edges.add(1, 3);
+        edges.add(2, 3);
+        edges.add(2, 5);
+        edges.add(3, 6);
+        edges.add(5, 6);
+        DirectedGraph g = new DirectedGraph(7, edges);
+        DirectedGraph reachability = ControlDependence.getDependence(7, g, ControlDependence.Algorithm.REACHABILITY);
+        DirectedGraph frontier = ControlDependence.getDependence(7, g,
+                ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER);
+
+        // REACHABILITY removes 0->5 since 5 is reachable from the branch 1.
+        // The frontier keeps 0->5 since 5 depends on 2 but not on 1, and
+        // only a dependence implied by two dependencies is removed.
+        assertThat(UtilForAssertThat.asIntegerArray(reachability.getEdges(0)), is(arrayContaining(1)));
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(0)), is(arrayContaining(1, 5)));
+        for (int v = 1; v < 7; ++v) {
+            assertThat(frontier.getEdges(v), is(reachability.getEdges(v)));
+        }
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(1)), is(arrayContaining(2)));
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(2)), is(arrayContaining(3, 5)));
+    }
+
+    @Test
+    public void testDifferenceInLoopWithTwoExits() {
+        // do { if (!0) break; 1 } while (2); 3
+        IntPairList edges = new IntPairList();
+        edges.add(0, 1);
+        edges.add(0, 3);
+        edges.add(1, 2);
+        edges.add(2, 0);
+        edges.add(2, 3);
+        DirectedGraph g = new DirectedGraph(4, edges);
+        DirectedGraph reachability = ControlDependence.getDependence(4, g, ControlDependence.Algorithm.REACHABILITY);
+        DirectedGraph frontier = ControlDependence.getDependence(4, g,
+                ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER);
+
+        // REACHABILITY makes 1 depend on 2 since 1 is reachable from 2 through
+        // the back edge, and keeps the edge as 0 and 2 depend on each other.
+        // The frontier makes 1 depend on only 0.
+        assertThat(UtilForAssertThat.asIntegerArray(reachability.getEdges(2)), is(arrayContaining(0, 1)));
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(2)), is(arrayContaining(0)));
+        assertThat(frontier.getEdges(0), is(reachability.getEdges(0)));
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(0)), is(arrayContaining(1, 2)));
+    }
+
+    @Test
+    public void testSameDependenceWithoutLoops() {
+        // if (0) { if (2) { 3 } 4 } else { 5 } 6
+        IntPairList edges = new IntPairList();
+        edges.add(0, 1);
+        edges.add(0, 5);
+        edges.add(1, 2);
+        edges.add(2, 3);
+        edges.add(2, 4);
+        edges.add(3, 4);
+        edges.add(4, 6);
+        edges.add(5, 6);
+        DirectedGraph g = new DirectedGraph(7, edges);
+        DirectedGraph reachability = ControlDependence.getDependence(7, g, ControlDependence.Algorithm.REACHABILITY);
+        DirectedGraph frontier = ControlDependence.getDependence(7, g,
+                ControlDependence.Algorithm.POST_DOMINANCE_FRONTIER);
+        for (int v = 0; v < 7; ++v) {
+            assertThat(frontier.getEdges(v), is(reachability.getEdges(v)));
+        }
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(0)), is(arrayContaining(1, 2, 4, 5)));
+        assertThat(UtilForAssertThat.asIntegerArray(frontier.getEdges(2)), is(arrayContaining(3)));
+    }
+
 }
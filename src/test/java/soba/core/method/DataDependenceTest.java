@@ -5,17 +5,25 @@ import static org.hamcrest.Matchers.emptyArray;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.objectweb.asm.tree.analysis.Frame;
 
+import soba.core.ClassInfo;
 import soba.core.JavaProgram;
 import soba.core.JavaProgramTest;
 import soba.core.MethodInfo;
+import soba.core.method.asm.FastSourceInterpreter;
+import soba.core.method.asm.FastSourceValue;
 import soba.util.UtilForAssertThat;
 import soba.util.graph.DirectedGraph;
 
@@ -162,6 +170,100 @@ public class DataDependenceTest {
         assertThat(dd, is(notNullValue()));
     }
 
+    @Test
+    public void testFrameFreeRepresentation() {
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                DataDependence withFrames = FlowResult.analyze(m.getMethodNode(), true).getDataDependence();
+                DataDependence frameFree = FlowResult.analyze(m.getMethodNode()).getDataDependence();
+                if (withFrames == null) {
+                    assertThat(frameFree, is(nullValue()));
+                    continue;
+                }
+                assertThat(withFrames.hasFrames(), is(true));
+                assertThat(frameFree.hasFrames(), is(false));
+                assertThat(frameFree.getFrame(0), is(nullValue()));
+
+                List<DataFlowEdge> expected = new ArrayList<>(withFrames.getEdges());
+                Collections.sort(expected, new DataFlowEdge.SourceComparator());
+                List<DataFlowEdge> actual = frameFree.getEdgesInSourceOrder();
+                assertThat(actual, hasSize(expected.size()));
+                for (int i = 0; i < expected.size(); ++i) {
+                    assertThat(actual.get(i).toString(), is(expected.get(i).toString()));
+                }
+
+                for (int i = 0; i < m.getInstructionCount(); ++i) {
+                    int[][] def = frameFree.getDataDefinition(i);
+                    Frame<?> f = withFrames.getFrame(i);
+                    if (frameFree.useStack(i)) {
+                        int operands = frameFree.getOperandCount(i);
+                        assertThat(def.length, is(operands));
+                        for (int op = 0; op < operands; ++op) {
+                            FastSourceValue value = (FastSourceValue) f.getStack(f.getStackSize() - operands + op);
+                            assertArrayEquals(value.getInstructions(), def[op]);
+                        }
+                    } else if (def.length > 0) {
+                        FastSourceValue value = (FastSourceValue) f
+                                .getLocal(OpcodeString.getVarIndex(frameFree.getInstruction(i)));
+                        assertArrayEquals(value.getInstructions(), def[0]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexedEdges() {
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                DataDependence dd = m.getDataDependence();
+                if (dd == null) {
+                    continue;
+                }
+                List<DataFlowEdge> edges = dd.getEdges();
+                for (int i = 0; i < m.getInstructionCount(); ++i) {
+                    List<DataFlowEdge> incoming = new ArrayList<>();
+                    List<DataFlowEdge> outgoing = new ArrayList<>();
+                    for (DataFlowEdge e : edges) {
+                        if (e.getDestinationInstruction() == i) {
+                            incoming.add(e);
+                        }
+                        if (e.getSourceInstruction() == i) {
+                            outgoing.add(e);
+                        }
+                    }
+                    assertThat(dd.getIncomingEdges(i), is(incoming));
+                    assertThat(dd.getOutgoingEdges(i), is(outgoing));
+                    for (int op = 0; op < Math.max(dd.getOperandCount(i), 1); ++op) {
+                        List<DataFlowEdge> operandEdges = new ArrayList<>();
+                        for (DataFlowEdge e : incoming) {
+                            if (e.getDestinationOperandIndex() == op) {
+                                operandEdges.add(e);
+                            }
+                        }
+                        assertThat(dd.getIncomingEdges(i, op), is(operandEdges));
+                        if (!operandEdges.isEmpty()) {
+                            assertThat(dd.getIncomingEdge(i, op), is(operandEdges.get(0)));
+                        }
+                    }
+                }
+                List<DataFlowEdge> parameters = new ArrayList<>();
+                for (DataFlowEdge e : edges) {
+                    if (e.getSourceInstruction() == FastSourceInterpreter.METHOD_ENTRY) {
+                        parameters.add(e);
+                    }
+                }
+                assertThat(dd.getOutgoingEdges(FastSourceInterpreter.METHOD_ENTRY), is(parameters));
+            }
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIncomingEdgeOutOfRange() {
+        MethodInfo m = program.getClassInfo("soba/testdata/DefUseTestData").findMethod("overwriteParam", "(II)V");
+        m.getDataDependence().getIncomingEdge(11, 2);
+    }
+
     private boolean containsEdge(List<DataFlowEdge> edges, int from, int to) {
         for (DataFlowEdge e : edges) {
             if (e.getSourceInstruction() == from && e.getDestinationInstruction() == to) {
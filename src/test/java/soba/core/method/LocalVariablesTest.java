@@ -128,4 +128,34 @@ public class LocalVariablesTest {
         }
     }
 
+    @Test
+    public void testEntriesOfEdges() {
+        for (ClassInfo classInfo : program.getClasses()) {
+            for (MethodInfo m : classInfo.getMethods()) {
+                DataDependence dd = m.getDataDependence();
+                if (dd == null) {
+                    continue;
+                }
+                LocalVariables locals = dd.getLocalVariables();
+                for (DataFlowEdge e : dd.getEdges()) {
+                    if (e.isLocal()) {
+                        int entry = locals.findEntryForInstruction(e.getDestinationInstruction());
+                        assertThat(entry, is(not(-1)));
+                        assertThat(locals.getVariableIndex(entry), is(e.getVariableIndex()));
+                        assertThat(locals.hasNoDataDependence(entry), is(false));
+                        if (!e.isParameter()) {
+                            int sourceEntry = locals.findEntryForInstruction(e.getSourceInstruction());
+                            assertThat(locals.getVariableIndex(sourceEntry), is(e.getVariableIndex()));
+                        }
+                    }
+                }
+                for (int i = 0; i < m.getInstructionCount(); ++i) {
+                    if (OpcodeString.isStoreOperation(m.getMethodNode().instructions.get(i))) {
+                        assertThat(locals.findEntryForInstruction(i), is(not(-1)));
+                    }
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,44 @@
+package soba.core.vta;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.Test;
+
+import soba.core.ClassInfo;
+import soba.core.ExampleProgram;
+import soba.core.JavaProgram;
+import soba.core.JavaProgramTest;
+import soba.core.MethodInfo;
+
+public class CallTargetTableTest implements ExampleProgram {
+
+    @Test
+    public void testPutAndGet() {
+        JavaProgram program = JavaProgramTest.readExampleProgram();
+        ClassInfo c = program.getClassInfo(CLASS_D);
+        MethodInfo[] one = new MethodInfo[] { c.getMethod(0) };
+        MethodInfo[] two = new MethodInfo[] { c.getMethod(0), c.getMethod(1) };
+
+        CallTargetTable table = new CallTargetTable(1);
+        for (int methodId = 0; methodId < 100; ++methodId) {
+            for (int instruction = 0; instruction < 10; ++instruction) {
+                MethodInfo[] methods = (instruction % 2 == 0) ? one : two;
+                // An equal array is shared
+                table.put(methodId, instruction, methods.clone());
+            }
+        }
+        assertThat(table.size(), is(1000));
+        assertThat(table.getTargetCount(), is(2));
+        assertThat(table.get(42, 4), is(one));
+        assertThat(table.get(42, 5), is(two));
+        assertThat(table.get(3, 4), is(sameInstance(table.get(99, 8))));
+        assertThat(table.get(100, 0), is(nullValue()));
+        assertThat(table.get(0, 10), is(nullValue()));
+
+        // Overwrite an entry
+        table.put(42, 4, two);
+        assertThat(table.size(), is(1000));
+        assertThat(table.get(42, 4), is(two));
+    }
+}
@@ -0,0 +1,180 @@
+package soba.core.vta;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TypeSetManagerTest {
+
+    @Test
+    public void testHashConsing() {
+        TypeSetManager manager = new TypeSetManager();
+        int empty = manager.getEmptyId();
+        assertThat(manager.getId(""), is(empty));
+        assertThat(manager.getStrings(empty), is(emptyArray()));
+
+        int b = manager.getId("pkg/B");
+        int a = manager.getId("pkg/A");
+        assertThat(manager.getId("pkg/A"), is(a));
+        assertThat(a, is(not(b)));
+
+        int ab = manager.merge(b, a);
+        assertThat(manager.merge(a, b), is(ab));
+        assertThat(manager.getStrings(ab), is(arrayContaining("pkg/A", "pkg/B")));
+        assertThat(manager.getId(new String[] { "pkg/B", "pkg/A", "pkg/B" }), is(ab));
+        assertThat(manager.merge(ab, a), is(ab));
+        assertThat(manager.merge(empty, ab), is(ab));
+        assertThat(manager.merge(ab, ab), is(ab));
+
+        int c = manager.getId("pkg/C");
+        int abc1 = manager.merge(ab, c);
+        int abc2 = manager.merge(a, manager.merge(b, c));
+        assertThat(abc1, is(abc2));
+        assertThat(manager.getTypeCount(abc1), is(3));
+        assertThat(manager.contains(abc1, "pkg/C"), is(true));
+        assertThat(manager.contains(ab, "pkg/C"), is(false));
+        assertThat(manager.contains(ab, "pkg/Unknown"), is(false));
+
+        // A|B, B|C and A|B|C in addition to single types
+        assertThat(manager.size(), is(5 * 3 + 11 + 11 + 17));
+    }
+
+    @Test
+    public void testLargeSets() {
+        TypeSetManager manager = new TypeSetManager();
+        List<String> names = new ArrayList<>();
+        int all = manager.getEmptyId();
+        for (int i = 99; i >= 0; --i) {
+            String name = String.format("pkg/T%03d", i);
+            names.add(0, name);
+            all = manager.merge(all, manager.getId(name));
+        }
+        assertThat(manager.getStrings(all), is(names.toArray(new String[0])));
+        for (String name : names) {
+            assertThat(manager.contains(all, name), is(true));
+        }
+        assertThat(manager.contains(all, "pkg/T100"), is(false));
+
+        TypeSet types = new TypeSet(manager, "pkg/T000").addType("pkg/T050");
+        assertThat(types.getTypeCount(), is(2));
+        assertThat(types.contains("pkg/T050"), is(true));
+        assertThat(types.contains("pkg/T001"), is(false));
+        assertThat(types.getType(1), is("pkg/T050"));
+    }
+
+    @Test
+    public void testMergeCache() {
+        TypeSetManager cached = new TypeSetManager(3);
+        TypeSetManager uncached = new TypeSetManager(0);
+        assertThat(cached.getMergeCacheSize(), is(4));
+        assertThat(uncached.getMergeCacheSize(), is(0));
+
+        int[] sets = new int[20];
+        int[] expected = new int[20];
+        for (int i = 0; i < sets.length; ++i) {
+            sets[i] = cached.getId("pkg/T" + i);
+            expected[i] = uncached.getId("pkg/T" + i);
+        }
+        for (int repeat = 0; repeat < 2; ++repeat) {
+            for (int i = 1; i < sets.length; ++i) {
+                int merged = cached.merge(sets[i - 1], sets[i]);
+                int expectedMerged = uncached.merge(expected[i - 1], expected[i]);
+                assertThat(cached.getStrings(merged), is(uncached.getStrings(expectedMerged)));
+            }
+        }
+        assertThat(cached.getMergeCount(), is(38L));
+        assertThat(cached.getMergeCacheEvictionCount(), is(greaterThan(0L)));
+        assertThat(uncached.getMergeCacheHitCount(), is(0L));
+
+        // The same merge is answered by the cache
+        int m = cached.merge(sets[0], sets[19]);
+        long hits = cached.getMergeCacheHitCount();
+        assertThat(cached.merge(sets[19], sets[0]), is(m));
+        assertThat(cached.getMergeCacheHitCount(), is(hits + 1));
+
+        cached.discardMergeCache();
+        assertThat(cached.getMergeCacheSize(), is(0));
+        assertThat(cached.merge(sets[0], sets[19]), is(m));
+        assertThat(cached.getMergeCacheHitCount(), is(hits + 1));
+    }
+
+    @Test
+    public void testConcurrentMerge() throws Exception {
+        final TypeSetManager manager = new TypeSetManager(64);
+        final int[] singles = new int[64];
+        for (int i = 0; i < singles.length; ++i) {
+            singles[i] = manager.getId("pkg/T" + i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                results.add(executor.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        // prefix[i] = {T0, ..., Ti}
+                        int[] prefix = new int[singles.length];
+                        prefix[0] = singles[0];
+                        for (int i = 1; i < singles.length; ++i) {
+                            prefix[i] = manager.merge(prefix[i - 1], singles[i]);
+                        }
+                        return prefix;
+                    }
+                }));
+            }
+            int[] expected = results.get(0).get();
+            for (Future<int[]> r : results) {
+                assertThat(r.get(), is(expected));
+            }
+            for (int i = 0; i < expected.length; ++i) {
+                assertThat(manager.getTypeCount(expected[i]), is(i + 1));
+                assertThat(manager.contains(expected[i], "pkg/T" + i), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentViews() throws Exception {
+        final TypeSetManager manager = new TypeSetManager();
+        final int[] prefix = new int[64];
+        prefix[0] = manager.getId("pkg/T0");
+        for (int i = 1; i < prefix.length; ++i) {
+            prefix[i] = manager.merge(prefix[i - 1], manager.getId("pkg/T" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 4; ++t) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        boolean ok = true;
+                        for (int i = prefix.length - 1; i >= 0; --i) {
+                            ok &= manager.getStrings(prefix[i]).length == i + 1;
+                            ok &= manager.contains(prefix[i], "pkg/T" + i);
+                            ok &= !manager.contains(prefix[i], "pkg/T" + (i + 1));
+                        }
+                        return ok;
+                    }
+                }));
+            }
+            for (Future<Boolean> r : results) {
+                assertThat(r.get(), is(true));
+            }
+            // Views are created once and shared
+            assertThat(manager.getStrings(prefix[63]), is(sameInstance(manager.getStrings(prefix[63]))));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -3,8 +3,14 @@ package soba.core.vta;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -12,25 +18,33 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodInsnNode;
 
+import soba.core.ClassHierarchy;
 import soba.core.ClassInfo;
 import soba.core.ExampleProgram;
 import soba.core.FieldInfo;
+import soba.core.IClassFilter;
 import soba.core.JavaProgram;
 import soba.core.JavaProgramTest;
 import soba.core.MethodInfo;
+import soba.core.method.CallSite;
 import soba.core.vta.IAnalysisTarget;
 import soba.core.vta.TypeSet;
 import soba.core.vta.VTAResolver;
+import soba.util.files.Directory;
+import soba.util.files.IClassList;
 
 public class VTAResolverTest implements ExampleProgram {
 
+    private static final String TESTDATA = "target/test-classes/soba/testdata/";
+
     private static JavaProgram program;
+    private static IAnalysisTarget target;
     private static VTAResolver resolver;
 
     @BeforeClass
     public static void setupResolver() {
         program = JavaProgramTest.readExampleProgram();
-        resolver = new VTAResolver(program, new IAnalysisTarget() {
+        target = new IAnalysisTarget() {
             @Override
             public boolean assumeExternalCallers(MethodInfo m) {
                 return false;
@@ -50,7 +64,8 @@ public class VTAResolverTest implements ExampleProgram {
             public boolean isTargetField(FieldInfo f) {
                 return true;
             }
-        });
+        };
+        resolver = new VTAResolver(program, target);
     }
 
     private void checkClasses(MethodInfo[] resolved, String... classNames) {
@@ -257,4 +272,174 @@ public class VTAResolverTest implements ExampleProgram {
         }
         assertThat(counter, is(1));
     }
+
+    @Test
+    public void testParallelPropagation() {
+        // The example program is too small for the default threshold
+        VTAResolver parallel = new VTAResolver(program, target, 4, 8);
+        assertThat(parallel.getParallelLevelCount(), is(greaterThan(0)));
+        assertThat(resolver.getParallelLevelCount(), is(0));
+        int callSites = 0;
+        for (ClassInfo c : program.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                for (CallSite cs : m.getCallSites()) {
+                    assertThat(parallel.resolveCall(cs), is(resolver.resolveCall(cs)));
+                    callSites++;
+                }
+            }
+        }
+        assertThat(callSites, is(greaterThan(0)));
+    }
+
+    @Test
+    public void testCallTargetTable() {
+        JavaProgram frozen = JavaProgramTest.readExampleProgram();
+        frozen.getClassHierarchy().freeze();
+        VTAResolver expected = new VTAResolver(frozen, target);
+        VTAResolver precomputed = new VTAResolver(frozen, target);
+        assertThat(precomputed.getCallTargetTableSize(), is(0));
+        precomputed.precomputeCallTargets(4);
+        assertThat(precomputed.getCallTargetTableSize(), is(greaterThan(0)));
+
+        int callSites = 0;
+        for (ClassInfo c : frozen.getClasses()) {
+            for (MethodInfo m : c.getMethods()) {
+                for (CallSite cs : m.getCallSites()) {
+                    MethodInfo[] methods = precomputed.resolveCall(cs);
+                    assertThat(methods, is(expected.resolveCall(cs)));
+                    // The table returns the same array
+                    assertThat(precomputed.resolveCall(cs), is(sameInstance(methods)));
+                    callSites++;
+                }
+            }
+        }
+        assertThat(callSites, is(greaterThan(0)));
+        assertThat(precomputed.getCallTargetTableSize(), is(lessThanOrEqualTo(callSites)));
+    }
+
+    @Test
+    public void testDemandDrivenResolution() {
+        VTAResolver demand = VTAResolver.createDemandDrivenResolver(program, target);
+        assertThat(demand.isDemandDriven(), is(true));
+        assertThat(resolver.isDemandDriven(), is(false));
+
+        // Queries before the other methods are built
+        ClassInfo c = program.getClassInfo(CLASS_E);
+        MethodInfo m = c.findMethod("testDynamicBinding1", "()V");
+        for (CallSite cs : m.getCallSites()) {
+            assertThat(demand.resolveCall(cs), is(resolver.resolveCall(cs)));
+        }
+        MethodInfo param = c.findMethod("testDynamicBinding4", "(Lsoba/testdata/inheritance1/C;)V");
+        assertThat(demand.getMethodParamType(param, 1).getTypeCount(), is(2));
+
+        int callSites = 0;
+        for (ClassInfo c2 : program.getClasses()) {
+            for (MethodInfo m2 : c2.getMethods()) {
+                for (CallSite cs : m2.getCallSites()) {
+                    assertThat(demand.resolveCall(cs), is(resolver.resolveCall(cs)));
+                    callSites++;
+                }
+            }
+        }
+        assertThat(callSites, is(greaterThan(0)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDemandDrivenUpdate() {
+        VTAResolver demand = VTAResolver.createDemandDrivenResolver(program, target);
+        List<ClassInfo> none = Collections.emptyList();
+        demand.update(program.getClassHierarchy(), none, none, none);
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        JavaProgram reduced = new JavaProgram(new IClassList[] { new Directory(new File(TESTDATA)) },
+                new IClassFilter() {
+                    @Override
+                    public boolean loadClass(String dataName) {
+                        return true;
+                    }
+
+                    @Override
+                    public boolean acceptClass(ClassInfo c) {
+                        return !c.getClassName().equals(CLASS_G);
+                    }
+                });
+        VTAResolver incremental = new VTAResolver(reduced, target);
+        List<ClassInfo> classes = new ArrayList<>(reduced.getClasses());
+        List<ClassInfo> none = Collections.emptyList();
+
+        // Add a class
+        ClassInfo g = readClass(CLASS_G);
+        classes.add(g);
+        int updated = incremental.update(createHierarchy(classes), Collections.singletonList(g), none, none);
+        assertThat(updated, is(greaterThan(0)));
+        // The merge cache is kept for updates
+        assertThat(incremental.getTypeSetManager().getMergeCacheSize(), is(TypeSetManager.DEFAULT_MERGE_CACHE_SIZE));
+        checkSameResult(resolver, program, incremental, classes);
+
+        // Remove the class
+        classes.remove(g);
+        incremental.update(createHierarchy(classes), none, Collections.singletonList(g), none);
+        VTAResolver fresh = new VTAResolver(reduced, target);
+        checkSameResult(fresh, reduced, incremental, classes);
+        MethodInfo m = reduced.getClassInfo(CLASS_E).findMethod("testDynamicBinding1", "()V");
+        for (CallSite cs : m.getCallSites()) {
+            assertThat(incremental.resolveCall(cs), is(fresh.resolveCall(cs)));
+        }
+
+        // Change a class
+        ClassInfo d = readClass(CLASS_D);
+        classes.set(classes.indexOf(reduced.getClassInfo(CLASS_D)), d);
+        incremental.update(createHierarchy(classes), none, none, Collections.singletonList(d));
+        checkSameResult(fresh, reduced, incremental, classes);
+    }
+
+    private static ClassInfo readClass(String className) throws IOException {
+        File f = new File(TESTDATA, className.substring("soba/testdata/".length()) + ".class");
+        return new ClassInfo(f.getPath(), Files.readAllBytes(f.toPath()));
+    }
+
+    private static ClassHierarchy createHierarchy(List<ClassInfo> classes) {
+        ClassHierarchy h = new ClassHierarchy();
+        for (ClassInfo c : classes) {
+            h.registerClass(c);
+        }
+        return h;
+    }
+
+    /**
+     * Compares the results of two resolvers for different
+     * <code>ClassInfo</code> objects of the same classes.
+     */
+    private void checkSameResult(VTAResolver expected, JavaProgram expectedProgram, VTAResolver actual,
+            List<ClassInfo> actualClasses) {
+        Map<String, ClassInfo> classMap = new HashMap<>();
+        for (ClassInfo c : actualClasses) {
+            classMap.put(c.getClassName(), c);
+        }
+        assertThat(classMap.size(), is(expectedProgram.getClasses().size()));
+        int callSites = 0;
+        for (ClassInfo c : expectedProgram.getClasses()) {
+            ClassInfo actualClass = classMap.get(c.getClassName());
+            for (MethodInfo m : c.getMethods()) {
+                MethodInfo actualMethod = actualClass.findMethod(m.getMethodName(), m.getDescriptor());
+                for (CallSite cs : m.getCallSites()) {
+                    CallSite actualCallSite = actualMethod.getCallSite(cs.getInstructionIndex());
+                    assertThat(getMethodKeys(actual.resolveCall(actualCallSite)),
+                            is(getMethodKeys(expected.resolveCall(cs))));
+                    callSites++;
+                }
+            }
+        }
+        assertThat(callSites, is(greaterThan(0)));
+    }
+
+    private static List<String> getMethodKeys(MethodInfo[] methods) {
+        List<String> keys = new ArrayList<>();
+        for (MethodInfo m : methods) {
+            keys.add(m.getMethodKey());
+        }
+        return keys;
+    }
 }
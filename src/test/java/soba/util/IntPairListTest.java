@@ -177,4 +177,26 @@ public class IntPairListTest {
             }
         });
     }
+
+    @Test
+    public void testNegativeSecondValue() throws Exception {
+        IntPairList list = new IntPairList();
+        list.add(3, -1);
+        list.add(2, 7);
+        list.add(-1, -5);
+        list.add(2, Integer.MIN_VALUE);
+        assertThat(list.getFirstValue(0), is(3));
+        assertThat(list.getSecondValue(0), is(-1));
+
+        list.sort();
+        assertThat(list.getFirstValue(0), is(-1));
+        assertThat(list.getSecondValue(0), is(-5));
+        assertThat(list.getFirstValue(1), is(2));
+        assertThat(list.getSecondValue(1), is(7));
+        assertThat(list.getFirstValue(2), is(2));
+        assertThat(list.getSecondValue(2), is(Integer.MIN_VALUE));
+        assertThat(list.getFirstValue(3), is(3));
+        assertThat(list.getSecondValue(3), is(-1));
+    }
+
 }
@@ -85,4 +85,57 @@ public class IntPairSetTest {
         assertThat(visited41, is(true));
     }
 
+    @Test
+    public void testLargeSet() {
+        IntPairSet set = new IntPairSet();
+        for (int i = 0; i < 1000; ++i) {
+            set.add(i % 37, -i);
+            set.add(i % 37, -i);
+        }
+        set.add(Integer.MIN_VALUE, 0);
+        set.add(0, Integer.MIN_VALUE);
+        assertThat(set.size(), is(1002));
+        for (int i = 0; i < 1000; ++i) {
+            assertThat(set.contains(i % 37, -i), is(true));
+            assertThat(set.contains(i % 37, i + 1), is(false));
+        }
+        assertThat(set.contains(Integer.MIN_VALUE, 0), is(true));
+        assertThat(set.contains(0, Integer.MIN_VALUE), is(true));
+        assertThat(set.contains(Integer.MIN_VALUE, 1), is(false));
+        assertThat(set.containsFirst(36), is(true));
+        assertThat(set.containsFirst(Integer.MIN_VALUE), is(true));
+        assertThat(set.containsFirst(37), is(false));
+
+        IntPairList list = set.toSortedList();
+        assertThat(list.size(), is(1002));
+        assertThat(list.getFirstValue(0), is(Integer.MIN_VALUE));
+        assertThat(list.getSecondValue(0), is(0));
+        for (int i = 1; i < list.size(); ++i) {
+            int first = list.getFirstValue(i);
+            int second = list.getSecondValue(i);
+            assertThat(set.contains(first, second), is(true));
+            assertThat(first, is(greaterThanOrEqualTo(list.getFirstValue(i - 1))));
+        }
+        list.add(100, 100);
+        assertThat(list.size(), is(1003));
+    }
+
+    @Test
+    public void testForEachStop() {
+        IntPairSet set = new IntPairSet();
+        for (int i = 0; i < 10; ++i) {
+            set.add(i, i);
+        }
+        final int[] count = new int[1];
+        set.foreach(new IntPairProc() {
+            @Override
+            public boolean execute(int elem1, int elem2) {
+                count[0]++;
+                return count[0] < 3;
+            }
+        });
+        assertThat(count[0], is(3));
+        assertThat(new IntPairSet().toSortedList().size(), is(0));
+    }
+
 }
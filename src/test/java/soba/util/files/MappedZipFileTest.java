@@ -0,0 +1,164 @@
+package soba.util.files;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import soba.core.JavaProgram;
+
+public class MappedZipFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final File TESTDATA = new File("target/test-classes/soba/testdata/");
+
+    private File createJar() throws IOException {
+        File[] classFiles = TESTDATA.listFiles();
+        Arrays.sort(classFiles);
+
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(nested)) {
+            out.putNextEntry(new ZipEntry("nested/Nested.class"));
+            out.write(Files.readAllBytes(classFiles[0].toPath()));
+            out.closeEntry();
+        }
+
+        File jar = folder.newFile("test.war");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("soba/"));
+            out.closeEntry();
+            for (File f : classFiles) {
+                if (ZipFile.isClassFile(f)) {
+                    out.putNextEntry(new ZipEntry("soba/" + f.getName()));
+                    out.write(Files.readAllBytes(f.toPath()));
+                    out.closeEntry();
+                }
+            }
+            out.putNextEntry(new ZipEntry("README.txt"));
+            out.write("readme".getBytes("UTF-8"));
+            out.closeEntry();
+
+            byte[] nestedBytes = nested.toByteArray();
+            ZipEntry stored = new ZipEntry("lib/nested.jar");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(nestedBytes.length);
+            stored.setCompressedSize(nestedBytes.length);
+            CRC32 crc = new CRC32();
+            crc.update(nestedBytes);
+            stored.setCrc(crc.getValue());
+            out.putNextEntry(stored);
+            out.write(nestedBytes);
+            out.closeEntry();
+        }
+        return jar;
+    }
+
+    private static Map<String, byte[]> readAll(IClassList list) {
+        final Map<String, byte[]> result = new LinkedHashMap<>();
+        list.process(new IClassListCallback() {
+            @Override
+            public boolean isTarget(String name) {
+                return ZipFile.isClassFile(name);
+            }
+
+            @Override
+            public void process(String name, InputStream stream) throws IOException {
+                result.put(name, FileUtil.readFully(stream));
+            }
+
+            @Override
+            public boolean reportError(String name, Exception e) {
+                fail(name + " " + e);
+                return true;
+            }
+        });
+        return result;
+    }
+
+    @Test
+    public void testProcess() throws IOException {
+        File jar = createJar();
+        Map<String, byte[]> expected = readAll(new ZipFile(jar));
+        Map<String, byte[]> actual = readAll(new MappedZipFile(jar));
+
+        assertThat(actual.size(), is(greaterThan(0)));
+        assertThat(new ArrayList<>(actual.keySet()), is(new ArrayList<>(expected.keySet())));
+        for (String name : expected.keySet()) {
+            assertThat(Arrays.equals(actual.get(name), expected.get(name)), is(true));
+        }
+    }
+
+    @Test
+    public void testRecursiveSearch() throws IOException {
+        File jar = createJar();
+        ZipFile zip = new ZipFile(jar);
+        zip.enableRecursiveSearch();
+        MappedZipFile mapped = new MappedZipFile(jar);
+        mapped.enableRecursiveSearch();
+
+        Map<String, byte[]> expected = readAll(zip);
+        Map<String, byte[]> actual = readAll(mapped);
+        String nestedName = jar.getAbsolutePath() + "/lib/nested.jar/nested/Nested.class";
+        assertThat(actual.keySet(), hasItem(nestedName));
+        assertThat(new ArrayList<>(actual.keySet()), is(new ArrayList<>(expected.keySet())));
+        assertThat(Arrays.equals(actual.get(nestedName), expected.get(nestedName)), is(true));
+    }
+
+    @Test
+    public void testListEntries() throws IOException {
+        File jar = createJar();
+        MappedZipFile mapped = new MappedZipFile(jar);
+        List<MappedZipFile.Entry> entries = mapped.listEntries(new IClassListCallback() {
+            @Override
+            public boolean isTarget(String name) {
+                return name.equals("README.txt");
+            }
+
+            @Override
+            public void process(String name, InputStream stream) {
+            }
+
+            @Override
+            public boolean reportError(String name, Exception e) {
+                return true;
+            }
+        });
+        assertThat(entries, hasSize(1));
+        assertThat(entries.get(0).getEntryName(), is("README.txt"));
+        assertThat(new String(entries.get(0).read(), "UTF-8"), is("readme"));
+    }
+
+    @Test
+    public void testParallelJavaProgram() throws IOException {
+        File jar = createJar();
+        JavaProgram sequential = new JavaProgram(new IClassList[] { new MappedZipFile(jar) });
+        JavaProgram parallel = new JavaProgram(new IClassList[] { new MappedZipFile(jar) }, null, 4);
+
+        assertThat(sequential.getClasses(), is(not(empty())));
+        assertThat(parallel.getClasses(), hasSize(sequential.getClasses().size()));
+        for (int i = 0; i < sequential.getClasses().size(); ++i) {
+            assertThat(parallel.getClasses().get(i).getClassName(),
+                    is(sequential.getClasses().get(i).getClassName()));
+        }
+        assertThat(parallel.getErrors(), is(empty()));
+    }
+}
@@ -3,6 +3,8 @@ package soba.util.graph;
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -103,4 +105,35 @@ public class DepthFirstSearchTest {
         });
     }
 
+    @Test
+    public void testIterator() throws Exception {
+        DepthFirstSearch dfs = new DepthFirstSearch(graph);
+        assertThat(visitAll(dfs, 7, 99), is(new int[] { 7, 8, 5, 6, 9, 11, 12, 10 }));
+        assertThat(dfs.isVisited(5), is(true));
+        assertThat(dfs.isVisited(0), is(false));
+
+        // The instance is reused without clearing visit marks
+        assertThat(visitAll(dfs, 0, 7), is(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 }));
+        assertThat(dfs.isVisited(11), is(false));
+        assertThat(visitAll(dfs, 13, 99), is(new int[] { 13 }));
+        assertThat(dfs.isVisited(0), is(false));
+        assertThat(visitAll(dfs, 3, 2), is(new int[] { 3 }));
+    }
+
+    /**
+     * @return vertices visited in pre-order. Edges from vertices greater than
+     *         maxExpanded are pruned.
+     */
+    private static int[] visitAll(DepthFirstSearch dfs, int start, int maxExpanded) {
+        TIntArrayList visited = new TIntArrayList();
+        dfs.start(start);
+        for (int v = dfs.next(); v != DepthFirstSearch.FINISHED; v = dfs.next()) {
+            visited.add(v);
+            if (v > maxExpanded) {
+                dfs.prune();
+            }
+        }
+        return visited.toArray();
+    }
+
 }
@@ -7,6 +7,8 @@ import gnu.trove.list.array.TIntArrayList;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import soba.util.IntPairList;
+import soba.util.IntPairProc;
 import soba.util.UtilForAssertThat;
 
 public class DirectedGraphTest {
@@ -126,4 +128,50 @@ public class DirectedGraphTest {
 
         assertThat(g.getEdgeCount(), is(32));
     }
+
+    @Test
+    public void testCompressedEdges() {
+        IntPairList edges = new IntPairList();
+        edges.add(2, 0);
+        edges.add(0, 3);
+        edges.add(0, 1);
+        edges.add(2, 0); // duplicated
+        edges.add(0, 3); // duplicated
+        edges.add(3, 3);
+        DirectedGraph g = new DirectedGraph(5, edges);
+        assertThat(g.getEdgeCount(), is(4));
+
+        assertThat(g.getOutDegree(0), is(2));
+        assertThat(g.getEdge(0, 0), is(1));
+        assertThat(g.getEdge(0, 1), is(3));
+        assertThat(g.getOutDegree(1), is(0));
+        assertThat(g.getEdges(1), is(new int[0]));
+        assertThat(g.getEdges(2), is(new int[] { 0 }));
+        assertThat(g.getEdges(3), is(new int[] { 3 }));
+        assertThat(g.getOutDegree(4), is(0));
+        assertThat(g.hasEdge(0, 3), is(true));
+        assertThat(g.hasEdge(3, 0), is(false));
+        assertThat(g.hasEdge(4, 0), is(false));
+
+        final IntPairList visited = new IntPairList();
+        g.forEachEdge(new IntPairProc() {
+            @Override
+            public boolean execute(int from, int to) {
+                visited.add(from, to);
+                return true;
+            }
+        });
+        assertThat(visited.size(), is(4));
+        assertThat(visited.getFirstValue(0), is(0));
+        assertThat(visited.getSecondValue(0), is(1));
+        assertThat(visited.getFirstValue(1), is(0));
+        assertThat(visited.getSecondValue(1), is(3));
+        assertThat(visited.getFirstValue(2), is(2));
+        assertThat(visited.getFirstValue(3), is(3));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testEdgeIndexOutOfBounds() {
+        graph.getEdge(0, graph.getOutDegree(0));
+    }
 }
@@ -0,0 +1,119 @@
+package soba.util.graph;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import soba.util.IntPairList;
+
+public class StronglyConnectedComponentsTest {
+
+    @Test
+    public void testTarjan() {
+        int[] sccIds = StronglyConnectedComponents.compute(GraphTestBase.buildGraph());
+        assertThat(sccIds, is(new int[] { 0, 0, 0, 3, 4, 5, 5, 5, 5, 9, 10, 11, 12, 13 }));
+    }
+
+    @Test
+    public void testLongCycle() {
+        // A recursive DFS overflows the call stack.
+        int n = 1000000;
+        IntPairList edges = new IntPairList(n);
+        for (int i = 0; i < n; ++i) {
+            edges.add(i, (i + 1) % n);
+        }
+        DirectedAcyclicGraph dag = new DirectedAcyclicGraph(new DirectedGraph(n, edges));
+        assertThat(dag.getRepresentativeNode(n - 1), is(0));
+        assertThat(dag.isRepresentativeNode(0), is(true));
+        assertThat(dag.getOutDegree(0), is(0));
+    }
+
+    @Test
+    public void testCondense() {
+        IntPairList edges = new IntPairList();
+        edges.add(0, 1);
+        edges.add(1, 0);
+        edges.add(0, 2);
+        edges.add(1, 2); // merged into 0->2
+        edges.add(2, 3);
+        edges.add(3, 2);
+        edges.add(3, 4);
+        DirectedGraph g = StronglyConnectedComponents.condense(new DirectedGraph(5, edges),
+                new int[] { 0, 0, 2, 2, 4 });
+        assertThat(g.getEdgeCount(), is(2));
+        assertThat(g.getEdges(0), is(new int[] { 2 }));
+        assertThat(g.getEdges(1), is(new int[0]));
+        assertThat(g.getEdges(2), is(new int[] { 4 }));
+        assertThat(g.getEdges(3), is(new int[0]));
+    }
+
+    @Test
+    public void testForwardBackward() {
+        Random random = new Random(0);
+        for (int n : new int[] { 100, 20000, 100000 }) {
+            // Small cycles connected by random edges
+            IntPairList edges = new IntPairList();
+            for (int i = 0; i < n; ++i) {
+                if (i % 10 != 9) {
+                    edges.add(i, i + 1);
+                } else {
+                    edges.add(i, i - 9);
+                }
+                edges.add(i, random.nextInt(n));
+            }
+            DirectedGraph g = new DirectedGraph(n, edges);
+            int[] expected = StronglyConnectedComponents.compute(g);
+            int[] actual = StronglyConnectedComponents.computeInParallel(g, 4);
+            assertThat(actual, is(toMinimumRepresentatives(expected)));
+
+            for (int v = 0; v < n; ++v) {
+                assertThat(actual[v], is(lessThanOrEqualTo(v)));
+            }
+            DirectedGraph condensed = StronglyConnectedComponents.condense(g, actual);
+            assertThat(StronglyConnectedComponents.compute(condensed), is(identity(n)));
+        }
+    }
+
+    @Test
+    public void testParallelDAG() {
+        int n = StronglyConnectedComponents.PARALLEL_THRESHOLD;
+        IntPairList edges = new IntPairList();
+        for (int i = 1; i < n; ++i) {
+            edges.add(i, i - 1);
+            edges.add(i - 1, (i % 3 == 0) ? i : i / 2);
+        }
+        DirectedGraph g = new DirectedGraph(n, edges);
+        DirectedAcyclicGraph sequential = new DirectedAcyclicGraph(g);
+        DirectedAcyclicGraph parallel = new DirectedAcyclicGraph(g, 4);
+        for (int v = 0; v < n; ++v) {
+            int r = parallel.getRepresentativeNode(v);
+            assertThat(r, is(lessThanOrEqualTo(v)));
+            assertThat(parallel.getRepresentativeNode(sequential.getRepresentativeNode(v)), is(r));
+        }
+    }
+
+    private static int[] toMinimumRepresentatives(int[] sccIds) {
+        int[] minimum = new int[sccIds.length];
+        Arrays.fill(minimum, Integer.MAX_VALUE);
+        for (int v = 0; v < sccIds.length; ++v) {
+            minimum[sccIds[v]] = Math.min(minimum[sccIds[v]], v);
+        }
+        int[] result = new int[sccIds.length];
+        for (int v = 0; v < sccIds.length; ++v) {
+            result[v] = minimum[sccIds[v]];
+        }
+        return result;
+    }
+
+    private static int[] identity(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; ++i) {
+            result[i] = i;
+        }
+        return result;
+    }
+}